@@ -6,6 +6,9 @@ import java.util.Random;
  * For each possible play, continues greedy play with random possible card draws to a given depth limit 
  * (or game end).  Having sampled trajectories for all possible plays, the GreedyMCPlayer then selects the
  * play yielding the best average scoring potential in such Monte Carlo simulation.
+ * Plays are sampled round-robin, so the search may be stopped at any time (see PokerSquaresAnytimePlayer).
+ * Optionally, all plays are compared on the same sampled deal sequences (common random numbers, CRN), and
+ * search may be limited to a fixed number of rollouts per turn with seeded, reproducible decisions.
  * 
  * Disclaimer: This example code is not intended as a model of efficiency. (E.g., patterns from Knuth's Dancing Links
  * algorithm (DLX) can provide faster legal move list iteration/deletion/restoration.)  Rather, this example
@@ -13,7 +16,7 @@ import java.util.Random;
  * 
  * Author: Todd W. Neller
  */
-public class GreedyMCPlayer implements PokerSquaresPlayer {
+public class GreedyMCPlayer implements PokerSquaresAnytimePlayer {
 	
 	private final int SIZE = 5; // number of rows/columns in square grid
 	private final int NUM_POS = SIZE * SIZE; // number of positions in square grid
@@ -31,6 +34,14 @@ public class GreedyMCPlayer implements PokerSquaresPlayer {
 												 // onward, we maintain a list of undealt cards for MC simulation.
 	private int[][] legalPlayLists = new int[NUM_POS][NUM_POS]; // stores legal play lists indexed by numPlays (depth)
 	// (This avoids constant allocation/deallocation of such lists during the greedy selections of MC simulations.)
+	private volatile boolean cancelled = false; // whether cancel() has asked the current search to stop
+	private boolean commonRandomNumbers = false; // whether candidate plays are compared on common deal sequences (CRN)
+	private Reath_CommonRandomNumbers crn = new Reath_CommonRandomNumbers(); // common deal sequences and stopping rule of CRN
+	private int rolloutBudget = 0; // rollouts per turn (0: search until the turn's time is used)
+	private int turnRollouts; // rollouts of the current turn: the rollout budget in whole rounds (0: no budget)
+	private long seed = 0; // pseudorandom number generator seed of each game with a rollout budget
+	private int turnDepth; // rollout depth of the current turn
+	private Reath_DepthController depthController = new Reath_DepthController(); // chooses turnDepth for an ADAPTIVE depth limit
 
 	/**
 	 * Create a Greedy Monte Carlo player that simulates greedy play to depth 2.
@@ -40,11 +51,49 @@ public class GreedyMCPlayer implements PokerSquaresPlayer {
 	
 	/**
 	 * Create a Greedy Monte Carlo player that simulates greedy play to a given depth limit.
-	 * @param depthLimit depth limit for random greedy simulated play
+	 * @param depthLimit depth limit for random greedy simulated play (or Reath_DepthController.ADAPTIVE to choose
+	 * it for each turn)
 	 */
 	public GreedyMCPlayer(int depthLimit) {
 		this.depthLimit = depthLimit;
 	}
+
+	/**
+	 * Create a Greedy Monte Carlo player that simulates greedy play to a given depth limit, optionally comparing
+	 * plays on common deal sequences.
+	 * @param depthLimit depth limit for random greedy simulated play
+	 * @param commonRandomNumbers whether to simulate all plays of a turn on the same sampled deal sequences
+	 */
+	public GreedyMCPlayer(int depthLimit, boolean commonRandomNumbers) {
+		this.depthLimit = depthLimit;
+		this.commonRandomNumbers = commonRandomNumbers;
+	}
+
+	/**
+	 * Create a Greedy Monte Carlo player that simulates greedy play to a given depth limit with a fixed number of
+	 * rollouts per turn (see setRolloutBudget).
+	 * @param depthLimit depth limit for random greedy simulated play
+	 * @param rolloutsPerTurn rollouts per turn
+	 * @param seed pseudorandom number generator seed of each game
+	 */
+	public GreedyMCPlayer(int depthLimit, int rolloutsPerTurn, long seed) {
+		this.depthLimit = depthLimit;
+		setRolloutBudget(rolloutsPerTurn, seed);
+	}
+
+	/**
+	 * Perform a fixed number of rollouts per turn instead of searching until the turn's share of the remaining
+	 * time is used, reseeding the pseudorandom number generator at the start of each game.  Decisions then depend
+	 * only on the cards dealt, as long as the game's time (or an anytime deadline) does not run out first.  The
+	 * rollouts are spent in whole rounds of one rollout per legal play: the budget is rounded down to a multiple
+	 * of the turn's legal plays, but covers at least one round.
+	 * @param rolloutsPerTurn rollouts per turn (0 to return to timed search)
+	 * @param seed pseudorandom number generator seed of each game
+	 */
+	public void setRolloutBudget(int rolloutsPerTurn, long seed) {
+		this.rolloutBudget = Math.max(0, rolloutsPerTurn);
+		this.seed = seed;
+	}
 	
 	/* (non-Javadoc)
 	 * @see PokerSquaresPlayer#init()
@@ -60,6 +109,13 @@ public class GreedyMCPlayer implements PokerSquaresPlayer {
 		// (re)initialize list of play positions (row-major ordering)
 		for (int i = 0; i < NUM_POS; i++)
 			plays[i] = i;
+		// forget a cancel() of the last game
+		cancelled = false;
+		// restart the pseudorandom number sequence of a reproducible (budgeted) search
+		if (rolloutBudget > 0) {
+			random.setSeed(seed);
+			simDeck = Card.getAllCards();
+		}
 	}
 
 	/* (non-Javadoc)
@@ -67,6 +123,25 @@ public class GreedyMCPlayer implements PokerSquaresPlayer {
 	 */
 	@Override
 	public int[] getPlay(Card card, long millisRemaining) {
+		return getPlay(card, millisRemaining, System.nanoTime() + millisRemaining * 1000000L);
+	}
+
+	/* (non-Javadoc)
+	 * @see PokerSquaresAnytimePlayer#getPlay(Card, long, long)
+	 */
+	@Override
+	public int[] getPlay(Card card, long millisRemaining, long deadlineNanos) {
+		try {
+			return choosePlay(card, millisRemaining, deadlineNanos);
+		} finally { // a cancel() of this call must not reach a later one
+			cancelled = false;
+		}
+	}
+
+	/**
+	 * Choose the play of the drawn card by MC simulation of the legal plays (see getPlay).
+	 */
+	private int[] choosePlay(Card card, long millisRemaining, long deadlineNanos) {
 		/*
 		 * With this algorithm, the player chooses the legal play that has the highest expected score outcome.
 		 * This outcome is estimated as follows:
@@ -76,6 +151,9 @@ public class GreedyMCPlayer implements PokerSquaresPlayer {
 		 *     picks a play position that maximizes the score (breaking ties randomly).
 		 *   After many such plays, the average score per simulated play is computed.  The play with the highest 
 		 *     average score is chosen (breaking ties randomly).   
+		 *   Legal plays are simulated round-robin, one simulation each in turn, so that their averages are
+		 *     comparable whenever the search stops: after an even share of the remaining time, at deadlineNanos
+		 *     or on cancel(), whichever comes first.
 		 */
 		
 		// match simDeck to actual play event; in this way, all indices forward from the card contain a list of 
@@ -87,29 +165,51 @@ public class GreedyMCPlayer implements PokerSquaresPlayer {
 		simDeck[numPlays] = card;
 		
 		if (numPlays < 24) { // not the forced last play
-			// compute average time per move evaluation
+			// compute when the search should end
 			int remainingPlays = NUM_POS - numPlays; // ignores triviality of last play to keep a conservative margin for game completion
 			long millisPerPlay = millisRemaining / remainingPlays; // dividing time evenly with future getPlay() calls
-			long millisPerMoveEval = millisPerPlay / remainingPlays; // dividing time evenly across moves now considered
+			long endNanos = System.nanoTime() + millisPerPlay * 1000000L;
+			if (rolloutBudget > 0 || deadlineNanos - endNanos < 0) // the caller's deadline comes first (and alone bounds a rollout budget)
+				endNanos = deadlineNanos;
+			// choose the rollout depth of this turn
+			if (depthLimit != Reath_DepthController.ADAPTIVE)
+				turnDepth = depthLimit;
+			else if (rolloutBudget > 0) // reproducible: rollouts to game end
+				turnDepth = remainingPlays - 1;
+			else
+				turnDepth = depthController.getDepth(remainingPlays - 1, remainingPlays, endNanos - System.nanoTime());
+			long searchNanos = System.nanoTime();
 			// copy the play positions (row-major indices) that are empty
 			System.arraycopy(plays, numPlays, legalPlayLists[numPlays], 0, remainingPlays);
+			int[] scoreTotals = new int[remainingPlays]; // MC simulation score totals of the legal plays
+			int[] simCounts = new int[remainingPlays]; // MC simulation counts of the legal plays
+			turnRollouts = getTurnRollouts(remainingPlays);
+			if (commonRandomNumbers) // compare the legal plays on common deal sequences
+				simCommonPlays(card, legalPlayLists[numPlays], remainingPlays, endNanos, scoreTotals, simCounts);
+			else {
+				int next = 0; // index of the legal play to simulate next
+				for (int simulations = 0; isSearching(endNanos, simulations); simulations++) { // perform as many MC simulations as possible through the allotted time (or budget)
+					int play = legalPlayLists[numPlays][next];
+					makePlay(card, play / SIZE, play % SIZE);  // play the card at the empty position
+					// Perform a Monte Carlo simulation of greedy play to the depth limit or game end, whichever comes first.
+					scoreTotals[next] += simGreedyPlay(turnDepth);  // accumulate MC simulation scores
+					simCounts[next]++; // increment count of MC simulations
+					undoPlay(); // undo the play under evaluation
+					next = (next + 1) % remainingPlays;
+				}
+			}
+			if (depthLimit == Reath_DepthController.ADAPTIVE && rolloutBudget == 0) { // update the measured rollout cost
+				long simTotal = 0;
+				for (int simCount : simCounts)
+					simTotal += simCount;
+				depthController.recordRollouts(remainingPlays - 1, simTotal, System.nanoTime() - searchNanos);
+			}
 			double maxAverageScore = Double.NEGATIVE_INFINITY; // maximum average score found for moves so far
 			ArrayList<Integer> bestPlays = new ArrayList<Integer>(); // all plays yielding the maximum average score 
 			for (int i = 0; i < remainingPlays; i++) { // for each legal play position
 				int play = legalPlayLists[numPlays][i];
-				long startTime = System.currentTimeMillis();
-				long endTime = startTime + millisPerMoveEval; // compute when MC simulations should end
-				makePlay(card, play / SIZE, play % SIZE);  // play the card at the empty position
-				int simCount = 0;
-				int scoreTotal = 0;
-				while (System.currentTimeMillis() < endTime) { // perform as many MC simulations as possible through the allotted time
-					// Perform a Monte Carlo simulation of greedy play to the depth limit or game end, whichever comes first.
-					scoreTotal += simGreedyPlay(depthLimit);  // accumulate MC simulation scores
-					simCount++; // increment count of MC simulations
-				}
-				undoPlay(); // undo the play under evaluation
-				// update (if necessary) the maximum average score and the list of best plays
-				double averageScore = (double) scoreTotal / simCount;
+				// update (if necessary) the maximum average score and the list of best plays (any legal play if none was simulated)
+				double averageScore = simCounts[i] > 0 ? (double) scoreTotals[i] / simCounts[i] : Double.NEGATIVE_INFINITY;
 				if (averageScore >= maxAverageScore) {
 					if (averageScore > maxAverageScore)
 						bestPlays.clear();
@@ -130,6 +230,14 @@ public class GreedyMCPlayer implements PokerSquaresPlayer {
 		return playPos; // return the chosen play
 	}
 
+	/* (non-Javadoc)
+	 * @see PokerSquaresAnytimePlayer#cancel()
+	 */
+	@Override
+	public void cancel() {
+		cancelled = true;
+	}
+
 	/**
 	 * From the chosen play, perform simulated Card draws and greedy placement (depthLimit) iterations forward 
 	 * and return the resulting grid score.
@@ -137,6 +245,17 @@ public class GreedyMCPlayer implements PokerSquaresPlayer {
 	 * @return resulting grid score after greedy MC simulation to given depthLimit
 	 */
 	private int simGreedyPlay(int depthLimit) {
+		return simGreedyPlay(depthLimit, false);
+	}
+
+	/**
+	 * As simGreedyPlay(int), but optionally drawing the cards and breaking the ties of the common deal sequence
+	 * (see Reath_CommonRandomNumbers) instead of fresh random ones.
+	 * @param depthLimit - how many simulated greedy plays to perform
+	 * @param common - whether to follow the common deal sequence
+	 * @return resulting grid score after greedy MC simulation to given depthLimit
+	 */
+	private int simGreedyPlay(int depthLimit, boolean common) {
 		if (depthLimit == 0) { // with zero depth limit, return current score
 			return system.getScore(grid);
 		}
@@ -145,9 +264,8 @@ public class GreedyMCPlayer implements PokerSquaresPlayer {
 			int maxScore = Integer.MIN_VALUE;
 			int depth = Math.min(depthLimit, NUM_POS - numPlays); // compute real depth limit, taking into account game end
 			for (int d = 0; d < depth; d++) {
-				// generate a random card draw
-				int c = random.nextInt(NUM_CARDS - numPlays) + numPlays;
-				Card card = simDeck[c];
+				// generate a random card draw (or take the next card of the common sequence)
+				Card card = common ? crn.getCard(d) : simDeck[random.nextInt(NUM_CARDS - numPlays) + numPlays];
 				// iterate through legal plays and choose the best greedy play (see similar approach in getPlay)
 				int remainingPlays = NUM_POS - numPlays;
 				System.arraycopy(plays, numPlays, legalPlayLists[numPlays], 0, remainingPlays);
@@ -165,7 +283,7 @@ public class GreedyMCPlayer implements PokerSquaresPlayer {
 					}
 					undoPlay();
 				}
-				int bestPlay = bestPlays.get(random.nextInt(bestPlays.size()));
+				int bestPlay = bestPlays.get(common ? crn.getTieBreak(d) % bestPlays.size() : random.nextInt(bestPlays.size()));
 				makePlay(card, bestPlay / SIZE, bestPlay % SIZE);
 			}
 			// At this point, the last maxScore value is the end value of this Monte Carlo situation.
@@ -177,6 +295,56 @@ public class GreedyMCPlayer implements PokerSquaresPlayer {
 		}
 	}
 	
+	/**
+	 * Simulate candidate plays of the drawn card on common deal sequences (common random numbers): in each round,
+	 * every candidate is simulated on the same sampled sequence of future cards and tie-breaks, so that the
+	 * differences between candidates' averages reflect the plays rather than the luck of their draws.  Only
+	 * completed rounds are counted, and the first round is always completed (the rollout budget of a turn is a
+	 * whole number of rounds, so it never ends a round early).  Simulation stops early once the leading
+	 * candidate's mean paired score difference to every other candidate exceeds Reath_CommonRandomNumbers.Z
+	 * standard errors.
+	 * @param card - card just drawn (at simDeck[numPlays])
+	 * @param candidates - row-major indices of candidate plays
+	 * @param numCandidates - number of candidate plays
+	 * @param endNanos - System.nanoTime() at which simulation stops
+	 * @param scoreTotals - simulation score totals of the candidates (added to)
+	 * @param simCounts - simulation counts of the candidates (added to)
+	 */
+	private void simCommonPlays(Card card, int[] candidates, int numCandidates, long endNanos, int[] scoreTotals, int[] simCounts) {
+		int[] roundScores = new int[numCandidates]; // candidate scores on the current sequence
+		crn.start(numCandidates);
+		while (crn.getRounds() == 0 || isSearching(endNanos, crn.getRounds() * numCandidates)) { // always complete one round
+			crn.sampleSequence(simDeck, numPlays + 1, Math.min(turnDepth, NUM_POS - numPlays - 1), random);
+			int i = 0;
+			for (; i < numCandidates && (crn.getRounds() == 0 || isSearching(endNanos, crn.getRounds() * numCandidates + i)); i++) {
+				int play = candidates[i];
+				makePlay(card, play / SIZE, play % SIZE);
+				roundScores[i] = simGreedyPlay(turnDepth, true);
+				undoPlay();
+			}
+			if (i < numCandidates) // incomplete round
+				break;
+			if (crn.addRound(roundScores, scoreTotals, simCounts))
+				break;
+		}
+	}
+
+	/**
+	 * Return whether search should continue: it has not been cancelled, endNanos (System.nanoTime()) has not
+	 * passed and, with a rollout budget, fewer than the turn's rollouts have been performed.
+	 */
+	private boolean isSearching(long endNanos, int simulations) {
+		return !cancelled && System.nanoTime() - endNanos < 0 && (turnRollouts == 0 || simulations < turnRollouts);
+	}
+
+	/**
+	 * Return the rollouts of a turn comparing the given number of candidates: the rollout budget rounded down to
+	 * whole rounds of one rollout per candidate, but at least one round (0 without a rollout budget).
+	 */
+	private int getTurnRollouts(int numCandidates) {
+		return rolloutBudget == 0 ? 0 : Math.max(1, rolloutBudget / numCandidates) * numCandidates;
+	}
+
 	public void makePlay(Card card, int row, int col) {
 		// match simDeck to event
 		int cardIndex = numPlays;
@@ -217,7 +385,7 @@ public class GreedyMCPlayer implements PokerSquaresPlayer {
 	 */
 	@Override
 	public String getName() {
-		return "GreedyMCPlayerDepth" + depthLimit;
+		return "GreedyMCPlayerDepth" + (depthLimit == Reath_DepthController.ADAPTIVE ? "Adaptive" : depthLimit) + (commonRandomNumbers ? "CRN" : "") + (rolloutBudget > 0 ? "Rollouts" + rolloutBudget : "");
 	}
 
 	/**
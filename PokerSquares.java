@@ -1,3 +1,4 @@
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -54,6 +55,15 @@ public class PokerSquares {
 	private Card[][] grid = new Card[SIZE][SIZE]; // current game grid
 	private Random random = new Random(); // current game random number generator
 	private int minPoints; // minimum possible score for current point system.
+	private long seed; // seed of the next game's deal
+	private boolean seeded = false; // whether the next game's deal comes from a known seed
+	private PokerSquaresGameLog gameLog = null; // log recording each game (null if not recording)
+	private PokerSquaresDealCorpus dealCorpus = null; // corpus of deals played by index (null to shuffle from seeds)
+	private long dealIndex = -1; // corpus index of the next game's deal (-1 to shuffle)
+	private Card[] deal = new Card[SIZE * SIZE]; // cards of the current game in draw order
+	private boolean gameComplete = false; // whether the last game filled the grid
+	private PokerSquaresWatchdog watchdog = null; // watchdog running getPlay under a hard deadline (null to call getPlay directly)
+	private PokerSquaresTranscript transcript = null; // asynchronous move transcript (null to print verbose grids directly)
 
 	/**
 	 * Create a PokerSquares game with a given player and point system.
@@ -94,15 +104,49 @@ public class PokerSquares {
 		return play();
 	}
 
+	/**
+	 * Play the deal with the given index in the deal corpus and return the final game score.
+	 * @param verbose whether or not to print a move-by-move transcript of the game
+	 * @param dealIndex index of the deal in the corpus set by setDealCorpus
+	 * @return final game score
+	 */
+	public int playDeal(boolean verbose, long dealIndex) {
+		if (dealCorpus == null)
+			throw new IllegalStateException("No deal corpus set");
+		this.verbose = verbose;
+		this.dealIndex = dealIndex;
+		return play();
+	}
+
 	public int play() {
 		try {
-			player.init();
-
-			// shuffle deck
-			Stack<Card> deck = new Stack<Card>();
-			for (Card card : Card.getAllCards())
-				deck.push(card);
-			Collections.shuffle(deck, random);
+			boolean abandoned = watchdog != null && watchdog.isAbandoned(player); // still in use by an abandoned thread
+			if (!abandoned)
+				player.init();
+
+			if (dealIndex >= 0) // read deal from corpus
+				dealCorpus.getDeal(dealIndex, deal);
+			else {
+				// shuffle deck
+				Stack<Card> deck = new Stack<Card>();
+				for (Card card : Card.getAllCards())
+					deck.push(card);
+				Collections.shuffle(deck, random);
+				for (int i = 0; i < deal.length; i++)
+					deal[i] = deck.pop();
+			}
+			dealIndex = -1;
+			if (gameLog != null) {
+				int[] dealIds = new int[SIZE * SIZE];
+				for (int i = 0; i < dealIds.length; i++)
+					dealIds[i] = deal[i].getCardId();
+				gameLog.beginGame(seeded, seed, player.getName(), system, dealIds);
+			}
+			if (abandoned) { // the deal is still drawn, so later seeded deals are unchanged
+				System.err.println("Player abandoned after an overrun");
+				return endGame(minPoints, PokerSquaresGameLog.OUTCOME_TIMEOUT);
+			}
+			seeded = false;
 			/**
 			deck.clear();
 			deck.push(Card.getCard("4D"));
@@ -140,34 +184,111 @@ public class PokerSquares {
 			long millisRemaining = gameMillis;
 			int cardsPlaced = 0;
 			while (cardsPlaced < SIZE * SIZE) {
-				Card card = deck.pop();
+				Card card = deal[cardsPlaced];
 				long startTime = System.currentTimeMillis();
-				int[] play = player.getPlay(card, millisRemaining);
-				millisRemaining -= System.currentTimeMillis() - startTime;
-				if (millisRemaining < 0) { // times out
+				long startNanos = System.nanoTime();
+				int[] play = watchdog == null ? player.getPlay(card, millisRemaining) : watchdog.getPlay(player, card, millisRemaining);
+				long latencyNanos = System.nanoTime() - startNanos;
+				boolean overrun = play == PokerSquaresWatchdog.OVERRUN; // stopped by the watchdog
+				boolean legal = !overrun && play != null && play.length == 2 && play[0] >= 0 && play[0] < SIZE && play[1] >= 0 && play[1] < SIZE && grid[play[0]][play[1]] == null;
+				if (gameLog != null)
+					gameLog.recordPlay(legal ? play[0] * SIZE + play[1] : -1, millisRemaining, latencyNanos);
+				millisRemaining -= watchdog == null ? System.currentTimeMillis() - startTime : watchdog.getChargedMillis();
+				if (overrun || millisRemaining < 0) { // times out
 					System.err.println("Player Out of Time");
-					return minPoints;
+					return endGame(minPoints, PokerSquaresGameLog.OUTCOME_TIMEOUT);
 				}
-				if (play.length != 2 || play[0] < 0 || play[0] >= SIZE || play[1] < 0 || play[1] >= SIZE || grid[play[0]][play[1]] != null) { // illegal play
+				if (!legal) { // illegal play
 					System.err.printf("Illegal play: %s\n", Arrays.toString(play));
-					return minPoints;
+					return endGame(minPoints, PokerSquaresGameLog.OUTCOME_ILLEGAL);
 				}
 				grid[play[0]][play[1]] = card;
+				if (transcript != null)
+					transcript.move(cardsPlaced, card, play[0], play[1]);
 				cardsPlaced++;
-				if (verbose) {
+				if (verbose && transcript == null) {
 					system.printGrid(grid);
 					System.out.println();
 				}
 			}
 			//system.printGrid(grid);
 			//System.out.println();
-			return system.getScore(grid);
+			return endGame(system.getScore(grid), PokerSquaresGameLog.OUTCOME_COMPLETE);
 		}
 		catch (Exception e) {
 			System.err.println("Exception thrown by " + player.getName() + ":");
 			e.printStackTrace();
-			return minPoints;
+			return endGame(minPoints, PokerSquaresGameLog.OUTCOME_EXCEPTION);
+		}
+	}
+
+	/**
+	 * Finish recording the current game (if a game log is attached) and return its score.
+	 * @param score final game score
+	 * @param outcome PokerSquaresGameLog outcome constant
+	 * @return final game score
+	 */
+	private int endGame(int score, int outcome) {
+		seeded = false;
+		gameComplete = outcome == PokerSquaresGameLog.OUTCOME_COMPLETE;
+		if (transcript != null)
+			transcript.endGame(score);
+		if (gameLog != null) {
+			try {
+				gameLog.endGame(score, outcome);
+			} catch (IOException e) {
+				System.err.println("Could not write game log: " + e.getMessage());
+			}
 		}
+		return score;
+	}
+
+	/**
+	 * Count the hand classes of the rows and columns of the last game's grid, e.g. to score the game under
+	 * other point systems (see PokerSquaresPointSystemBatch).
+	 * @param handCounts array of length PokerHand.NUM_HANDS to fill with the number of lines of each PokerHand id
+	 * @return whether the last game filled the grid (if not, handCounts is left unchanged)
+	 */
+	public boolean getHandCounts(int[] handCounts) {
+		if (!gameComplete)
+			return false;
+		PokerSquaresPointSystemBatch.getHandCounts(grid, handCounts);
+		return true;
+	}
+
+	/**
+	 * Set the log recording each subsequent game, or null to stop recording.
+	 * @param gameLog game log
+	 */
+	public void setGameLog(PokerSquaresGameLog gameLog) {
+		this.gameLog = gameLog;
+	}
+
+	/**
+	 * Set the watchdog that runs each getPlay call under a hard deadline and charges its wall-clock or CPU time,
+	 * or null to call getPlay directly on the game thread and charge wall-clock time.
+	 * @param watchdog getPlay watchdog
+	 */
+	public void setWatchdog(PokerSquaresWatchdog watchdog) {
+		this.watchdog = watchdog;
+	}
+
+	/**
+	 * Set the transcript recording each placement of subsequent games, or null to stop recording.  While a
+	 * transcript is set, verbose games do not print grids on the game thread.
+	 * @param transcript move transcript
+	 */
+	public void setTranscript(PokerSquaresTranscript transcript) {
+		this.transcript = transcript;
+	}
+
+	/**
+	 * Set the corpus of deals played by index, or null to shuffle deals from seeds.  While a corpus is set,
+	 * playSequence plays corpus deals, using its start seed as the index of the first deal.
+	 * @param dealCorpus deal corpus
+	 */
+	public void setDealCorpus(PokerSquaresDealCorpus dealCorpus) {
+		this.dealCorpus = dealCorpus;
 	}
 
 
@@ -179,31 +300,54 @@ public class PokerSquares {
 	 * @return integer array of game scores
 	 */
 	public int[] playSequence(int numGames, long startSeed, boolean verbose) {
+		int[] scores = new int[numGames];
+		playSequence(numGames, startSeed, verbose, new PokerSquaresStatistics(), scores, true);
+		return scores;
+	}
+
+	/**
+	 * Play a sequence of games, accumulating statistics in constant memory rather than keeping each score.
+	 * @param numGames number of games to play
+	 * @param startSeed seed of first game. Successive games use successive seeds
+	 * @param verbose whether or not to provide verbose output of game play (including each game score)
+	 * @param statistics statistics to which the game scores are added
+	 * @return the given statistics
+	 */
+	public PokerSquaresStatistics playSequence(long numGames, long startSeed, boolean verbose, PokerSquaresStatistics statistics) {
+		playSequence(numGames, startSeed, verbose, statistics, null, verbose);
+		return statistics;
+	}
+
+	/**
+	 * Play a sequence of games, adding each score to the statistics (and to the scores array, if not null).
+	 */
+	private void playSequence(long numGames, long startSeed, boolean verbose, PokerSquaresStatistics statistics,
+			int[] scores, boolean printScores) {
 		this.verbose = verbose;
 		if (verbose) {
 			System.out.printf("%d games starting at seed %d\nPoint system:\n%s\n", numGames, startSeed, system);
 		}
-		int[] scores = new int[numGames];
-		double scoreMean = 0;
-		int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
-		for (int i = 0; i < numGames; i++) {
-			setSeed(startSeed + i);
+		PokerSquaresStatistics sequence = new PokerSquaresStatistics();
+		for (long i = 0; i < numGames; i++) {
+			if (dealCorpus != null)
+				dealIndex = startSeed + i;
+			else
+				setSeed(startSeed + i);
 			int score = play();
-			scores[i] = score;
-			scoreMean += score;
-			if (scores[i] < min) min = scores[i];
-			if (scores[i] > max) max = scores[i];
-			System.out.println(score);
+			if (gameComplete)
+				sequence.add(score, grid);
+			else
+				sequence.add(score);
+			if (scores != null)
+				scores[(int) i] = score;
+			if (printScores)
+				System.out.println(score);
 		}
-		scoreMean /= numGames;
-		double scoreStdDev = 0;
-		for (int i = 0; i < numGames; i++) {
-			double diff = scores[i] - scoreMean;
-			scoreStdDev += diff * diff;
-		}
-		scoreStdDev = Math.sqrt(scoreStdDev / numGames);
-		System.out.printf("Score Mean: %f, Standard Deviation: %f, Minimum: %d, Maximum: %d\n", scoreMean, scoreStdDev, min, max);
-		return scores;
+		if (transcript != null)
+			transcript.flush();
+		System.out.printf("Score Mean: %f, Standard Deviation: %f, Minimum: %d, Maximum: %d\n",
+				sequence.getMean(), sequence.getStandardDeviation(), sequence.getMin(), sequence.getMax());
+		statistics.merge(sequence);
 	}
 
 	/**
@@ -226,42 +370,59 @@ public class PokerSquares {
 			ArrayList<PokerSquaresPointSystem> systems,
 			int gamesPerSystem, long startSeed) {
 		double[] tournamentScores = new double[players.size()];
+		String[] names = new String[players.size()];
+		for (int i = 0; i < players.size(); i++)
+			names[i] = players.get(i).getName();
 		for (PokerSquaresPointSystem system : systems) { // for each point system
 			System.out.println("Point System:\n" + system);
-			int[] totalScores = new int[players.size()];
+			long[] totalScores = new long[players.size()];
 			for (int i = 0; i < players.size(); i++) { // for each player
 				PokerSquaresPlayer player = players.get(i);
 				System.out.printf("Player: \"%s\"\n", player.getName());
-				int[] scores = new PokerSquares(player, system).playSequence(gamesPerSystem, startSeed, false);
-				for (int score : scores)
-					totalScores[i] += score;
+				PokerSquaresStatistics statistics = new PokerSquaresStatistics();
+				new PokerSquares(player, system).playSequence(gamesPerSystem, startSeed, false, statistics, null, true); // print each game score
+				totalScores[i] = statistics.getSum();
 				System.out.printf("Player \"%s\" total score: %d\n", player.getName(), totalScores[i]);
 			}
-			int maxTotal = Integer.MIN_VALUE;
-			int minTotal = Integer.MAX_VALUE;
-			for (int totalScore : totalScores) {
-				if (totalScore > maxTotal)
-					maxTotal = totalScore;
-				if (totalScore < minTotal)
-					minTotal = totalScore;				
-			}
-			for (int i = 0; i < players.size(); i++) { // for each player
-				double normalizedTotal = (double) (totalScores[i] - minTotal) / (maxTotal - minTotal);
-				System.out.println("Player \"" + players.get(i).getName() + "\" normalized score: " + normalizedTotal);
-				tournamentScores[i] += normalizedTotal;
-			}
+			addNormalizedScores(tournamentScores, totalScores, names);
 		}
-		double max = Double.NEGATIVE_INFINITY;
-		for (double score : tournamentScores) {
-			if (score > max)
-				max = score;
+		printTournamentScores(tournamentScores, names);
+		return tournamentScores;
+	}
+
+	/**
+	 * Linearly scale the total scores of one point system so that the maximum and minimum totals become 1.0
+	 * and 0.0, print them, and add them to the players' tournament scores.
+	 * @param tournamentScores tournament score of each player
+	 * @param totalScores total game score of each player under the point system
+	 * @param names player names
+	 */
+	static void addNormalizedScores(double[] tournamentScores, long[] totalScores, String[] names) {
+		long maxTotal = Long.MIN_VALUE;
+		long minTotal = Long.MAX_VALUE;
+		for (long totalScore : totalScores) {
+			if (totalScore > maxTotal)
+				maxTotal = totalScore;
+			if (totalScore < minTotal)
+				minTotal = totalScore;				
 		}
-		System.out.printf("%20s %s\n", "Player", "Tournament Score");
-		for (int i = 0; i < players.size(); i++) { // for each player
-			System.out.printf("%20s %f\n", players.get(i).getName(), tournamentScores[i]);
+		for (int i = 0; i < totalScores.length; i++) { // for each player
+			double normalizedTotal = (double) (totalScores[i] - minTotal) / (maxTotal - minTotal);
+			System.out.println("Player \"" + names[i] + "\" normalized score: " + normalizedTotal);
+			tournamentScores[i] += normalizedTotal;
 		}
+	}
 
-		return tournamentScores;
+	/**
+	 * Print the tournament score of each player.
+	 * @param tournamentScores tournament score of each player
+	 * @param names player names
+	 */
+	static void printTournamentScores(double[] tournamentScores, String[] names) {
+		System.out.printf("%20s %s\n", "Player", "Tournament Score");
+		for (int i = 0; i < names.length; i++) { // for each player
+			System.out.printf("%20s %f\n", names[i], tournamentScores[i]);
+		}
 	}
 
 	/**
@@ -270,6 +431,8 @@ public class PokerSquares {
 	 */
 	private void setSeed(long seed) {
 		random.setSeed(seed);
+		this.seed = seed;
+		seeded = true;
 	}
 
 
@@ -0,0 +1,27 @@
+/**
+ * PokerSquaresAnytimePlayer - a player whose search can be stopped at any moment.
+ * An anytime player always holds a valid best-so-far play while it searches.  Its search ends at a deadline given
+ * by the caller, or as soon as cancel() is called from another thread; it then returns its best-so-far play
+ * within a fraction of a millisecond.  A caller can therefore impose tight per-move latency targets without
+ * risking an illegal or missing play.
+ * Author: Caleb Reath
+ */
+public interface PokerSquaresAnytimePlayer extends PokerSquaresPlayer {
+
+	/**
+	 * getPlay - gets the play position for a given card, searching no later than the given deadline.
+	 * As with getPlay(Card, long), each returned play will be made for the player.
+	 * @param card - card just drawn.
+	 * @param millisRemaining - remaining milliseconds for play in the rest of the player's game.
+	 * @param deadlineNanos - System.nanoTime() value at which search must stop and the best-so-far play be returned.
+	 * @return a 2D int array with the chosen (row, col) position for play of the given card.
+	 */
+	int[] getPlay(Card card, long millisRemaining, long deadlineNanos);
+
+	/**
+	 * cancel - asks the getPlay call in progress (or, if there is none, the next one) to stop searching and return
+	 * its best-so-far play.  May be called from any thread.
+	 */
+	void cancel();
+
+}
@@ -0,0 +1,139 @@
+/**
+ * PokerSquaresComparison - compares two players on paired, same-seed games with a sequential probability ratio
+ * test (SPRT), stopping as soon as the evidence suffices instead of after a fixed number of games.
+ *
+ * Both players play each deal, and the test is run on the paired score differences d = scoreA - scoreB, which
+ * removes most of the deal-to-deal variance.  Two Wald SPRTs with a Gaussian model of d (variance estimated
+ * from the differences so far) test a mean difference of 0 against +effect and against -effect:
+ *   - if the log likelihood ratio for +effect (or -effect) reaches log((1 - beta) / (alpha / 2)), player A
+ *     (or B) is declared better,
+ *   - if both ratios fall to log(beta / (1 - alpha / 2)), the players are declared to have no detectable
+ *     difference at the given effect size,
+ *   - otherwise the comparison is inconclusive when maxGames pairs have been played.
+ * The expected number of games is far smaller than that of a fixed-N test with the same error rates.
+ *
+ * Author: Caleb Reath
+ */
+public class PokerSquaresComparison {
+	public static final int MIN_GAMES = 10; // games played before the variance estimate is trusted
+
+	/**
+	 * Verdict - outcome of a comparison.
+	 */
+	public enum Verdict {
+		A_BETTER, B_BETTER, NO_DETECTABLE_DIFFERENCE, INCONCLUSIVE
+	}
+
+	private Verdict verdict = Verdict.INCONCLUSIVE; // outcome of the last comparison
+	private int games; // pairs of games played
+	private double meanDifference; // mean of scoreA - scoreB
+	private double varianceSum; // sum of squared deviations of the differences (Welford)
+
+	/**
+	 * Compare two players under a point system.
+	 * @param a first player
+	 * @param b second player
+	 * @param system point system
+	 * @param startSeed seed of the first pair of games; successive pairs use successive seeds
+	 * @param effect smallest mean score difference worth detecting (points per game)
+	 * @param alpha probability of declaring a difference when there is none
+	 * @param beta probability of missing a difference of the given effect size
+	 * @param maxGames maximum number of pairs of games
+	 * @param verbose whether to print each pair of scores
+	 * @return verdict
+	 */
+	public Verdict compare(PokerSquaresPlayer a, PokerSquaresPlayer b, PokerSquaresPointSystem system, long startSeed,
+			double effect, double alpha, double beta, int maxGames, boolean verbose) {
+		PokerSquares gameA = new PokerSquares(a, system);
+		PokerSquares gameB = new PokerSquares(b, system);
+		double upper = Math.log((1 - beta) / (alpha / 2)); // accept a difference of +-effect
+		double lower = Math.log(beta / (1 - alpha / 2)); // accept no difference
+		verdict = Verdict.INCONCLUSIVE;
+		games = 0;
+		meanDifference = 0;
+		varianceSum = 0;
+		double sum = 0;
+		while (games < maxGames) {
+			long seed = startSeed + games;
+			int scoreA = gameA.play(false, seed);
+			int scoreB = gameB.play(false, seed);
+			double d = scoreA - scoreB;
+			games++;
+			sum += d;
+			double delta = d - meanDifference;
+			meanDifference += delta / games;
+			varianceSum += delta * (d - meanDifference);
+			if (verbose)
+				System.out.printf("%d %d %d\n", seed, scoreA, scoreB);
+			if (games < MIN_GAMES)
+				continue;
+			double variance = Math.max(varianceSum / (games - 1), 1e-9);
+			double llrPlus = (effect * sum - games * effect * effect / 2) / variance; // mean +effect vs. 0
+			double llrMinus = (-effect * sum - games * effect * effect / 2) / variance; // mean -effect vs. 0
+			if (llrPlus >= upper) {
+				verdict = Verdict.A_BETTER;
+				break;
+			}
+			if (llrMinus >= upper) {
+				verdict = Verdict.B_BETTER;
+				break;
+			}
+			if (llrPlus <= lower && llrMinus <= lower) {
+				verdict = Verdict.NO_DETECTABLE_DIFFERENCE;
+				break;
+			}
+		}
+		System.out.printf("%s vs. %s: %s after %d game pairs, mean difference %f, standard deviation %f\n",
+				a.getName(), b.getName(), verdict, games, meanDifference, getStandardDeviation());
+		return verdict;
+	}
+
+	/**
+	 * @return verdict of the last comparison
+	 */
+	public Verdict getVerdict() {
+		return verdict;
+	}
+
+	/**
+	 * @return number of pairs of games played in the last comparison
+	 */
+	public int getGames() {
+		return games;
+	}
+
+	/**
+	 * @return mean score difference (first minus second player) in the last comparison
+	 */
+	public double getMeanDifference() {
+		return meanDifference;
+	}
+
+	/**
+	 * @return sample standard deviation of the score differences in the last comparison
+	 */
+	public double getStandardDeviation() {
+		return games > 1 ? Math.sqrt(varianceSum / (games - 1)) : 0;
+	}
+
+	/**
+	 * Compare two players given by PokerSquaresPlayerSpec specifications.
+	 * @param args playerSpecA playerSpecB [effect] [alpha] [beta] [maxGames] [startSeed] [pointSystem]
+	 */
+	public static void main(String[] args) {
+		if (args.length < 2) {
+			System.err.println("usage: java PokerSquaresComparison playerSpecA playerSpecB [effect] [alpha] [beta] [maxGames] [startSeed] [pointSystem]");
+			return;
+		}
+		PokerSquaresPlayer a = PokerSquaresPlayerSpec.create(args[0]);
+		PokerSquaresPlayer b = PokerSquaresPlayerSpec.create(args[1]);
+		double effect = args.length > 2 ? Double.parseDouble(args[2]) : 1.0;
+		double alpha = args.length > 3 ? Double.parseDouble(args[3]) : 0.05;
+		double beta = args.length > 4 ? Double.parseDouble(args[4]) : 0.05;
+		int maxGames = args.length > 5 ? Integer.parseInt(args[5]) : 10000;
+		long startSeed = args.length > 6 ? Long.parseLong(args[6]) : 0L;
+		PokerSquaresPointSystem system = args.length > 7 ? PokerSquaresPlayerSpec.pointSystem(args[7])
+				: PokerSquaresPointSystem.getBritishPointSystem();
+		new PokerSquaresComparison().compare(a, b, system, startSeed, effect, alpha, beta, maxGames, false);
+	}
+}
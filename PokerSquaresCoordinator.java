@@ -0,0 +1,434 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * PokerSquaresCoordinator - plays a Poker Squares tournament (see PokerSquares.playTournament) across several
+ * worker JVMs on the local machine.
+ *
+ * The coordinator splits the tournament into shards of (point system, player, seed range), launches worker
+ * JVMs with the same class path, and hands shards to workers over a loopback socket.  Each worker creates its
+ * players from PokerSquaresPlayerSpec specifications, plays its shards as PokerSquares.playTournament would
+ * (same seeds, or the same deal corpus indices) and returns the game scores.  A shard whose worker fails or
+ * exceeds the shard's time limit is handed to another worker, and a replacement worker is launched, up to
+ * MAX_ATTEMPTS attempts per shard.  When all shards are done, the totals are normalized exactly as in
+ * playTournament.  Since each worker is its own process, players do not share a heap, garbage collector or
+ * thread pool, and multi-threaded players do not disturb each other's timing.
+ *
+ * Protocol (DataInput/DataOutput): the worker sends int version and long process id, then repeatedly receives
+ * int command (UNIT or QUIT); a UNIT is int shard id, short[10] hand scores, UTF player specification, UTF deal
+ * corpus path ("" to deal from seeds), long first seed (or deal index) and int number of games, answered with
+ * int shard id, byte status (0 = ok, 1 = error followed by UTF message), UTF player name and the int scores.
+ *
+ * Author: Caleb Reath
+ */
+public class PokerSquaresCoordinator {
+	private static final int PROTOCOL_VERSION = 1; // protocol version exchanged on connection
+	private static final int QUIT = 0; // command: worker exits
+	private static final int UNIT = 1; // command: play a shard
+	private static final int MAX_ATTEMPTS = 3; // attempts per shard before the tournament fails
+	private static final long MARGIN_MILLIS = 60000L; // shard time limit margin beyond the game and point system limits
+	private static final long POLL_MILLIS = 200L; // coordinator polling interval
+
+	private final List<String> playerSpecs; // player specifications
+	private final List<PokerSquaresPointSystem> systems; // point systems
+	private final int gamesPerSystem; // games per player and point system
+	private final long startSeed; // seed (or deal corpus index) of the first game
+	private final int numWorkers; // number of worker JVMs
+	private final int gamesPerShard; // games per shard
+	private File dealCorpus = null; // deal corpus file (null to deal from seeds)
+	private List<String> jvmOptions = new ArrayList<String>(); // extra options of worker JVMs
+
+	// tournament state
+	private Shard[] shards; // all shards
+	private final LinkedBlockingQueue<Shard> pending = new LinkedBlockingQueue<Shard>(); // shards awaiting a worker
+	private final AtomicInteger remaining = new AtomicInteger(); // shards not yet completed
+	private volatile String failure = null; // reason the tournament failed (null if none)
+	private final Map<Long, Process> workers = new ConcurrentHashMap<Long, Process>(); // worker processes by process id
+	private String[] names; // player names reported by workers
+
+	/**
+	 * Shard - a range of games of one player under one point system.
+	 */
+	private static class Shard {
+		final int id; // shard index
+		final int system; // point system index
+		final int player; // player index
+		final long firstSeed; // seed (or deal index) of the first game
+		final int numGames; // number of games
+		int attempts = 0; // attempts made so far
+		int[] scores; // game scores (null until completed)
+
+		Shard(int id, int system, int player, long firstSeed, int numGames) {
+			this.id = id;
+			this.system = system;
+			this.player = player;
+			this.firstSeed = firstSeed;
+			this.numGames = numGames;
+		}
+	}
+
+	/**
+	 * Create a tournament coordinator.
+	 * @param playerSpecs player specifications (see PokerSquaresPlayerSpec)
+	 * @param systems point systems
+	 * @param gamesPerSystem games played by each player under each point system
+	 * @param startSeed seed of the first game; successive games use successive seeds
+	 * @param numWorkers number of worker JVMs
+	 * @param gamesPerShard games per shard handed to a worker
+	 */
+	public PokerSquaresCoordinator(List<String> playerSpecs, List<PokerSquaresPointSystem> systems,
+			int gamesPerSystem, long startSeed, int numWorkers, int gamesPerShard) {
+		this.playerSpecs = new ArrayList<String>(playerSpecs);
+		this.systems = new ArrayList<PokerSquaresPointSystem>(systems);
+		this.gamesPerSystem = gamesPerSystem;
+		this.startSeed = startSeed;
+		this.numWorkers = numWorkers;
+		this.gamesPerShard = Math.max(1, gamesPerShard);
+	}
+
+	/**
+	 * Play corpus deals instead of seeded deals; startSeed is then the index of the first deal.
+	 * @param dealCorpus deal corpus file readable by all workers
+	 */
+	public void setDealCorpus(File dealCorpus) {
+		this.dealCorpus = dealCorpus;
+	}
+
+	/**
+	 * Set extra options passed to worker JVMs (e.g. "-Xmx2g").
+	 * @param jvmOptions JVM options
+	 */
+	public void setJvmOptions(List<String> jvmOptions) {
+		this.jvmOptions = new ArrayList<String>(jvmOptions);
+	}
+
+	/**
+	 * Play the tournament and return the sum of the normalized tournament scores of each player.
+	 * @return tournament score of each player, in playerSpecs order
+	 * @throws IOException if the coordinator cannot listen, or a shard fails MAX_ATTEMPTS times
+	 */
+	public double[] playTournament() throws IOException {
+		ArrayList<Shard> list = new ArrayList<Shard>();
+		for (int s = 0; s < systems.size(); s++)
+			for (int p = 0; p < playerSpecs.size(); p++)
+				for (int g = 0; g < gamesPerSystem; g += gamesPerShard)
+					list.add(new Shard(list.size(), s, p, startSeed + g, Math.min(gamesPerShard, gamesPerSystem - g)));
+		shards = list.toArray(new Shard[list.size()]);
+		names = new String[playerSpecs.size()];
+		pending.addAll(list);
+		remaining.set(shards.length);
+
+		final ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+		Thread acceptor = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					while (true) {
+						final Socket socket = server.accept();
+						Thread handler = new Thread(new Runnable() {
+							@Override
+							public void run() {
+								serve(socket);
+							}
+						}, "PokerSquaresCoordinator-handler");
+						handler.setDaemon(true);
+						handler.start();
+					}
+				} catch (IOException e) { // server closed
+				}
+			}
+		}, "PokerSquaresCoordinator-acceptor");
+		acceptor.setDaemon(true);
+		acceptor.start();
+
+		int launches = 0;
+		int maxLaunches = numWorkers + MAX_ATTEMPTS * shards.length;
+		ArrayList<Process> processes = new ArrayList<Process>();
+		long start = System.currentTimeMillis();
+		try {
+			while (remaining.get() > 0 && failure == null) {
+				int alive = 0;
+				for (Process process : processes)
+					if (process.isAlive())
+						alive++;
+				for (; alive < Math.min(numWorkers, remaining.get()) && launches < maxLaunches; alive++, launches++)
+					processes.add(launch(server.getLocalPort()));
+				if (alive == 0)
+					failure = "no worker could be launched";
+				try {
+					Thread.sleep(POLL_MILLIS);
+				} catch (InterruptedException e) {
+					failure = "interrupted";
+				}
+			}
+		} finally {
+			server.close();
+			for (Process process : processes) {
+				try {
+					process.waitFor(1, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				process.destroyForcibly();
+			}
+		}
+		if (failure != null)
+			throw new IOException("Tournament failed: " + failure);
+
+		double[] tournamentScores = new double[playerSpecs.size()];
+		for (int s = 0; s < systems.size(); s++) {
+			System.out.println("Point System:\n" + systems.get(s));
+			long[] totalScores = new long[playerSpecs.size()];
+			for (Shard shard : shards)
+				if (shard.system == s)
+					for (int score : shard.scores)
+						totalScores[shard.player] += score;
+			for (int p = 0; p < playerSpecs.size(); p++)
+				System.out.printf("Player \"%s\" total score: %d\n", names[p], totalScores[p]);
+			PokerSquares.addNormalizedScores(tournamentScores, totalScores, names);
+		}
+		PokerSquares.printTournamentScores(tournamentScores, names);
+		System.out.printf("%d shards on %d worker launches in %d ms\n", shards.length, launches, System.currentTimeMillis() - start);
+		return tournamentScores;
+	}
+
+	/**
+	 * Launch a worker JVM that connects to the given port.
+	 */
+	private Process launch(int port) throws IOException {
+		ArrayList<String> command = new ArrayList<String>();
+		command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+		command.addAll(jvmOptions);
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(PokerSquaresCoordinator.class.getName());
+		command.add("-worker");
+		command.add(Integer.toString(port));
+		Process process = new ProcessBuilder(command).redirectOutput(ProcessBuilder.Redirect.DISCARD)
+				.redirectError(ProcessBuilder.Redirect.INHERIT).start();
+		workers.put(process.pid(), process);
+		return process;
+	}
+
+	/**
+	 * Hand shards to one connected worker until none remain or the worker fails.
+	 */
+	private void serve(Socket socket) {
+		Process process = null;
+		Shard shard = null;
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			socket.setSoTimeout((int) MARGIN_MILLIS);
+			if (in.readInt() != PROTOCOL_VERSION)
+				throw new IOException("protocol version mismatch");
+			process = workers.get(in.readLong());
+			while ((shard = next()) != null) {
+				out.writeInt(UNIT);
+				out.writeInt(shard.id);
+				for (int points : systems.get(shard.system).getScoreTable())
+					out.writeShort(points);
+				out.writeUTF(playerSpecs.get(shard.player));
+				out.writeUTF(dealCorpus == null ? "" : dealCorpus.getAbsolutePath());
+				out.writeLong(shard.firstSeed);
+				out.writeInt(shard.numGames);
+				out.flush();
+				socket.setSoTimeout((int) Math.min(Integer.MAX_VALUE,
+						shard.numGames * PokerSquares.GAME_MILLIS + PokerSquares.POINT_SYSTEM_MILLIS + MARGIN_MILLIS));
+				if (in.readInt() != shard.id)
+					throw new IOException("unexpected shard id");
+				if (in.readByte() != 0) { // the player failed deterministically; retrying cannot help
+					failure = "shard " + shard.id + " (" + playerSpecs.get(shard.player) + "): " + in.readUTF();
+					return;
+				}
+				String name = in.readUTF();
+				int[] scores = new int[in.readInt()];
+				for (int i = 0; i < scores.length; i++)
+					scores[i] = in.readInt();
+				synchronized (this) {
+					names[shard.player] = name;
+					shard.scores = scores;
+				}
+				shard = null;
+				remaining.decrementAndGet();
+			}
+			out.writeInt(QUIT);
+			out.flush();
+		} catch (IOException e) {
+			if (shard != null)
+				retry(shard, e);
+			if (process != null)
+				process.destroyForcibly(); // a replacement is launched by the coordinator loop
+		} finally {
+			try {
+				socket.close();
+			} catch (IOException e) {
+			}
+		}
+	}
+
+	/**
+	 * Take the next pending shard, waiting while shards are in progress elsewhere (and may yet be retried).
+	 * @return next shard, or null if all shards are done or the tournament failed
+	 */
+	private Shard next() {
+		while (remaining.get() > 0 && failure == null) {
+			try {
+				Shard shard = pending.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+				if (shard != null)
+					return shard;
+			} catch (InterruptedException e) {
+				return null;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Return a failed shard to the pending queue, or fail the tournament after MAX_ATTEMPTS attempts.
+	 */
+	private synchronized void retry(Shard shard, IOException e) {
+		System.err.printf("Shard %d (system %d, %s, seeds %d-%d) failed: %s\n", shard.id, shard.system,
+				playerSpecs.get(shard.player), shard.firstSeed, shard.firstSeed + shard.numGames - 1,
+				e instanceof SocketException || e.getMessage() == null ? e.toString() : e.getMessage());
+		if (++shard.attempts >= MAX_ATTEMPTS)
+			failure = "shard " + shard.id + " failed " + MAX_ATTEMPTS + " times";
+		else
+			pending.add(shard);
+	}
+
+	/**
+	 * Connect to a coordinator and play the shards it sends until told to quit.
+	 * @param port coordinator port on the loopback interface
+	 * @throws IOException if the connection fails
+	 */
+	public static void runWorker(int port) throws IOException {
+		Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			out.writeInt(PROTOCOL_VERSION);
+			out.writeLong(ProcessHandle.current().pid());
+			out.flush();
+			HashMap<String, PokerSquaresPlayer> players = new HashMap<String, PokerSquaresPlayer>();
+			HashMap<String, PokerSquaresDealCorpus> corpora = new HashMap<String, PokerSquaresDealCorpus>();
+			String gameKey = null; // player specification and point system of game
+			PokerSquares game = null;
+			while (in.readInt() == UNIT) {
+				int id = in.readInt();
+				int[] scoreTable = new int[PokerHand.NUM_HANDS];
+				for (int i = 0; i < scoreTable.length; i++)
+					scoreTable[i] = in.readShort();
+				String spec = in.readUTF();
+				String corpusPath = in.readUTF();
+				long firstSeed = in.readLong();
+				int numGames = in.readInt();
+				out.writeInt(id);
+				try {
+					String key = spec + Arrays.toString(scoreTable);
+					if (!key.equals(gameKey)) {
+						PokerSquaresPlayer player = players.get(spec);
+						if (player == null) {
+							player = PokerSquaresPlayerSpec.create(spec);
+							players.put(spec, player);
+						}
+						game = new PokerSquares(player, new PokerSquaresPointSystem(scoreTable));
+						gameKey = key;
+					}
+					PokerSquaresDealCorpus corpus = null;
+					if (!corpusPath.isEmpty()) {
+						corpus = corpora.get(corpusPath);
+						if (corpus == null) {
+							corpus = new PokerSquaresDealCorpus(new File(corpusPath));
+							corpora.put(corpusPath, corpus);
+						}
+					}
+					game.setDealCorpus(corpus);
+					int[] scores = new int[numGames];
+					for (int i = 0; i < numGames; i++)
+						scores[i] = corpus == null ? game.play(false, firstSeed + i) : game.playDeal(false, firstSeed + i);
+					out.writeByte(0);
+					out.writeUTF(players.get(spec).getName());
+					out.writeInt(numGames);
+					for (int score : scores)
+						out.writeInt(score);
+				} catch (IllegalArgumentException | IllegalStateException | IOException e) {
+					out.writeByte(1);
+					out.writeUTF(String.valueOf(e.getMessage()));
+				}
+				out.flush();
+			}
+		} catch (EOFException e) { // coordinator closed the connection
+		} finally {
+			socket.close();
+		}
+	}
+
+	/**
+	 * Run a tournament coordinator, or (with -worker) a worker.
+	 * @param args [-workers N] [-games G] [-shard S] [-seed X] [-corpus file] [-system name]... [-J jvmOption]...
+	 *   playerSpec..., or -worker port
+	 * @throws IOException if the tournament fails
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length == 2 && args[0].equals("-worker")) {
+			runWorker(Integer.parseInt(args[1]));
+			System.exit(0); // players may have left non-daemon threads
+		}
+		int numWorkers = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+		int games = 10;
+		int shard = 5;
+		long seed = 0L;
+		File corpus = null;
+		ArrayList<PokerSquaresPointSystem> systems = new ArrayList<PokerSquaresPointSystem>();
+		ArrayList<String> specs = new ArrayList<String>();
+		ArrayList<String> jvmOptions = new ArrayList<String>();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-workers"))
+				numWorkers = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-games"))
+				games = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-shard"))
+				shard = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-seed"))
+				seed = Long.parseLong(args[++i]);
+			else if (args[i].equals("-corpus"))
+				corpus = new File(args[++i]);
+			else if (args[i].equals("-system"))
+				systems.add(PokerSquaresPlayerSpec.pointSystem(args[++i]));
+			else if (args[i].equals("-J"))
+				jvmOptions.add(args[++i]);
+			else
+				specs.add(args[i]);
+		}
+		if (specs.isEmpty()) {
+			System.err.println("usage: java PokerSquaresCoordinator [-workers N] [-games G] [-shard S] [-seed X] [-corpus file] "
+					+ "[-system name]... [-J jvmOption]... playerSpec...");
+			return;
+		}
+		if (systems.isEmpty())
+			systems.add(PokerSquaresPointSystem.getBritishPointSystem());
+		PokerSquaresCoordinator coordinator = new PokerSquaresCoordinator(specs, systems, games, seed, numWorkers, shard);
+		coordinator.setDealCorpus(corpus);
+		coordinator.setJvmOptions(jvmOptions);
+		coordinator.playTournament();
+	}
+}
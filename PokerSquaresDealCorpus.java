@@ -0,0 +1,189 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * PokerSquaresDealCorpus - a file of pre-generated deals, memory-mapped for zero-copy access by any number of
+ * threads and processes.
+ *
+ * A deal is the sequence of the 25 card ids drawn in one game.  Deals are generated by a partial Fisher-Yates
+ * shuffle driven by a self-contained SplitMix64 generator seeded from the corpus seed and the deal index, so
+ * a corpus is identical on every JVM and JDK version (unlike deals from java.util.Random and
+ * Collections.shuffle).  PokerSquares plays corpus deals by index (see PokerSquares.setDealCorpus).
+ *
+ * File format: int magic, int bytes per deal (25), long number of deals, long seed, then the deals (one byte
+ * per card id).  Files of more than 2^31 bytes are mapped as several segments.
+ *
+ * Author: Caleb Reath
+ */
+public class PokerSquaresDealCorpus implements Closeable {
+	public static final int DEAL_BYTES = PokerSquares.SIZE * PokerSquares.SIZE; // card ids per deal
+	private static final int MAGIC = 0x50534443; // file magic number ("PSDC")
+	private static final int HEADER_BYTES = 24; // bytes before the first deal
+	private static final long DEALS_PER_SEGMENT = 1L << 26; // deals per mapped segment (1.6 GB)
+	private static final int WRITE_DEALS = 1 << 14; // deals per channel write during generation
+
+	private final RandomAccessFile file; // open corpus file
+	private final MappedByteBuffer[] segments; // mapped deal segments
+	private final long numDeals; // number of deals
+	private final long seed; // corpus seed
+
+	/**
+	 * Map an existing deal corpus read-only.
+	 * @param corpusFile corpus file written by generate()
+	 * @throws IOException if the file cannot be read or is not a deal corpus
+	 */
+	public PokerSquaresDealCorpus(File corpusFile) throws IOException {
+		file = new RandomAccessFile(corpusFile, "r");
+		try {
+			if (file.readInt() != MAGIC || file.readInt() != DEAL_BYTES)
+				throw new IOException("Not a deal corpus: " + corpusFile);
+			numDeals = file.readLong();
+			seed = file.readLong();
+			if (file.length() < HEADER_BYTES + numDeals * DEAL_BYTES)
+				throw new IOException("Truncated deal corpus: " + corpusFile);
+			FileChannel channel = file.getChannel();
+			segments = new MappedByteBuffer[(int) ((numDeals + DEALS_PER_SEGMENT - 1) / DEALS_PER_SEGMENT)];
+			for (int s = 0; s < segments.length; s++) {
+				long first = s * DEALS_PER_SEGMENT;
+				long deals = Math.min(DEALS_PER_SEGMENT, numDeals - first);
+				segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES + first * DEAL_BYTES, deals * DEAL_BYTES);
+			}
+		} catch (IOException e) {
+			file.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Write a corpus of deals.
+	 * @param corpusFile destination file (overwritten)
+	 * @param numDeals number of deals
+	 * @param seed corpus seed
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void generate(File corpusFile, long numDeals, long seed) throws IOException {
+		RandomAccessFile out = new RandomAccessFile(corpusFile, "rw");
+		try {
+			out.setLength(0);
+			FileChannel channel = out.getChannel();
+			ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_DEALS * DEAL_BYTES);
+			buffer.putInt(MAGIC).putInt(DEAL_BYTES).putLong(numDeals).putLong(seed);
+			byte[] deck = new byte[Card.NUM_CARDS];
+			for (long d = 0; d < numDeals; d++) {
+				if (buffer.remaining() < DEAL_BYTES)
+					write(channel, buffer);
+				shuffle(deck, seed, d);
+				buffer.put(deck, 0, DEAL_BYTES);
+			}
+			write(channel, buffer);
+		} finally {
+			out.close();
+		}
+	}
+
+	private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+		buffer.clear();
+	}
+
+	/**
+	 * Fill the first DEAL_BYTES entries of deck with the given deal by a partial Fisher-Yates shuffle.
+	 * @param deck card id array of length Card.NUM_CARDS
+	 * @param seed corpus seed
+	 * @param index deal index
+	 */
+	static void shuffle(byte[] deck, long seed, long index) {
+		for (int i = 0; i < deck.length; i++)
+			deck[i] = (byte) i;
+		long state = seed + mix(index + 1); // distinct generator state for each deal
+		for (int i = 0; i < DEAL_BYTES; i++) {
+			state += GOLDEN_GAMMA;
+			int j = i + (int) (((mix(state) >>> 32) * (deck.length - i)) >>> 32); // uniform in [i, deck.length)
+			byte swap = deck[i];
+			deck[i] = deck[j];
+			deck[j] = swap;
+		}
+	}
+
+	private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L; // SplitMix64 increment
+
+	/**
+	 * SplitMix64 finalizer.
+	 */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Get the number of deals.
+	 * @return number of deals
+	 */
+	public long size() {
+		return numDeals;
+	}
+
+	/**
+	 * Get the corpus seed.
+	 * @return seed the corpus was generated with
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Get the id of the card drawn at the given turn of a deal.
+	 * @param deal deal index
+	 * @param turn turn index (0-24)
+	 * @return card id
+	 */
+	public int getCardId(long deal, int turn) {
+		if (deal < 0 || deal >= numDeals)
+			throw new IndexOutOfBoundsException("Deal " + deal + " of " + numDeals);
+		return segments[(int) (deal / DEALS_PER_SEGMENT)].get((int) (deal % DEALS_PER_SEGMENT) * DEAL_BYTES + turn);
+	}
+
+	/**
+	 * Copy the cards of a deal, in draw order, into the given array.
+	 * @param deal deal index
+	 * @param cards array of length at least DEAL_BYTES
+	 */
+	public void getDeal(long deal, Card[] cards) {
+		for (int turn = 0; turn < DEAL_BYTES; turn++)
+			cards[turn] = Card.getCard(getCardId(deal, turn));
+	}
+
+	/* (non-Javadoc)
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		file.close();
+	}
+
+	/**
+	 * Generate a deal corpus from the command line.
+	 * @param args corpus file, number of deals, [seed]
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("usage: java PokerSquaresDealCorpus corpusFile numDeals [seed]");
+			return;
+		}
+		File corpusFile = new File(args[0]);
+		long start = System.currentTimeMillis();
+		generate(corpusFile, Long.parseLong(args[1]), args.length > 2 ? Long.parseLong(args[2]) : 0L);
+		PokerSquaresDealCorpus corpus = new PokerSquaresDealCorpus(corpusFile);
+		System.out.printf("%d deals written in %d ms\n", corpus.size(), System.currentTimeMillis() - start);
+		corpus.close();
+	}
+}
@@ -0,0 +1,276 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * PokerSquaresGameLog - a compact, append-only binary log of Poker Squares games.
+ *
+ * When a log is attached to a PokerSquares object (PokerSquares.setGameLog), each game is recorded with its
+ * seed, point system, player name and full deal order, followed by each getPlay result with the milliseconds
+ * remaining that were passed to the player and the call's latency, and finally the game score and outcome.
+ * A game is buffered in memory while it is played and written when it ends, so logging adds no I/O to the
+ * timed part of a game.  Logs are read back with read(File) and re-driven by PokerSquaresReplay.
+ *
+ * Game record format (big-endian, as written by DataOutputStream):
+ *   int magic, byte version, byte hasSeed, long seed, UTF player name, short[10] hand scores,
+ *   byte[25] deal order (card ids), byte number of plays,
+ *   per play: byte position (row * SIZE + col, or -1 if illegal), long millis remaining, int latency (microseconds),
+ *   int final score, byte outcome.
+ *
+ * Author: Caleb Reath
+ */
+public class PokerSquaresGameLog implements Closeable {
+	private static final int MAGIC = 0x50534C47; // game record magic number ("PSLG")
+	private static final int VERSION = 1; // game record format version
+	private static final int NUM_POS = PokerSquares.SIZE * PokerSquares.SIZE;
+
+	public static final int OUTCOME_COMPLETE = 0; // all cards placed
+	public static final int OUTCOME_TIMEOUT = 1; // player ran out of time
+	public static final int OUTCOME_ILLEGAL = 2; // player made an illegal play
+	public static final int OUTCOME_EXCEPTION = 3; // player threw an exception
+
+	private final DataOutputStream out; // log file stream
+
+	// game being recorded
+	private Game game;
+
+	/**
+	 * Open a log file for appending.
+	 * @param file log file (created if absent)
+	 * @throws IOException if the file cannot be opened
+	 */
+	public PokerSquaresGameLog(File file) throws IOException {
+		out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+	}
+
+	/**
+	 * Start recording a game.
+	 * @param hasSeed whether the game was dealt from a known seed
+	 * @param seed seed of the deal
+	 * @param playerName name of the player
+	 * @param system point system
+	 * @param deal card ids in the order they will be drawn
+	 */
+	void beginGame(boolean hasSeed, long seed, String playerName, PokerSquaresPointSystem system, int[] deal) {
+		game = new Game(hasSeed, seed, playerName, system.getScoreTable(), deal);
+	}
+
+	/**
+	 * Record a play of the current game.
+	 * @param position row-major position of the play, or -1 if illegal
+	 * @param millisRemaining milliseconds remaining that were passed to getPlay
+	 * @param latencyNanos nanoseconds spent in getPlay
+	 */
+	void recordPlay(int position, long millisRemaining, long latencyNanos) {
+		int i = game.numPlays++;
+		game.positions[i] = position;
+		game.millisRemaining[i] = millisRemaining;
+		game.latencyMicros[i] = (int) Math.min(Integer.MAX_VALUE, latencyNanos / 1000);
+	}
+
+	/**
+	 * Finish the current game and append it to the log.
+	 * @param score final game score
+	 * @param outcome one of the OUTCOME constants
+	 * @throws IOException if the record cannot be written
+	 */
+	void endGame(int score, int outcome) throws IOException {
+		if (game == null) // game ended before its deal was recorded
+			return;
+		game.score = score;
+		game.outcome = outcome;
+		write(game);
+		game = null;
+	}
+
+	/**
+	 * Append a game record to the log.
+	 */
+	private void write(Game game) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeByte(VERSION);
+		out.writeBoolean(game.hasSeed);
+		out.writeLong(game.seed);
+		out.writeUTF(game.playerName);
+		for (int points : game.scoreTable)
+			out.writeShort(points);
+		for (int cardId : game.deal)
+			out.writeByte(cardId);
+		out.writeByte(game.numPlays);
+		for (int i = 0; i < game.numPlays; i++) {
+			out.writeByte(game.positions[i]);
+			out.writeLong(game.millisRemaining[i]);
+			out.writeInt(game.latencyMicros[i]);
+		}
+		out.writeInt(game.score);
+		out.writeByte(game.outcome);
+		out.flush();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+
+	/**
+	 * Read all game records of a log file.
+	 * @param file log file
+	 * @return games in the order they were recorded
+	 * @throws IOException if the file cannot be read or is not a game log
+	 */
+	public static ArrayList<Game> read(File file) throws IOException {
+		ArrayList<Game> games = new ArrayList<Game>();
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			while (true) {
+				int magic;
+				try {
+					magic = in.readInt();
+				} catch (EOFException e) {
+					break;
+				}
+				if (magic != MAGIC || in.readByte() != VERSION)
+					throw new IOException("Not a game log record at game " + games.size() + ": " + file);
+				boolean hasSeed = in.readBoolean();
+				long seed = in.readLong();
+				String playerName = in.readUTF();
+				int[] scoreTable = new int[PokerHand.NUM_HANDS];
+				for (int i = 0; i < scoreTable.length; i++)
+					scoreTable[i] = in.readShort();
+				int[] deal = new int[NUM_POS];
+				for (int i = 0; i < NUM_POS; i++)
+					deal[i] = in.readByte();
+				Game game = new Game(hasSeed, seed, playerName, scoreTable, deal);
+				game.numPlays = in.readByte();
+				for (int i = 0; i < game.numPlays; i++) {
+					game.positions[i] = in.readByte();
+					game.millisRemaining[i] = in.readLong();
+					game.latencyMicros[i] = in.readInt();
+				}
+				game.score = in.readInt();
+				game.outcome = in.readByte();
+				games.add(game);
+			}
+		} finally {
+			in.close();
+		}
+		return games;
+	}
+
+	/**
+	 * Game - one recorded game.
+	 */
+	public static class Game {
+		private final boolean hasSeed; // whether the deal came from a known seed
+		private final long seed; // seed of the deal
+		private final String playerName; // name of the player
+		private final int[] scoreTable; // points for each PokerHand id
+		private final int[] deal; // card ids in draw order
+		private int numPlays; // number of recorded plays
+		private final int[] positions = new int[NUM_POS]; // row-major position of each play (-1 if illegal)
+		private final long[] millisRemaining = new long[NUM_POS]; // milliseconds remaining passed to each getPlay
+		private final int[] latencyMicros = new int[NUM_POS]; // microseconds spent in each getPlay
+		private int score; // final game score
+		private int outcome; // OUTCOME constant
+
+		private Game(boolean hasSeed, long seed, String playerName, int[] scoreTable, int[] deal) {
+			this.hasSeed = hasSeed;
+			this.seed = seed;
+			this.playerName = playerName;
+			this.scoreTable = scoreTable.clone();
+			this.deal = deal.clone();
+		}
+
+		/**
+		 * @return whether the deal came from a known seed
+		 */
+		public boolean hasSeed() {
+			return hasSeed;
+		}
+
+		/**
+		 * @return seed of the deal (meaningful only if hasSeed())
+		 */
+		public long getSeed() {
+			return seed;
+		}
+
+		/**
+		 * @return name of the recorded player
+		 */
+		public String getPlayerName() {
+			return playerName;
+		}
+
+		/**
+		 * @return point system of the game
+		 */
+		public PokerSquaresPointSystem getPointSystem() {
+			return new PokerSquaresPointSystem(scoreTable.clone());
+		}
+
+		/**
+		 * @param turn turn index (0-24)
+		 * @return card drawn at the given turn
+		 */
+		public Card getCard(int turn) {
+			return Card.getCard(deal[turn]);
+		}
+
+		/**
+		 * @return number of recorded plays (25 unless the game was lost early)
+		 */
+		public int getNumPlays() {
+			return numPlays;
+		}
+
+		/**
+		 * @param turn turn index (0-24)
+		 * @return row-major position of the play at the given turn, or -1 if illegal
+		 */
+		public int getPosition(int turn) {
+			return positions[turn];
+		}
+
+		/**
+		 * @param turn turn index (0-24)
+		 * @return milliseconds remaining passed to getPlay at the given turn
+		 */
+		public long getMillisRemaining(int turn) {
+			return millisRemaining[turn];
+		}
+
+		/**
+		 * @param turn turn index (0-24)
+		 * @return microseconds spent in getPlay at the given turn
+		 */
+		public int getLatencyMicros(int turn) {
+			return latencyMicros[turn];
+		}
+
+		/**
+		 * @return final game score
+		 */
+		public int getScore() {
+			return score;
+		}
+
+		/**
+		 * @return PokerSquaresGameLog OUTCOME constant
+		 */
+		public int getOutcome() {
+			return outcome;
+		}
+	}
+}
@@ -0,0 +1,187 @@
+import java.util.Random;
+
+/**
+ * PokerSquaresHandClassifier - classifies many (possibly partial) lines per call.
+ *
+ * Lines are given in structure-of-arrays form: for line i, sizes[i] is its number of cards, rankMasks[i] has
+ * bit r set when rank r is present, suitMasks[i] has bit s set when suit s is present and maxRankCounts[i] is
+ * the largest number of cards of one rank.  These determine the hand class without looking at single cards:
+ * with d distinct ranks, the line has sizes[i] - d duplicate cards, which together with the largest rank count
+ * tells pairs, two pair, three of a kind, full house and four of a kind apart, and a full line is a flush if it
+ * has one suit and a straight if its 5 distinct ranks are consecutive (or A, T, J, Q, K).  The classification
+ * agrees with PokerHand.getPokerHandId on the same cards.
+ *
+ * The classification is branch-free and identical for every line, so it maps onto SIMD lanes.  If the class
+ * PokerSquaresVectorHandClassifier (in incubator/, built on the jdk.incubator.vector module) can be loaded, it
+ * classifies batches of at least VECTOR_MIN_LINES lines; otherwise, or when the JVM was started without
+ * --add-modules jdk.incubator.vector, the scalar path is used.  To build and enable the vector kernel:
+ *   javac --add-modules jdk.incubator.vector -cp . -d . incubator/PokerSquaresVectorHandClassifier.java
+ *   java --add-modules jdk.incubator.vector ...
+ *
+ * Author: Caleb Reath
+ */
+public class PokerSquaresHandClassifier {
+	public static final int VECTOR_MIN_LINES = 16; // smallest batch handed to the vector kernel
+	public static final int ROYAL_RANKS = 0x1E01; // rank mask of A, T, J, Q, K
+	private static final int SIZE = PokerSquares.SIZE; // number of cards in a full line
+	private static final int[] DUPLICATE_HANDS = new int[(SIZE + 1) * (SIZE + 1)]; // hand by duplicate cards * (SIZE + 1) + largest rank count
+
+	static {
+		DUPLICATE_HANDS[1 * (SIZE + 1) + 2] = PokerHand.ONE_PAIR.id;
+		DUPLICATE_HANDS[2 * (SIZE + 1) + 2] = PokerHand.TWO_PAIR.id;
+		DUPLICATE_HANDS[2 * (SIZE + 1) + 3] = PokerHand.THREE_OF_A_KIND.id;
+		DUPLICATE_HANDS[3 * (SIZE + 1) + 3] = PokerHand.FULL_HOUSE.id;
+		DUPLICATE_HANDS[3 * (SIZE + 1) + 4] = PokerHand.FOUR_OF_A_KIND.id;
+	}
+
+	/**
+	 * Kernel - a batch classification routine (implemented by the vector kernel).
+	 */
+	public interface Kernel {
+		/**
+		 * Classify lines 0 through numLines - 1 (see PokerSquaresHandClassifier.classify).
+		 */
+		void classify(int numLines, int[] sizes, int[] rankMasks, int[] suitMasks, int[] maxRankCounts, int[] hands);
+	}
+
+	private static final Kernel VECTOR_KERNEL = loadVectorKernel(); // vector kernel (null if unavailable)
+
+	/**
+	 * Load the vector kernel if its class and the jdk.incubator.vector module are available.
+	 */
+	private static Kernel loadVectorKernel() {
+		try {
+			Kernel kernel = (Kernel) Class.forName("PokerSquaresVectorHandClassifier").getDeclaredConstructor().newInstance();
+			int[] hands = new int[1];
+			kernel.classify(1, new int[] {SIZE}, new int[] {ROYAL_RANKS}, new int[] {1}, new int[] {1}, hands); // fails without the module
+			return hands[0] == PokerHand.ROYAL_FLUSH.id ? kernel : null;
+		} catch (Throwable e) { // class or module missing
+			return null;
+		}
+	}
+
+	/**
+	 * @return whether batches are classified by the vector kernel
+	 */
+	public static boolean isVectorized() {
+		return VECTOR_KERNEL != null;
+	}
+
+	/**
+	 * Classify lines 0 through numLines - 1.
+	 * @param numLines number of lines
+	 * @param sizes number of cards of each line
+	 * @param rankMasks bit r set when rank r is present in the line
+	 * @param suitMasks bit s set when suit s is present in the line
+	 * @param maxRankCounts largest number of cards of one rank in the line
+	 * @param hands array to fill with the PokerHand id of each line
+	 */
+	public static void classify(int numLines, int[] sizes, int[] rankMasks, int[] suitMasks, int[] maxRankCounts, int[] hands) {
+		if (VECTOR_KERNEL != null && numLines >= VECTOR_MIN_LINES)
+			VECTOR_KERNEL.classify(numLines, sizes, rankMasks, suitMasks, maxRankCounts, hands);
+		else
+			classifyScalar(0, numLines, sizes, rankMasks, suitMasks, maxRankCounts, hands);
+	}
+
+	/**
+	 * Classify lines from through to - 1 one at a time.
+	 * @param from index of the first line
+	 * @param to index after the last line
+	 * @param sizes number of cards of each line
+	 * @param rankMasks bit r set when rank r is present in the line
+	 * @param suitMasks bit s set when suit s is present in the line
+	 * @param maxRankCounts largest number of cards of one rank in the line
+	 * @param hands array to fill with the PokerHand id of each line
+	 */
+	public static void classifyScalar(int from, int to, int[] sizes, int[] rankMasks, int[] suitMasks, int[] maxRankCounts, int[] hands) {
+		for (int i = from; i < to; i++) {
+			int size = sizes[i];
+			int rankMask = rankMasks[i];
+			int suitMask = suitMasks[i];
+			int distinct = Integer.bitCount(rankMask);
+			int hand = DUPLICATE_HANDS[(size - distinct) * (SIZE + 1) + maxRankCounts[i]];
+			boolean flush = size == SIZE && (suitMask & (suitMask - 1)) == 0;
+			boolean straight = size == SIZE && distinct == SIZE && (rankMask == ROYAL_RANKS || rankMask == (rankMask & -rankMask) * 0x1F);
+			if (straight)
+				hand = flush ? (rankMask == ROYAL_RANKS ? PokerHand.ROYAL_FLUSH.id : PokerHand.STRAIGHT_FLUSH.id) : PokerHand.STRAIGHT.id;
+			else if (flush)
+				hand = PokerHand.FLUSH.id;
+			hands[i] = hand;
+		}
+	}
+
+	/**
+	 * Store the structure-of-arrays form of a line of Card objects.
+	 * @param hand line of Card objects, which may contain null values
+	 * @param i line index
+	 * @param sizes number of cards of each line
+	 * @param rankMasks bit r set when rank r is present in the line
+	 * @param suitMasks bit s set when suit s is present in the line
+	 * @param maxRankCounts largest number of cards of one rank in the line
+	 */
+	public static void setLine(Card[] hand, int i, int[] sizes, int[] rankMasks, int[] suitMasks, int[] maxRankCounts) {
+		int size = 0, rankMask = 0, suitMask = 0, maxRankCount = 0;
+		int[] rankCounts = new int[Card.NUM_RANKS];
+		for (Card card : hand)
+			if (card != null) {
+				size++;
+				rankMask |= 1 << card.getRank();
+				suitMask |= 1 << card.getSuit();
+				maxRankCount = Math.max(maxRankCount, ++rankCounts[card.getRank()]);
+			}
+		sizes[i] = size;
+		rankMasks[i] = rankMask;
+		suitMasks[i] = suitMask;
+		maxRankCounts[i] = maxRankCount;
+	}
+
+	/**
+	 * Check the batch classification against PokerHand on random partial and full lines and compare the speed
+	 * of the scalar and vector paths.
+	 * @param args [number of lines] [seed]
+	 */
+	public static void main(String[] args) {
+		int numLines = args.length > 0 ? Integer.parseInt(args[0]) : 1 << 20;
+		Random random = new Random(args.length > 1 ? Long.parseLong(args[1]) : 0L);
+		int[] sizes = new int[numLines], rankMasks = new int[numLines], suitMasks = new int[numLines], maxRankCounts = new int[numLines];
+		int[] expected = new int[numLines], hands = new int[numLines];
+		Card[] deck = Card.getAllCards();
+		for (int i = 0; i < numLines; i++) {
+			Card[] hand = new Card[SIZE];
+			int size = random.nextInt(4) == 0 ? random.nextInt(SIZE + 1) : SIZE;
+			for (int j = 0; j < size; j++) { // partial Fisher-Yates draw of distinct cards
+				int k = j + random.nextInt(deck.length - j);
+				Card card = deck[k];
+				deck[k] = deck[j];
+				deck[j] = card;
+				hand[j] = card;
+			}
+			if (i % 64 == 0 && size == SIZE) { // make straights and flushes common enough to check
+				int suit = random.nextInt(Card.NUM_SUITS);
+				int low = random.nextInt(Card.NUM_RANKS - SIZE + 2);
+				for (int j = 0; j < SIZE; j++)
+					hand[j] = Card.getCard(suit * Card.NUM_RANKS + (low + j) % Card.NUM_RANKS);
+			}
+			expected[i] = PokerHand.getPokerHandId(hand);
+			setLine(hand, i, sizes, rankMasks, suitMasks, maxRankCounts);
+		}
+		System.out.println("Vector kernel: " + (isVectorized() ? "loaded" : "unavailable"));
+		for (int trial = 0; trial < 5; trial++) {
+			long start = System.nanoTime();
+			classifyScalar(0, numLines, sizes, rankMasks, suitMasks, maxRankCounts, hands);
+			long scalarNanos = System.nanoTime() - start;
+			int mismatches = 0;
+			for (int i = 0; i < numLines; i++)
+				if (hands[i] != expected[i])
+					mismatches++;
+			start = System.nanoTime();
+			classify(numLines, sizes, rankMasks, suitMasks, maxRankCounts, hands);
+			long batchNanos = System.nanoTime() - start;
+			for (int i = 0; i < numLines; i++)
+				if (hands[i] != expected[i])
+					mismatches++;
+			System.out.printf("%d lines: scalar %.2f ns/line, batch %.2f ns/line, %d mismatches\n", numLines,
+					(double) scalarNanos / numLines, (double) batchNanos / numLines, mismatches);
+		}
+	}
+}
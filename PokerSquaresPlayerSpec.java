@@ -0,0 +1,221 @@
+import java.io.File;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+
+/**
+ * PokerSquaresPlayerSpec - creates players and point systems from short text specifications, so that they can
+ * be named on command lines and sent to other processes.
+ *
+ * A player specification is a class name with optional constructor arguments, e.g. "RandomPlayer",
+ * "GreedyMCPlayer(2)" or "Reath_ParallelMCTSPlayer(4, 2, 1048576)".  Arguments are separated by commas and may
+ * be integers, decimals, true/false, null, point system names (see pointSystem) or strings (optionally in
+ * double quotes).  A public constructor matches if it has the same number of parameters and every argument
+ * converts to its parameter type.  Constructors whose parameter types are exactly the types of the literals
+ * (int for 1, double for 1.0, boolean, String for other text) are preferred to those that need a conversion
+ * (e.g. 1 to long or double); if more than one constructor remains, the specification is ambiguous and
+ * rejected, so the choice never depends on the order of the constructors.
+ *
+ * Author: Caleb Reath
+ */
+public class PokerSquaresPlayerSpec {
+
+	/**
+	 * Create a player from a specification.
+	 * @param spec player specification
+	 * @return new player
+	 * @throws IllegalArgumentException if the specification names no class or matches no constructor
+	 */
+	public static PokerSquaresPlayer create(String spec) {
+		spec = spec.trim();
+		int open = spec.indexOf('(');
+		String className = open < 0 ? spec : spec.substring(0, open).trim();
+		String[] args = new String[0];
+		if (open >= 0) {
+			if (!spec.endsWith(")"))
+				throw new IllegalArgumentException("Unbalanced parentheses in player specification: " + spec);
+			args = split(spec.substring(open + 1, spec.length() - 1));
+		}
+		Class<?> playerClass;
+		try {
+			playerClass = Class.forName(className);
+		} catch (ClassNotFoundException e) {
+			throw new IllegalArgumentException("Unknown player class: " + className);
+		}
+		if (!PokerSquaresPlayer.class.isAssignableFrom(playerClass))
+			throw new IllegalArgumentException(className + " is not a PokerSquaresPlayer");
+		Constructor<?> best = null; // chosen constructor
+		Object[] bestValues = null; // converted arguments of the chosen constructor
+		boolean bestExact = false; // whether the chosen constructor takes the literal types exactly
+		int numBest = 0; // number of constructors as good as the chosen one
+		for (Constructor<?> constructor : playerClass.getConstructors()) {
+			Class<?>[] types = constructor.getParameterTypes();
+			if (types.length != args.length)
+				continue;
+			Object[] values = new Object[args.length];
+			boolean match = true;
+			boolean exact = true;
+			for (int i = 0; i < args.length && match; i++) {
+				try {
+					values[i] = convert(args[i], types[i]);
+					exact &= isExact(args[i], types[i]);
+				} catch (IllegalArgumentException e) {
+					match = false;
+				}
+			}
+			if (!match)
+				continue;
+			if (best == null || exact && !bestExact) {
+				best = constructor;
+				bestValues = values;
+				bestExact = exact;
+				numBest = 1;
+			}
+			else if (exact == bestExact)
+				numBest++;
+		}
+		if (best == null)
+			throw new IllegalArgumentException("No constructor of " + className + " matches " + spec);
+		if (numBest > 1)
+			throw new IllegalArgumentException("Ambiguous player specification " + spec + ": " + numBest + " constructors of "
+					+ className + " match (write decimal arguments with a decimal point, e.g. 1.0)");
+		try {
+			return (PokerSquaresPlayer) best.newInstance(bestValues);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalArgumentException("Cannot create player " + spec + ": " + e.getCause(), e);
+		}
+	}
+
+	/**
+	 * Split a comma-separated argument list, respecting double quotes.
+	 */
+	private static String[] split(String list) {
+		ArrayList<String> args = new ArrayList<String>();
+		if (list.trim().isEmpty())
+			return new String[0];
+		StringBuilder sb = new StringBuilder();
+		boolean quoted = false;
+		for (char c : list.toCharArray()) {
+			if (c == '"')
+				quoted = !quoted;
+			if (c == ',' && !quoted) {
+				args.add(sb.toString().trim());
+				sb.setLength(0);
+			}
+			else
+				sb.append(c);
+		}
+		args.add(sb.toString().trim());
+		return args.toArray(new String[args.size()]);
+	}
+
+	/**
+	 * Convert an argument to the given parameter type.
+	 * @throws IllegalArgumentException if the argument does not convert
+	 */
+	private static Object convert(String arg, Class<?> type) {
+		if (arg.equals("null")) {
+			if (type.isPrimitive())
+				throw new IllegalArgumentException();
+			return null;
+		}
+		if (type == int.class || type == Integer.class)
+			return Integer.parseInt(arg);
+		if (type == long.class || type == Long.class)
+			return Long.parseLong(arg);
+		if (type == double.class || type == Double.class)
+			return Double.parseDouble(arg);
+		if (type == boolean.class || type == Boolean.class) {
+			if (!arg.equals("true") && !arg.equals("false"))
+				throw new IllegalArgumentException();
+			return Boolean.parseBoolean(arg);
+		}
+		String string = arg.length() >= 2 && arg.startsWith("\"") && arg.endsWith("\"") ? arg.substring(1, arg.length() - 1) : arg;
+		if (type == String.class)
+			return string;
+		if (type == File.class)
+			return new File(string);
+		if (type == PokerSquaresPointSystem.class)
+			return pointSystem(string);
+		throw new IllegalArgumentException();
+	}
+
+	/**
+	 * Return whether a convertible argument has exactly the given parameter type as a literal: int (or long,
+	 * if out of int range) for integers, double for decimals, boolean for true/false, any reference type for
+	 * null and String (or a type built from text) for other arguments.
+	 */
+	private static boolean isExact(String arg, Class<?> type) {
+		if (arg.equals("null"))
+			return true;
+		if (type == int.class || type == Integer.class)
+			return true;
+		if (type == long.class || type == Long.class) {
+			long value = Long.parseLong(arg);
+			return value != (int) value;
+		}
+		if (type == double.class || type == Double.class)
+			return !isInteger(arg);
+		if (type == boolean.class || type == Boolean.class)
+			return true;
+		return !isNumber(arg) && !arg.equals("true") && !arg.equals("false");
+	}
+
+	/**
+	 * Return whether an argument is an integer literal.
+	 */
+	private static boolean isInteger(String arg) {
+		try {
+			Long.parseLong(arg);
+			return true;
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Return whether an argument is a numeric literal.
+	 */
+	private static boolean isNumber(String arg) {
+		try {
+			Double.parseDouble(arg);
+			return true;
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Get a point system by name: british, american, ameritish, hypercorner, random, single or ten
+	 * comma-separated hand scores in PokerHand order.  Randomized systems use the PokerSquaresPointSystem
+	 * generator (see PokerSquaresPointSystem.setSeed).
+	 * @param name point system name
+	 * @return point system
+	 * @throws IllegalArgumentException if the name is unknown
+	 */
+	public static PokerSquaresPointSystem pointSystem(String name) {
+		name = name.trim();
+		if (name.equalsIgnoreCase("british"))
+			return PokerSquaresPointSystem.getBritishPointSystem();
+		if (name.equalsIgnoreCase("american"))
+			return PokerSquaresPointSystem.getAmericanPointSystem();
+		if (name.equalsIgnoreCase("ameritish"))
+			return PokerSquaresPointSystem.getAmeritishPointSystem();
+		if (name.equalsIgnoreCase("hypercorner"))
+			return PokerSquaresPointSystem.getHypercornerPointSystem();
+		if (name.equalsIgnoreCase("random"))
+			return PokerSquaresPointSystem.getRandomPointSystem();
+		if (name.equalsIgnoreCase("single"))
+			return PokerSquaresPointSystem.getSingleHandPointSystem();
+		String[] scores = name.split(",");
+		if (scores.length != PokerHand.NUM_HANDS)
+			throw new IllegalArgumentException("Unknown point system: " + name);
+		int[] table = new int[PokerHand.NUM_HANDS];
+		try {
+			for (int i = 0; i < table.length; i++)
+				table[i] = Integer.parseInt(scores[i].trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Unknown point system: " + name);
+		}
+		return new PokerSquaresPointSystem(table);
+	}
+}
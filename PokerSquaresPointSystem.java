@@ -1,3 +1,4 @@
+import java.io.PrintStream;
 import java.util.Random;
 
 
@@ -51,6 +52,22 @@ public class PokerSquaresPointSystem {
 		return scores[pokerHandId];
 	}
 	
+	/**
+	 * Get the scores of a batch of (possibly partial) lines given in structure-of-arrays form 
+	 * (see PokerSquaresHandClassifier).
+	 * @param numLines number of lines
+	 * @param sizes number of cards of each line
+	 * @param rankMasks bit r set when rank r is present in the line
+	 * @param suitMasks bit s set when suit s is present in the line
+	 * @param maxRankCounts largest number of cards of one rank in the line
+	 * @param handScores array to fill with the score of each line
+	 */
+	public void getHandScores(int numLines, int[] sizes, int[] rankMasks, int[] suitMasks, int[] maxRankCounts, int[] handScores) {
+		PokerSquaresHandClassifier.classify(numLines, sizes, rankMasks, suitMasks, maxRankCounts, handScores);
+		for (int i = 0; i < numLines; i++)
+			handScores[i] = scores[handScores[i]];
+	}
+	
 	/**
 	 * Return an array of scores indexed by Poker hand classification identification numbers.
 	 * @return an array of scores indexed by Poker hand classification identification numbers
@@ -186,6 +203,15 @@ public class PokerSquaresPointSystem {
 	 * @param grid given game grid 
 	 */
 	public void printGrid(Card[][] grid) {
+		printGrid(grid, System.out);
+	}
+	
+	/**
+	 * Print the given game grid and score to the given stream.
+	 * @param grid given game grid 
+	 * @param out destination stream
+	 */
+	public void printGrid(Card[][] grid, PrintStream out) {
 		// get scores
 		int[] handScores = getHandScores(grid);
 		int totalScore = 0;
@@ -195,12 +221,12 @@ public class PokerSquaresPointSystem {
 		// print grid
 		for (int row = 0; row < SIZE; row++) {
 			for (int col = 0; col < SIZE; col++) 
-				System.out.printf(" %s ", grid[row][col] == null ? "--" : grid[row][col].toString());
-			System.out.printf("%3d\n", handScores[row]);
+				out.printf(" %s ", grid[row][col] == null ? "--" : grid[row][col].toString());
+			out.printf("%3d\n", handScores[row]);
 		}
 		for (int col = 0; col < SIZE; col++) 
-			System.out.printf("%3d ", handScores[SIZE + col]);
-		System.out.printf("%3d Total\n", totalScore);
+			out.printf("%3d ", handScores[SIZE + col]);
+		out.printf("%3d Total\n", totalScore);
 	}
 	
 	
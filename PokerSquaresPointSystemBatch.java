@@ -0,0 +1,219 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * PokerSquaresPointSystemBatch - scores grids under a batch of K point systems at once.
+ *
+ * A grid's score under any point system depends only on how many of its 10 lines fall into each PokerHand
+ * class.  The batch therefore classifies each line once, giving a vector of NUM_HANDS hand counts, and
+ * multiplies it by a NUM_HANDS x K matrix of hand scores to get the scores under all K systems.  The matrix
+ * is stored hand-major, so the product is NUM_HANDS passes over contiguous rows of K scores, and hands that
+ * do not occur are skipped.
+ *
+ * A game or rollout whose placements do not depend on the point system (e.g. a random player, or a policy
+ * tuned to one system whose outcome is to be judged under others) is thus played once and scored under all K
+ * systems, instead of being replayed K times.  Hand counts come from getHandCounts for Card grids, from
+ * PokerSquares.getHandCounts for the last game played and from Reath_GameState.getHandCounts for search states.
+ *
+ * Author: Caleb Reath
+ */
+public class PokerSquaresPointSystemBatch {
+	private static final int SIZE = PokerSquares.SIZE; // number of rows/columns in square grid
+	private static final int NUM_HANDS = PokerHand.NUM_HANDS; // number of hand classes
+
+	private final PokerSquaresPointSystem[] systems; // point systems of the batch
+	private final int numSystems; // K
+	private final int[] table; // hand-major score matrix: table[hand * K + k] is the score of hand under system k
+	private final int[] minScores; // score of a lost game (10 times the minimum hand score) under each system
+
+	/**
+	 * Create a batch of point systems.
+	 * @param systems point systems
+	 */
+	public PokerSquaresPointSystemBatch(PokerSquaresPointSystem... systems) {
+		if (systems.length == 0)
+			throw new IllegalArgumentException("Empty point system batch");
+		this.systems = systems.clone();
+		numSystems = systems.length;
+		table = new int[NUM_HANDS * numSystems];
+		minScores = new int[numSystems];
+		for (int k = 0; k < numSystems; k++) {
+			int[] scores = systems[k].getScoreTable();
+			int min = Integer.MAX_VALUE;
+			for (int hand = 0; hand < NUM_HANDS; hand++) {
+				table[hand * numSystems + k] = scores[hand];
+				min = Math.min(min, scores[hand]);
+			}
+			minScores[k] = 2 * SIZE * min;
+		}
+	}
+
+	/**
+	 * Create a batch of point systems.
+	 * @param systems point systems
+	 */
+	public PokerSquaresPointSystemBatch(List<PokerSquaresPointSystem> systems) {
+		this(systems.toArray(new PokerSquaresPointSystem[0]));
+	}
+
+	/**
+	 * @return number of point systems K
+	 */
+	public int size() {
+		return numSystems;
+	}
+
+	/**
+	 * @param k system index
+	 * @return k-th point system
+	 */
+	public PokerSquaresPointSystem getSystem(int k) {
+		return systems[k];
+	}
+
+	/**
+	 * Count the hand classes of the rows and columns of a grid.
+	 * @param grid Card grid (null for empty positions)
+	 * @param handCounts array of length NUM_HANDS to fill with the number of lines of each PokerHand id
+	 */
+	public static void getHandCounts(Card[][] grid, int[] handCounts) {
+		Arrays.fill(handCounts, 0);
+		Card[] hand = new Card[SIZE];
+		for (int row = 0; row < SIZE; row++) {
+			for (int col = 0; col < SIZE; col++)
+				hand[col] = grid[row][col];
+			handCounts[PokerHand.getPokerHandId(hand)]++;
+		}
+		for (int col = 0; col < SIZE; col++) {
+			for (int row = 0; row < SIZE; row++)
+				hand[row] = grid[row][col];
+			handCounts[PokerHand.getPokerHandId(hand)]++;
+		}
+	}
+
+	/**
+	 * Compute the scores of a grid with the given hand counts under all systems of the batch.
+	 * @param handCounts number of lines of each PokerHand id
+	 * @param scores array of length size() to fill with the score under each system
+	 */
+	public void getScores(int[] handCounts, int[] scores) {
+		Arrays.fill(scores, 0, numSystems, 0);
+		for (int hand = 0; hand < NUM_HANDS; hand++) {
+			int count = handCounts[hand];
+			if (count == 0)
+				continue;
+			for (int k = 0, i = hand * numSystems; k < numSystems; k++, i++)
+				scores[k] += count * table[i];
+		}
+	}
+
+	/**
+	 * Compute the scores of a grid under all systems of the batch.
+	 * @param grid Card grid (null for empty positions)
+	 * @param scores array of length size() to fill with the score under each system
+	 */
+	public void getScores(Card[][] grid, int[] scores) {
+		int[] handCounts = new int[NUM_HANDS];
+		getHandCounts(grid, handCounts);
+		getScores(handCounts, scores);
+	}
+
+	/**
+	 * Compute the scores of the last game played by a PokerSquares object under all systems of the batch.  A
+	 * game lost by a timeout, illegal play or exception scores 10 times the minimum hand score of each system.
+	 * @param game PokerSquares object that has played a game
+	 * @param scores array of length size() to fill with the score under each system
+	 */
+	public void getScores(PokerSquares game, int[] scores) {
+		int[] handCounts = new int[NUM_HANDS];
+		if (game.getHandCounts(handCounts))
+			getScores(handCounts, scores);
+		else
+			System.arraycopy(minScores, 0, scores, 0, numSystems);
+	}
+
+	/**
+	 * Play a player's games once each and report their mean score under a batch of random point systems, and
+	 * compare the time of batch scoring of random rollouts with scoring each system separately.
+	 * @param args command line arguments (see usage)
+	 */
+	public static void main(String[] args) {
+		int numSystems = 100;
+		int games = 10;
+		long seed = 0L;
+		int rollouts = 100000;
+		String spec = "RandomPlayer";
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-systems"))
+				numSystems = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-games"))
+				games = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-seed"))
+				seed = Long.parseLong(args[++i]);
+			else if (args[i].equals("-rollouts"))
+				rollouts = Integer.parseInt(args[++i]);
+			else if (args[i].startsWith("-")) {
+				System.err.println("usage: java PokerSquaresPointSystemBatch [-systems K] [-games G] [-seed X] [-rollouts R] [playerSpec]");
+				return;
+			}
+			else
+				spec = args[i];
+		}
+		PokerSquaresPointSystem.setSeed(seed);
+		ArrayList<PokerSquaresPointSystem> systems = new ArrayList<PokerSquaresPointSystem>();
+		systems.add(PokerSquaresPointSystem.getBritishPointSystem());
+		systems.add(PokerSquaresPointSystem.getAmericanPointSystem());
+		while (systems.size() < numSystems)
+			systems.add(PokerSquaresPointSystem.getRandomPointSystem());
+		PokerSquaresPointSystemBatch batch = new PokerSquaresPointSystemBatch(systems);
+
+		// play each deal once under the first system and score it under all systems
+		PokerSquares game = new PokerSquares(PokerSquaresPlayerSpec.create(spec), systems.get(0));
+		int[] scores = new int[batch.size()];
+		double[] sums = new double[batch.size()];
+		for (int g = 0; g < games; g++) {
+			game.play(false, seed + g);
+			batch.getScores(game, scores);
+			for (int k = 0; k < batch.size(); k++)
+				sums[k] += scores[k];
+		}
+		System.out.printf("%s, %d games played under the British system\n", spec, games);
+		for (int k = 0; k < Math.min(batch.size(), 5); k++)
+			System.out.printf("system %d mean score: %.2f\n", k, sums[k] / games);
+
+		// score random rollouts from an empty grid under all systems: batched and one system at a time
+		Random random = new Random(seed);
+		Random rolloutRandom = new Random();
+		Reath_GameState state = new Reath_GameState(systems.get(0));
+		int[] handCounts = new int[NUM_HANDS];
+		long batchSum = 0;
+		long start = System.nanoTime();
+		for (int r = 0; r < rollouts; r++) {
+			rolloutRandom.setSeed(random.nextLong());
+			state.simRandomPlay(Reath_GameState.NUM_POS, rolloutRandom, handCounts);
+			batch.getScores(handCounts, scores);
+			for (int k = 0; k < batch.size(); k++)
+				batchSum += scores[k];
+		}
+		long batchNanos = System.nanoTime() - start;
+		Reath_GameState[] states = new Reath_GameState[batch.size()];
+		for (int k = 0; k < batch.size(); k++)
+			states[k] = new Reath_GameState(systems.get(k));
+		random.setSeed(seed);
+		long separateSum = 0;
+		start = System.nanoTime();
+		for (int r = 0; r < rollouts; r++) {
+			long rolloutSeed = random.nextLong();
+			for (int k = 0; k < batch.size(); k++) {
+				rolloutRandom.setSeed(rolloutSeed);
+				separateSum += states[k].simRandomPlay(Reath_GameState.NUM_POS, rolloutRandom, null);
+			}
+		}
+		long separateNanos = System.nanoTime() - start;
+		System.out.printf("%d random rollouts x %d systems: batched %d ms, separate %d ms (%.1fx), scores %s\n", rollouts,
+				batch.size(), batchNanos / 1000000L, separateNanos / 1000000L, (double) separateNanos / Math.max(1, batchNanos),
+				batchSum == separateSum ? "equal" : "DIFFER");
+	}
+}
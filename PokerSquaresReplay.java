@@ -0,0 +1,94 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * PokerSquaresReplay - re-drives a player through the deals of a PokerSquaresGameLog and reports the first turn
+ * of each game at which its decision differs from the logged one.
+ *
+ * Replays are not timed: each getPlay call receives the milliseconds remaining that were logged for that turn,
+ * but no timeout is enforced and no time is charged, so a replay runs as fast as the player allows.  For a
+ * player whose decisions do not depend on timing (e.g. a seeded player with a fixed sample budget), a
+ * replay that matches the log shows that a change to the player preserved its behavior on the logged deals.
+ *
+ * Author: Caleb Reath
+ */
+public class PokerSquaresReplay {
+	private static final int SIZE = PokerSquares.SIZE;
+
+	/**
+	 * Replay one logged game and return the first turn at which the player's play differs from the log.
+	 * The player's point system must already be set to the game's point system.
+	 * @param game logged game
+	 * @param player player to re-drive
+	 * @return index of the first differing turn, or -1 if all logged plays were reproduced
+	 */
+	public static int findDivergence(PokerSquaresGameLog.Game game, PokerSquaresPlayer player) {
+		player.init();
+		for (int turn = 0; turn < game.getNumPlays(); turn++) {
+			int[] play;
+			try {
+				play = player.getPlay(game.getCard(turn), game.getMillisRemaining(turn));
+			} catch (Exception e) {
+				return turn;
+			}
+			boolean legal = play != null && play.length == 2 && play[0] >= 0 && play[0] < SIZE && play[1] >= 0 && play[1] < SIZE;
+			if ((legal ? play[0] * SIZE + play[1] : -1) != game.getPosition(turn))
+				return turn;
+		}
+		return -1;
+	}
+
+	/**
+	 * Replay logged games, setting the player's point system whenever it changes, and report each divergence.
+	 * @param games logged games
+	 * @param player player to re-drive
+	 * @param verbose whether to print a line for every game rather than only for divergent ones
+	 * @return number of games whose plays were not all reproduced
+	 */
+	public static int replay(List<PokerSquaresGameLog.Game> games, PokerSquaresPlayer player, boolean verbose) {
+		int[] scoreTable = null;
+		int divergent = 0;
+		long start = System.currentTimeMillis();
+		for (int g = 0; g < games.size(); g++) {
+			PokerSquaresGameLog.Game game = games.get(g);
+			PokerSquaresPointSystem system = game.getPointSystem();
+			if (!Arrays.equals(system.getScoreTable(), scoreTable)) {
+				player.setPointSystem(system, PokerSquares.POINT_SYSTEM_MILLIS);
+				scoreTable = system.getScoreTable();
+			}
+			int turn = findDivergence(game, player);
+			if (turn >= 0) {
+				divergent++;
+				int logged = game.getPosition(turn);
+				System.out.printf("Game %d (%s%s): first divergence at turn %d, card %s, logged %s\n", g,
+						game.getPlayerName(), game.hasSeed() ? ", seed " + game.getSeed() : "", turn, game.getCard(turn),
+						logged < 0 ? "illegal play" : "(" + logged / SIZE + ", " + logged % SIZE + ")");
+			}
+			else if (verbose)
+				System.out.printf("Game %d (%s%s): %d plays reproduced\n", g, game.getPlayerName(),
+						game.hasSeed() ? ", seed " + game.getSeed() : "", game.getNumPlays());
+		}
+		System.out.printf("%d of %d games reproduced in %d ms\n", games.size() - divergent, games.size(),
+				System.currentTimeMillis() - start);
+		return divergent;
+	}
+
+	/**
+	 * Replay a game log with a player created by its no-argument constructor.
+	 * @param args log file, player class name, [-v]
+	 * @throws IOException if the log cannot be read
+	 * @throws ReflectiveOperationException if the player cannot be created
+	 */
+	public static void main(String[] args) throws IOException, ReflectiveOperationException {
+		if (args.length < 2) {
+			System.err.println("usage: java PokerSquaresReplay logFile PlayerClass [-v]");
+			return;
+		}
+		List<PokerSquaresGameLog.Game> games = PokerSquaresGameLog.read(new File(args[0]));
+		PokerSquaresPlayer player = (PokerSquaresPlayer) Class.forName(args[1]).getDeclaredConstructor().newInstance();
+		int divergent = replay(games, player, args.length > 2 && args[2].equals("-v"));
+		System.exit(divergent == 0 ? 0 : 1);
+	}
+}
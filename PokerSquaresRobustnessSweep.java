@@ -0,0 +1,406 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * PokerSquaresRobustnessSweep - evaluates players across thousands of sampled point systems, to find where they
+ * fall apart before a tournament does.
+ *
+ * System i of a sweep is drawn by PokerSquaresPointSystem's generators (random, hypercorner, single-hand or
+ * Ameritish, or a uniform mix of them) from a generator seeded by the sweep seed and i, so any system can be
+ * regenerated on its own.  Each player plays the same deals (successive seeds, or successive deal corpus
+ * indices) under each system; (system, player) tasks are handed to a fixed pool of threads, each task playing
+ * all of its deals with a new player.  When all players have played a system, their total scores are
+ * normalized as in PokerSquares.playTournament (best 1.0, worst 0.0; all 1.0 if tied), or, for a single
+ * player, linearly between the lowest and highest possible grid scores of the system.
+ *
+ * Memory does not grow with the number of systems: each player's normalized scores are kept in a
+ * PokerSquaresStatistics histogram (in thousandths), along with its WORST_SYSTEMS lowest-scoring systems.
+ * Each completed system is appended to a checkpoint file (a header describing the sweep, then one line of
+ * system index and player totals per system) and flushed, so an interrupted sweep resumes from the file with
+ * the same arguments, replaying its lines and skipping their systems.
+ *
+ * Author: Caleb Reath
+ */
+public class PokerSquaresRobustnessSweep {
+	public static final String[] KINDS = {"random", "hypercorner", "single", "ameritish"}; // point system generators
+	public static final String MIXED = "mixed"; // kind drawing each system from a uniformly chosen generator
+	public static final int WORST_SYSTEMS = 5; // lowest-scoring systems kept for each player
+	private static final int SCALE = 1000; // normalized scores are kept in thousandths
+	private static final int SIZE = PokerSquares.SIZE;
+
+	private final List<String> playerSpecs; // player specifications
+	private final String kind; // point system kind (one of KINDS or MIXED)
+	private final long sweepSeed; // seed of the point system sample
+	private final int numSystems; // number of point systems
+	private final int gamesPerSystem; // games per player and point system
+	private final long startSeed; // seed (or deal corpus index) of the first game
+	private PokerSquaresDealCorpus dealCorpus = null; // deal corpus (null to deal from seeds)
+	private String corpusName = ""; // deal corpus path recorded in the checkpoint header
+
+	// sweep state
+	private final PokerSquaresStatistics[] normalized; // normalized scores (thousandths) of each player
+	private final double[][] worstScores; // lowest normalized scores of each player, ascending
+	private final int[][] worstSystems; // systems of the lowest normalized scores of each player
+	private final String[] names; // player names
+	private boolean[] completed; // whether each system is completed
+	private int numCompleted = 0; // number of completed systems
+	private final ConcurrentHashMap<Integer, long[]> partialTotals = new ConcurrentHashMap<Integer, long[]>(); // totals of systems in progress
+	private final ConcurrentHashMap<Integer, AtomicInteger> partialCounts = new ConcurrentHashMap<Integer, AtomicInteger>(); // players done of systems in progress
+	private PrintWriter checkpoint = null; // open checkpoint file (null if none)
+	private volatile Throwable failure = null; // first failure of a task (null if none)
+
+	/**
+	 * Create a robustness sweep.
+	 * @param playerSpecs player specifications (see PokerSquaresPlayerSpec)
+	 * @param kind point system kind: one of KINDS or MIXED
+	 * @param sweepSeed seed of the point system sample
+	 * @param numSystems number of point systems
+	 * @param gamesPerSystem games per player and point system
+	 * @param startSeed seed (or deal corpus index) of the first game; successive games use successive ones
+	 */
+	public PokerSquaresRobustnessSweep(List<String> playerSpecs, String kind, long sweepSeed, int numSystems,
+			int gamesPerSystem, long startSeed) {
+		if (!kind.equals(MIXED) && !Arrays.asList(KINDS).contains(kind))
+			throw new IllegalArgumentException("Unknown point system kind: " + kind);
+		this.playerSpecs = new ArrayList<String>(playerSpecs);
+		this.kind = kind;
+		this.sweepSeed = sweepSeed;
+		this.numSystems = numSystems;
+		this.gamesPerSystem = gamesPerSystem;
+		this.startSeed = startSeed;
+		int numPlayers = playerSpecs.size();
+		normalized = new PokerSquaresStatistics[numPlayers];
+		worstScores = new double[numPlayers][WORST_SYSTEMS];
+		worstSystems = new int[numPlayers][WORST_SYSTEMS];
+		names = new String[numPlayers];
+		for (int p = 0; p < numPlayers; p++) {
+			normalized[p] = new PokerSquaresStatistics();
+			Arrays.fill(worstScores[p], Double.POSITIVE_INFINITY);
+			Arrays.fill(worstSystems[p], -1);
+			names[p] = playerSpecs.get(p);
+		}
+	}
+
+	/**
+	 * Set the corpus of deals played by index, or null to deal from seeds.
+	 * @param dealCorpus deal corpus
+	 * @param corpusName corpus path, recorded in the checkpoint header
+	 */
+	public void setDealCorpus(PokerSquaresDealCorpus dealCorpus, String corpusName) {
+		this.dealCorpus = dealCorpus;
+		this.corpusName = dealCorpus == null ? "" : corpusName;
+	}
+
+	/**
+	 * Regenerate a point system of a sample.
+	 * @param kind point system kind: one of KINDS or MIXED
+	 * @param sweepSeed seed of the point system sample
+	 * @param index system index
+	 * @return point system
+	 */
+	public static PokerSquaresPointSystem getSystem(String kind, long sweepSeed, int index) {
+		Random random = new Random(sweepSeed * 0x9E3779B97F4A7C15L + index);
+		String systemKind = kind.equals(MIXED) ? KINDS[random.nextInt(KINDS.length)] : kind;
+		synchronized (PokerSquaresPointSystem.class) { // the generators share one static pseudorandom number generator
+			PokerSquaresPointSystem.setSeed(random.nextLong());
+			if (systemKind.equals("random"))
+				return PokerSquaresPointSystem.getRandomPointSystem();
+			if (systemKind.equals("hypercorner"))
+				return PokerSquaresPointSystem.getHypercornerPointSystem();
+			if (systemKind.equals("single"))
+				return PokerSquaresPointSystem.getSingleHandPointSystem();
+			return PokerSquaresPointSystem.getAmeritishPointSystem();
+		}
+	}
+
+	/**
+	 * @return checkpoint header describing the sweep
+	 */
+	private String getHeader() {
+		return String.format("# PokerSquaresRobustnessSweep kind=%s seed=%d systems=%d games=%d start=%d corpus=%s players=%s",
+				kind, sweepSeed, numSystems, gamesPerSystem, startSeed, corpusName, String.join("|", playerSpecs));
+	}
+
+	/**
+	 * Run the sweep, resuming from and appending to the checkpoint file if one is given.
+	 * @param checkpointFile checkpoint file (null for none)
+	 * @param numThreads number of games played at once
+	 * @param verbose whether to print progress as systems complete
+	 * @throws IOException if the checkpoint file cannot be read or written, or belongs to another sweep
+	 * @throws InterruptedException if interrupted while waiting for games
+	 */
+	public void run(File checkpointFile, int numThreads, final boolean verbose) throws IOException, InterruptedException {
+		completed = new boolean[numSystems];
+		numCompleted = 0;
+		if (checkpointFile != null)
+			openCheckpoint(checkpointFile);
+		final int numPlayers = playerSpecs.size();
+		final AtomicInteger nextTask = new AtomicInteger();
+		final long totalTasks = (long) numSystems * numPlayers;
+		Thread[] threads = new Thread[Math.max(1, numThreads)];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					int task;
+					while (failure == null && (task = nextTask.getAndIncrement()) < totalTasks) {
+						int system = task / numPlayers;
+						if (!completed[system])
+							playTask(system, task % numPlayers, verbose);
+					}
+				}
+			}, "PokerSquaresRobustnessSweep-" + t);
+			threads[t].start();
+		}
+		try {
+			for (Thread thread : threads)
+				thread.join();
+		} finally {
+			if (checkpoint != null)
+				checkpoint.close();
+			checkpoint = null;
+		}
+		if (failure != null)
+			throw new RuntimeException("Robustness sweep failed", failure);
+	}
+
+	/**
+	 * Play all games of one player under one system, completing the system if it was the last player.
+	 */
+	private void playTask(int system, int player, boolean verbose) {
+		try {
+			PokerSquaresPlayer instance = PokerSquaresPlayerSpec.create(playerSpecs.get(player));
+			PokerSquares game = new PokerSquares(instance, getSystem(kind, sweepSeed, system));
+			if (dealCorpus != null)
+				game.setDealCorpus(dealCorpus);
+			long total = 0;
+			for (int g = 0; g < gamesPerSystem; g++)
+				total += dealCorpus != null ? game.playDeal(false, startSeed + g) : game.play(false, startSeed + g);
+			names[player] = instance.getName();
+			partialTotals.putIfAbsent(system, new long[playerSpecs.size()]);
+			partialCounts.putIfAbsent(system, new AtomicInteger());
+			long[] totals = partialTotals.get(system);
+			synchronized (totals) {
+				totals[player] = total;
+			}
+			if (partialCounts.get(system).incrementAndGet() == playerSpecs.size()) {
+				partialTotals.remove(system);
+				partialCounts.remove(system);
+				synchronized (totals) {
+					completeSystem(system, totals, true);
+				}
+				if (verbose)
+					System.out.printf("system %d totals %s (%d of %d systems)\n", system, Arrays.toString(totals),
+							numCompleted, numSystems);
+			}
+		} catch (Throwable e) {
+			if (failure == null)
+				failure = e;
+		}
+	}
+
+	/**
+	 * Normalize the totals of a completed system, add them to the players' statistics and optionally record
+	 * the system in the checkpoint file.
+	 */
+	private synchronized void completeSystem(int system, long[] totals, boolean record) {
+		if (completed[system])
+			return;
+		completed[system] = true;
+		numCompleted++;
+		long maxTotal = Long.MIN_VALUE;
+		long minTotal = Long.MAX_VALUE;
+		for (long total : totals) {
+			maxTotal = Math.max(maxTotal, total);
+			minTotal = Math.min(minTotal, total);
+		}
+		if (totals.length == 1) { // normalize by the system's range of possible scores
+			int[] table = getSystem(kind, sweepSeed, system).getScoreTable();
+			int maxHand = Integer.MIN_VALUE;
+			int minHand = Integer.MAX_VALUE;
+			for (int score : table) {
+				maxHand = Math.max(maxHand, score);
+				minHand = Math.min(minHand, score);
+			}
+			maxTotal = (long) 2 * SIZE * maxHand * gamesPerSystem;
+			minTotal = (long) 2 * SIZE * minHand * gamesPerSystem;
+		}
+		for (int p = 0; p < totals.length; p++) {
+			double score = maxTotal == minTotal ? 1.0 : (double) (totals[p] - minTotal) / (maxTotal - minTotal);
+			normalized[p].add((int) Math.round(score * SCALE));
+			addWorst(p, system, score);
+		}
+		if (record && checkpoint != null) {
+			StringBuilder line = new StringBuilder().append(system);
+			for (long total : totals)
+				line.append(' ').append(total);
+			checkpoint.println(line);
+			checkpoint.flush();
+		}
+	}
+
+	/**
+	 * Insert a system into a player's list of lowest-scoring systems if it belongs there.
+	 */
+	private void addWorst(int player, int system, double score) {
+		double[] scores = worstScores[player];
+		int[] systems = worstSystems[player];
+		int i = WORST_SYSTEMS - 1;
+		if (score >= scores[i])
+			return;
+		for (; i > 0 && scores[i - 1] > score; i--) {
+			scores[i] = scores[i - 1];
+			systems[i] = systems[i - 1];
+		}
+		scores[i] = score;
+		systems[i] = system;
+	}
+
+	/**
+	 * Replay the completed systems of a checkpoint file and open it for appending.  A trailing incomplete line
+	 * (from an interrupted write) is dropped.
+	 */
+	private void openCheckpoint(File file) throws IOException {
+		ArrayList<String> lines = new ArrayList<String>();
+		if (file.exists()) {
+			BufferedReader in = new BufferedReader(new FileReader(file));
+			try {
+				String header = in.readLine();
+				if (header != null && !header.equals(getHeader()))
+					throw new IOException("Checkpoint " + file + " belongs to another sweep: " + header);
+				String line;
+				while ((line = in.readLine()) != null) {
+					String[] fields = line.trim().split(" ");
+					if (fields.length != playerSpecs.size() + 1)
+						break;
+					long[] totals = new long[playerSpecs.size()];
+					int system;
+					try {
+						system = Integer.parseInt(fields[0]);
+						for (int p = 0; p < totals.length; p++)
+							totals[p] = Long.parseLong(fields[p + 1]);
+					} catch (NumberFormatException e) {
+						break;
+					}
+					if (system < 0 || system >= numSystems)
+						break;
+					completeSystem(system, totals, false);
+					lines.add(line);
+				}
+			} finally {
+				in.close();
+			}
+		}
+		File temporary = new File(file.getPath() + ".tmp"); // rewrite without any incomplete line, then append
+		PrintWriter out = new PrintWriter(new FileWriter(temporary));
+		out.println(getHeader());
+		for (String line : lines)
+			out.println(line);
+		out.close();
+		if (out.checkError())
+			throw new IOException("Could not write checkpoint " + temporary);
+		Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		checkpoint = new PrintWriter(new FileWriter(file, true));
+		if (numCompleted > 0)
+			System.out.printf("Resuming with %d of %d systems completed\n", numCompleted, numSystems);
+	}
+
+	/**
+	 * Print each player's distribution of normalized scores and its lowest-scoring systems.
+	 */
+	public void printReport() {
+		System.out.printf("%d of %d %s point systems, %d games each\n", numCompleted, numSystems, kind, gamesPerSystem);
+		System.out.printf("%-40s %7s %7s %7s %7s %7s %7s\n", "Player", "mean", "sd", "5%", "25%", "median", "worst");
+		for (int p = 0; p < names.length; p++) {
+			PokerSquaresStatistics s = normalized[p];
+			if (s.getCount() == 0)
+				continue;
+			System.out.printf("%-40s %7.3f %7.3f %7.3f %7.3f %7.3f %7.3f\n", names[p], s.getMean() / SCALE,
+					s.getStandardDeviation() / SCALE, (double) s.getQuantile(0.05) / SCALE, (double) s.getQuantile(0.25) / SCALE,
+					(double) s.getMedian() / SCALE, (double) s.getMin() / SCALE);
+		}
+		for (int p = 0; p < names.length; p++) {
+			System.out.printf("Lowest-scoring systems of %s:\n", names[p]);
+			for (int i = 0; i < WORST_SYSTEMS && worstSystems[p][i] >= 0; i++)
+				System.out.printf("  system %d: %.3f %s\n", worstSystems[p][i], worstScores[p][i],
+						Arrays.toString(getSystem(kind, sweepSeed, worstSystems[p][i]).getScoreTable()));
+		}
+	}
+
+	/**
+	 * @param player player index
+	 * @return normalized scores of the player, in thousandths
+	 */
+	public PokerSquaresStatistics getNormalizedScores(int player) {
+		return normalized[player];
+	}
+
+	/**
+	 * Run a robustness sweep from the command line.
+	 * @param args command line arguments (see usage)
+	 * @throws Exception if the sweep fails
+	 */
+	public static void main(String[] args) throws Exception {
+		int systems = 1000;
+		int games = 10;
+		long seed = 0L;
+		long sweepSeed = 0L;
+		String kind = MIXED;
+		int threads = Runtime.getRuntime().availableProcessors();
+		File corpusFile = null;
+		File checkpointFile = null;
+		boolean verbose = false;
+		ArrayList<String> specs = new ArrayList<String>();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-systems"))
+				systems = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-games"))
+				games = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-seed"))
+				seed = Long.parseLong(args[++i]);
+			else if (args[i].equals("-sweepSeed"))
+				sweepSeed = Long.parseLong(args[++i]);
+			else if (args[i].equals("-kind"))
+				kind = args[++i];
+			else if (args[i].equals("-threads"))
+				threads = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-corpus"))
+				corpusFile = new File(args[++i]);
+			else if (args[i].equals("-checkpoint"))
+				checkpointFile = new File(args[++i]);
+			else if (args[i].equals("-verbose"))
+				verbose = true;
+			else
+				specs.add(args[i]);
+		}
+		if (specs.isEmpty()) {
+			System.err.println("usage: java PokerSquaresRobustnessSweep [-systems N] [-games G] [-seed X] [-sweepSeed S] "
+					+ "[-kind random|hypercorner|single|ameritish|mixed] [-threads T] [-corpus file] [-checkpoint file] [-verbose] playerSpec...");
+			return;
+		}
+		PokerSquaresRobustnessSweep sweep = new PokerSquaresRobustnessSweep(specs, kind, sweepSeed, systems, games, seed);
+		PokerSquaresDealCorpus corpus = corpusFile == null ? null : new PokerSquaresDealCorpus(corpusFile);
+		sweep.setDealCorpus(corpus, corpusFile == null ? "" : corpusFile.getPath());
+		long start = System.currentTimeMillis();
+		try {
+			sweep.run(checkpointFile, threads, verbose);
+		} finally {
+			if (corpus != null)
+				corpus.close();
+		}
+		sweep.printReport();
+		System.out.printf("Sweep time: %d s\n", (System.currentTimeMillis() - start) / 1000);
+	}
+}
@@ -0,0 +1,220 @@
+import java.io.Serializable;
+
+/**
+ * PokerSquaresStatistics - constant-memory, mergeable statistics of a stream of Poker Squares game scores.
+ *
+ * Keeps the count, sum, Welford mean and variance, minimum and maximum of the scores, an exact histogram of
+ * scores (grid scores are integers in [MIN_SCORE, MAX_SCORE], so the histogram doubles as an exact, mergeable
+ * quantile summary) and, for completed grids, the frequency of each PokerHand class among the 10 scored lines.
+ * Statistics of separate workers are combined with merge() and may be serialized to send them between
+ * processes.  Memory use does not depend on the number of games.
+ *
+ * Author: Caleb Reath
+ */
+public class PokerSquaresStatistics implements Serializable {
+	private static final long serialVersionUID = 1L;
+	private static final int SIZE = PokerSquares.SIZE;
+	public static final int MIN_SCORE = -128 * 2 * SIZE; // lowest possible grid score (10 lines of -128)
+	public static final int MAX_SCORE = 127 * 2 * SIZE; // highest possible grid score (10 lines of 127)
+
+	private long count = 0; // number of scores
+	private long sum = 0; // sum of scores
+	private double mean = 0; // running mean
+	private double m2 = 0; // running sum of squared deviations from the mean
+	private int min = Integer.MAX_VALUE; // minimum score
+	private int max = Integer.MIN_VALUE; // maximum score
+	private final long[] histogram = new long[MAX_SCORE - MIN_SCORE + 1]; // count of each score
+	private final long[] handCounts = new long[PokerHand.NUM_HANDS]; // count of each hand class in completed grids
+	private long completedGames = 0; // number of scores of completed grids
+
+	/**
+	 * Add a game score.
+	 * @param score grid score in [MIN_SCORE, MAX_SCORE]
+	 */
+	public void add(int score) {
+		if (score < MIN_SCORE || score > MAX_SCORE)
+			throw new IllegalArgumentException("Score out of range: " + score);
+		count++;
+		sum += score;
+		double delta = score - mean;
+		mean += delta / count;
+		m2 += delta * (score - mean);
+		if (score < min)
+			min = score;
+		if (score > max)
+			max = score;
+		histogram[score - MIN_SCORE]++;
+	}
+
+	/**
+	 * Add the score of a completed grid along with the hand classes of its rows and columns.
+	 * @param score grid score
+	 * @param grid completed grid
+	 */
+	public void add(int score, Card[][] grid) {
+		add(score);
+		Card[] hand = new Card[SIZE];
+		for (int row = 0; row < SIZE; row++) {
+			for (int col = 0; col < SIZE; col++)
+				hand[col] = grid[row][col];
+			handCounts[PokerHand.getPokerHandId(hand)]++;
+		}
+		for (int col = 0; col < SIZE; col++) {
+			for (int row = 0; row < SIZE; row++)
+				hand[row] = grid[row][col];
+			handCounts[PokerHand.getPokerHandId(hand)]++;
+		}
+		completedGames++;
+	}
+
+	/**
+	 * Merge the statistics of another stream into these (Chan et al. parallel variance update).
+	 * @param other statistics to merge
+	 */
+	public void merge(PokerSquaresStatistics other) {
+		if (other.count == 0)
+			return;
+		long total = count + other.count;
+		double delta = other.mean - mean;
+		m2 += other.m2 + delta * delta * count * other.count / total;
+		mean += delta * other.count / total;
+		count = total;
+		sum += other.sum;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+		for (int i = 0; i < histogram.length; i++)
+			histogram[i] += other.histogram[i];
+		for (int i = 0; i < handCounts.length; i++)
+			handCounts[i] += other.handCounts[i];
+		completedGames += other.completedGames;
+	}
+
+	/**
+	 * @return number of scores
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return sum of scores
+	 */
+	public long getSum() {
+		return sum;
+	}
+
+	/**
+	 * @return mean score (0 if there are no scores)
+	 */
+	public double getMean() {
+		return mean;
+	}
+
+	/**
+	 * @return population variance of scores
+	 */
+	public double getVariance() {
+		return count > 0 ? m2 / count : 0;
+	}
+
+	/**
+	 * @return population standard deviation of scores
+	 */
+	public double getStandardDeviation() {
+		return Math.sqrt(getVariance());
+	}
+
+	/**
+	 * @return sample variance of scores
+	 */
+	public double getSampleVariance() {
+		return count > 1 ? m2 / (count - 1) : 0;
+	}
+
+	/**
+	 * @return standard error of the mean score
+	 */
+	public double getStandardError() {
+		return count > 1 ? Math.sqrt(getSampleVariance() / count) : 0;
+	}
+
+	/**
+	 * @return minimum score (Integer.MAX_VALUE if there are no scores)
+	 */
+	public int getMin() {
+		return min;
+	}
+
+	/**
+	 * @return maximum score (Integer.MIN_VALUE if there are no scores)
+	 */
+	public int getMax() {
+		return max;
+	}
+
+	/**
+	 * Get the number of games with the given score.
+	 * @param score grid score
+	 * @return number of games with the score
+	 */
+	public long getFrequency(int score) {
+		return score < MIN_SCORE || score > MAX_SCORE ? 0 : histogram[score - MIN_SCORE];
+	}
+
+	/**
+	 * Get a quantile of the scores: the smallest score s such that at least fraction q of all scores are at most s.
+	 * @param q fraction in [0, 1]
+	 * @return quantile score (Integer.MIN_VALUE if there are no scores)
+	 */
+	public int getQuantile(double q) {
+		if (count == 0)
+			return Integer.MIN_VALUE;
+		long rank = Math.max(1, (long) Math.ceil(q * count));
+		long cumulative = 0;
+		for (int i = min - MIN_SCORE; i <= max - MIN_SCORE; i++) {
+			cumulative += histogram[i];
+			if (cumulative >= rank)
+				return i + MIN_SCORE;
+		}
+		return max;
+	}
+
+	/**
+	 * @return median score
+	 */
+	public int getMedian() {
+		return getQuantile(0.5);
+	}
+
+	/**
+	 * Get the number of scored lines of completed grids with the given hand class.
+	 * @param pokerHandId PokerHand id
+	 * @return number of lines
+	 */
+	public long getHandCount(int pokerHandId) {
+		return handCounts[pokerHandId];
+	}
+
+	/**
+	 * @return number of completed grids whose hand classes were counted
+	 */
+	public long getCompletedGames() {
+		return completedGames;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("Games: %d, Score Mean: %f, Standard Deviation: %f, Standard Error: %f, Minimum: %d, Median: %d, Maximum: %d\n",
+				count, getMean(), getStandardDeviation(), getStandardError(), min, getMedian(), max));
+		if (completedGames > 0) {
+			sb.append(String.format("%-15s %s\n", "Hand Name", "Lines per Game"));
+			for (PokerHand hand : PokerHand.values())
+				sb.append(String.format("%-15s %.4f\n", hand.name, (double) handCounts[hand.id] / completedGames));
+		}
+		return sb.toString();
+	}
+}
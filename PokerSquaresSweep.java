@@ -0,0 +1,409 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * PokerSquaresSweep - evaluates many configurations of a player in one run, by grid or random search over its
+ * parameters.
+ *
+ * Parameters are declared by name, either with a list of values (addParameter) or with a numeric range
+ * (addRange).  A grid search plays every combination of the listed values; a random search draws each
+ * parameter uniformly from its range (or list).  Players are built from a configuration by a PlayerFactory,
+ * typically a template player specification such as "Reath_GreedyProbabilityMCPlayer(${depth}, ${threshold},
+ * ${cutoff})" whose ${name} placeholders are replaced by the configuration's values (see PokerSquaresPlayerSpec).
+ *
+ * All configurations play the same deals (successive seeds, or successive deal corpus indices), so that their
+ * scores are paired.  Games are split into chunks of GAMES_PER_TASK games, each played by a new player on a
+ * fixed pool of threads.  Since players are timed by wall-clock time, the number of threads should not exceed
+ * the number of cores, and multi-threaded players should be swept with fewer threads.
+ *
+ * The summary table lists the configurations by mean score, with a 95% confidence interval of the mean and of
+ * the paired difference to the best configuration; a difference whose interval excludes 0 is significant.
+ *
+ * Author: Caleb Reath
+ */
+public class PokerSquaresSweep {
+	public static final int GAMES_PER_TASK = 5; // games played by each new player
+	private static final double Z = 1.96; // normal quantile of a two-sided 95% confidence interval
+
+	/**
+	 * PlayerFactory - builds a player from a configuration of parameter values.
+	 */
+	public interface PlayerFactory {
+		/**
+		 * Create a player.
+		 * @param configuration parameter values by name
+		 * @return new player
+		 */
+		PokerSquaresPlayer create(Map<String, String> configuration);
+	}
+
+	/**
+	 * Result - scores of one configuration.
+	 */
+	public static class Result {
+		private final Map<String, String> configuration; // parameter values by name
+		private final int[] scores; // game scores in deal order
+		private final PokerSquaresStatistics statistics = new PokerSquaresStatistics(); // score statistics
+		private String playerName = null; // name of the configuration's player
+
+		Result(Map<String, String> configuration, int numGames) {
+			this.configuration = configuration;
+			scores = new int[numGames];
+		}
+
+		/**
+		 * @return parameter values by name
+		 */
+		public Map<String, String> getConfiguration() {
+			return configuration;
+		}
+
+		/**
+		 * @return game scores in deal order
+		 */
+		public int[] getScores() {
+			return scores;
+		}
+
+		/**
+		 * @return score statistics
+		 */
+		public PokerSquaresStatistics getStatistics() {
+			return statistics;
+		}
+
+		/**
+		 * @return name of the configuration's player
+		 */
+		public String getPlayerName() {
+			return playerName;
+		}
+	}
+
+	private final LinkedHashMap<String, String[]> values = new LinkedHashMap<String, String[]>(); // listed values by parameter
+	private final LinkedHashMap<String, double[]> ranges = new LinkedHashMap<String, double[]>(); // {low, high, integer} by parameter
+
+	/**
+	 * Declare a parameter with a list of values.
+	 * @param name parameter name
+	 * @param parameterValues values as they are to appear in the player specification
+	 */
+	public void addParameter(String name, String... parameterValues) {
+		if (parameterValues.length == 0)
+			throw new IllegalArgumentException("No values for parameter " + name);
+		ranges.remove(name);
+		values.put(name, parameterValues.clone());
+	}
+
+	/**
+	 * Declare a parameter with a numeric range, for random search.  In a grid search, the range contributes
+	 * its two bounds.
+	 * @param name parameter name
+	 * @param low lowest value
+	 * @param high highest value
+	 * @param integer whether values are integers (else decimals)
+	 */
+	public void addRange(String name, double low, double high, boolean integer) {
+		if (high < low)
+			throw new IllegalArgumentException("Empty range for parameter " + name);
+		values.remove(name);
+		ranges.put(name, new double[] {low, high, integer ? 1 : 0});
+	}
+
+	/**
+	 * @return every combination of the declared values, the first parameter varying slowest
+	 */
+	public List<Map<String, String>> gridConfigurations() {
+		ArrayList<String> names = new ArrayList<String>();
+		ArrayList<String[]> lists = new ArrayList<String[]>();
+		for (Map.Entry<String, String[]> entry : values.entrySet()) {
+			names.add(entry.getKey());
+			lists.add(entry.getValue());
+		}
+		for (Map.Entry<String, double[]> entry : ranges.entrySet()) {
+			double[] range = entry.getValue();
+			names.add(entry.getKey());
+			lists.add(range[0] == range[1] ? new String[] {format(range[0], range[2] != 0)}
+					: new String[] {format(range[0], range[2] != 0), format(range[1], range[2] != 0)});
+		}
+		ArrayList<Map<String, String>> configurations = new ArrayList<Map<String, String>>();
+		int[] index = new int[names.size()];
+		while (true) {
+			LinkedHashMap<String, String> configuration = new LinkedHashMap<String, String>();
+			for (int i = 0; i < index.length; i++)
+				configuration.put(names.get(i), lists.get(i)[index[i]]);
+			configurations.add(configuration);
+			int i = index.length - 1;
+			while (i >= 0 && ++index[i] == lists.get(i).length)
+				index[i--] = 0;
+			if (i < 0)
+				return configurations;
+		}
+	}
+
+	/**
+	 * Draw configurations at random: ranged parameters uniformly from their range, listed parameters uniformly
+	 * from their values.
+	 * @param numConfigurations number of configurations
+	 * @param seed random seed
+	 * @return configurations
+	 */
+	public List<Map<String, String>> randomConfigurations(int numConfigurations, long seed) {
+		Random random = new Random(seed);
+		ArrayList<Map<String, String>> configurations = new ArrayList<Map<String, String>>();
+		for (int c = 0; c < numConfigurations; c++) {
+			LinkedHashMap<String, String> configuration = new LinkedHashMap<String, String>();
+			for (Map.Entry<String, String[]> entry : values.entrySet())
+				configuration.put(entry.getKey(), entry.getValue()[random.nextInt(entry.getValue().length)]);
+			for (Map.Entry<String, double[]> entry : ranges.entrySet()) {
+				double[] range = entry.getValue();
+				boolean integer = range[2] != 0;
+				double value = integer ? Math.floor(range[0] + random.nextDouble() * (Math.floor(range[1]) - range[0] + 1))
+						: range[0] + random.nextDouble() * (range[1] - range[0]);
+				configuration.put(entry.getKey(), format(value, integer));
+			}
+			configurations.add(configuration);
+		}
+		return configurations;
+	}
+
+	/**
+	 * Format a parameter value.  Decimals always contain a decimal point, so that PokerSquaresPlayerSpec passes
+	 * them to double parameters.
+	 */
+	private static String format(double value, boolean integer) {
+		if (integer)
+			return Long.toString((long) value);
+		String s = String.format(Locale.ROOT, "%.4f", value).replaceAll("0+$", "");
+		return s.endsWith(".") ? s + "0" : s;
+	}
+
+	/**
+	 * Create a factory that substitutes configuration values for the ${name} placeholders of a player
+	 * specification.
+	 * @param template player specification with placeholders
+	 * @return player factory
+	 */
+	public static PlayerFactory templateFactory(final String template) {
+		return new PlayerFactory() {
+			@Override
+			public PokerSquaresPlayer create(Map<String, String> configuration) {
+				String spec = template;
+				for (Map.Entry<String, String> entry : configuration.entrySet())
+					spec = spec.replace("${" + entry.getKey() + "}", entry.getValue());
+				if (spec.contains("${"))
+					throw new IllegalArgumentException("Unbound placeholder in player specification: " + spec);
+				return PokerSquaresPlayerSpec.create(spec);
+			}
+		};
+	}
+
+	/**
+	 * Play all configurations on the same deals.
+	 * @param configurations configurations to evaluate
+	 * @param factory player factory
+	 * @param system point system
+	 * @param numGames games per configuration
+	 * @param startSeed seed (or deal corpus index) of the first game; successive games use successive ones
+	 * @param dealCorpus deal corpus (null to deal from seeds)
+	 * @param numThreads number of games played at once
+	 * @param verbose whether to print each task's scores as it completes
+	 * @return results in the order of the configurations
+	 * @throws InterruptedException if interrupted while waiting for games
+	 * @throws ExecutionException if a player cannot be created or a game fails
+	 */
+	public static List<Result> run(List<Map<String, String>> configurations, final PlayerFactory factory,
+			final PokerSquaresPointSystem system, int numGames, final long startSeed, final PokerSquaresDealCorpus dealCorpus,
+			int numThreads, final boolean verbose) throws InterruptedException, ExecutionException {
+		ArrayList<Result> results = new ArrayList<Result>();
+		ArrayList<Future<?>> futures = new ArrayList<Future<?>>();
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, numThreads));
+		try {
+			for (Map<String, String> configuration : configurations) {
+				final Result result = new Result(configuration, numGames);
+				results.add(result);
+				for (int first = 0; first < numGames; first += GAMES_PER_TASK) {
+					final int firstGame = first;
+					final int lastGame = Math.min(numGames, first + GAMES_PER_TASK);
+					futures.add(executor.submit(new Runnable() {
+						@Override
+						public void run() {
+							PokerSquaresPlayer player = factory.create(result.configuration);
+							PokerSquares game = new PokerSquares(player, system);
+							if (dealCorpus != null)
+								game.setDealCorpus(dealCorpus);
+							for (int g = firstGame; g < lastGame; g++)
+								result.scores[g] = dealCorpus != null ? game.playDeal(false, startSeed + g) : game.play(false, startSeed + g);
+							synchronized (result) {
+								result.playerName = player.getName();
+							}
+							if (verbose)
+								System.out.printf("%s games %d-%d: %s\n", result.configuration, firstGame, lastGame - 1,
+										Arrays.toString(Arrays.copyOfRange(result.scores, firstGame, lastGame)));
+						}
+					}));
+				}
+			}
+			for (Future<?> future : futures)
+				future.get();
+		} finally {
+			executor.shutdownNow();
+		}
+		for (Result result : results)
+			for (int score : result.scores)
+				result.statistics.add(score);
+		return results;
+	}
+
+	/**
+	 * Print a summary table of results, best mean score first: mean, 95% confidence interval half-width, paired
+	 * difference to the best configuration with its 95% confidence interval half-width, and the configuration.
+	 * @param results results of run
+	 */
+	public static void printSummary(List<Result> results) {
+		if (results.isEmpty())
+			return;
+		ArrayList<Result> sorted = new ArrayList<Result>(results);
+		Collections.sort(sorted, new Comparator<Result>() {
+			@Override
+			public int compare(Result a, Result b) {
+				return Double.compare(b.statistics.getMean(), a.statistics.getMean());
+			}
+		});
+		int[] best = sorted.get(0).scores;
+		System.out.printf("%4s %9s %7s %9s %7s  %s\n", "rank", "mean", "+-95%", "diff", "+-95%", "configuration");
+		for (int rank = 0; rank < sorted.size(); rank++) {
+			Result result = sorted.get(rank);
+			PokerSquaresStatistics differences = new PokerSquaresStatistics();
+			for (int g = 0; g < best.length; g++)
+				differences.add(result.scores[g] - best[g]);
+			System.out.printf("%4d %9.2f %7.2f %9.2f %7.2f  %s %s\n", rank + 1, result.statistics.getMean(),
+					Z * result.statistics.getStandardError(), differences.getMean(), Z * differences.getStandardError(),
+					result.configuration, result.playerName);
+		}
+	}
+
+	/**
+	 * Run a sweep from the command line.  Parameters are given as name=a,b,c (listed values) or name=low:high
+	 * (a range).  A parameter is decimal if any of its values or bounds has a decimal point, and all of its
+	 * values are then passed with a decimal point (threshold=1.0,2 gives 1.0 and 2.0), so that they reach double
+	 * constructor parameters; whole numbers written without one are integers, and a player specification that
+	 * they make ambiguous is rejected by PokerSquaresPlayerSpec.
+	 * @param args command line arguments (see usage)
+	 * @throws Exception if the sweep fails
+	 */
+	public static void main(String[] args) throws Exception {
+		int games = 30;
+		long seed = 0L;
+		int threads = Runtime.getRuntime().availableProcessors();
+		int random = 0;
+		long sweepSeed = 0L;
+		File corpusFile = null;
+		boolean verbose = false;
+		PokerSquaresPointSystem system = PokerSquaresPointSystem.getBritishPointSystem();
+		String template = null;
+		PokerSquaresSweep sweep = new PokerSquaresSweep();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-games"))
+				games = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-seed"))
+				seed = Long.parseLong(args[++i]);
+			else if (args[i].equals("-threads"))
+				threads = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-random"))
+				random = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-sweepSeed"))
+				sweepSeed = Long.parseLong(args[++i]);
+			else if (args[i].equals("-corpus"))
+				corpusFile = new File(args[++i]);
+			else if (args[i].equals("-system"))
+				system = PokerSquaresPlayerSpec.pointSystem(args[++i]);
+			else if (args[i].equals("-verbose"))
+				verbose = true;
+			else if (template == null)
+				template = args[i];
+			else
+				addArgument(sweep, args[i]);
+		}
+		if (template == null) {
+			System.err.println("usage: java PokerSquaresSweep [-games G] [-seed X] [-threads T] [-random N] [-sweepSeed S] "
+					+ "[-corpus file] [-system name] [-verbose] playerTemplate name=a,b,c... name=low:high...");
+			System.err.println("example: java PokerSquaresSweep -games 100 \"Reath_GreedyProbabilityMCPlayer(${depth}, ${threshold}, ${cutoff})\" "
+					+ "depth=1,2,3 threshold=0.5,1.0,2.0 cutoff=12,18,25");
+			return;
+		}
+		List<Map<String, String>> configurations = random > 0 ? sweep.randomConfigurations(random, sweepSeed)
+				: sweep.gridConfigurations();
+		PokerSquaresDealCorpus corpus = corpusFile == null ? null : new PokerSquaresDealCorpus(corpusFile);
+		long start = System.currentTimeMillis();
+		try {
+			printSummary(run(configurations, templateFactory(template), system, games, seed, corpus, threads, verbose));
+		} finally {
+			if (corpus != null)
+				corpus.close();
+		}
+		System.out.printf("%d configurations x %d games in %d s\n", configurations.size(), games,
+				(System.currentTimeMillis() - start) / 1000);
+	}
+
+	/**
+	 * Declare a parameter given as name=a,b,c or name=low:high.
+	 */
+	private static void addArgument(PokerSquaresSweep sweep, String argument) {
+		int equals = argument.indexOf('=');
+		if (equals <= 0)
+			throw new IllegalArgumentException("Parameter must be name=a,b,c or name=low:high: " + argument);
+		String name = argument.substring(0, equals).trim();
+		String value = argument.substring(equals + 1).trim();
+		int colon = value.indexOf(':');
+		if (colon >= 0) {
+			String low = value.substring(0, colon).trim();
+			String high = value.substring(colon + 1).trim();
+			boolean integer = !isDecimal(low) && !isDecimal(high);
+			sweep.addRange(name, Double.parseDouble(low), Double.parseDouble(high), integer);
+		} else {
+			String[] parts = value.split(",");
+			boolean decimal = false;
+			for (int i = 0; i < parts.length; i++) {
+				parts[i] = parts[i].trim();
+				decimal |= isDecimal(parts[i]);
+			}
+			if (decimal) // pass every numeric value of a decimal parameter as a decimal
+				for (int i = 0; i < parts.length; i++)
+					if (isNumber(parts[i]) && !parts[i].contains("."))
+						parts[i] = parts[i] + ".0";
+			sweep.addParameter(name, parts);
+		}
+	}
+
+	/**
+	 * Return whether a value is a number written with a decimal point.
+	 */
+	private static boolean isDecimal(String value) {
+		return value.contains(".") && isNumber(value);
+	}
+
+	/**
+	 * Return whether a value is a number.
+	 */
+	private static boolean isNumber(String value) {
+		try {
+			Double.parseDouble(value);
+			return true;
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+}
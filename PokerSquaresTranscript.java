@@ -0,0 +1,223 @@
+import java.io.BufferedOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * PokerSquaresTranscript - an asynchronous move-by-move transcript of Poker Squares games.
+ *
+ * When a transcript is attached to a PokerSquares object (PokerSquares.setTranscript), the game thread only
+ * packs each placement (and each game end) into a long and stores it in a bounded single-producer,
+ * single-consumer ring buffer; this costs a few nanoseconds and takes no lock.  A background writer thread
+ * drains the buffer in batches and renders the events to the sink in one of three formats:
+ *   - GRID: the grid and its scores after each placement (the former verbose output of PokerSquares.play),
+ *   - CSV: one line "game,turn,card,row,col,score" per placement and one "game,end,,,,score" line per game,
+ *   - BINARY: the packed events themselves, as 8-byte big-endian longs (see pack()).
+ * The game thread waits only if the buffer is full (counted by getStalls()).  The sink is flushed when the
+ * writer runs out of events and by flush(), which PokerSquares calls after a sequence of games.
+ *
+ * Author: Caleb Reath
+ */
+public class PokerSquaresTranscript {
+	private static final int SIZE = PokerSquares.SIZE;
+	private static final int DEFAULT_CAPACITY = 1 << 14; // default ring buffer capacity in events
+	private static final long IDLE_NANOS = 1000000L; // writer sleep when the buffer is empty
+	private static final int MOVE = 1; // event type of a placement
+	private static final int END = 2; // event type of a game end
+
+	/**
+	 * Format - transcript output format.
+	 */
+	public enum Format {
+		GRID, CSV, BINARY
+	}
+
+	private final PokerSquaresPointSystem system; // point system for GRID scores
+	private final Format format; // output format
+	private final PrintStream out; // buffered sink
+	private final long[] events; // ring buffer of packed events
+	private final int mask; // ring buffer index mask
+	private final AtomicLong head = new AtomicLong(); // index of the next event to render (advanced by the writer)
+	private final AtomicLong tail = new AtomicLong(); // index of the next free slot (advanced by the game thread)
+	private final AtomicLong flushed = new AtomicLong(); // events rendered and flushed to the sink
+	private long cachedHead = 0; // game thread's last read of head
+	private long stalls = 0; // game thread waits on a full buffer
+	private volatile boolean running = true; // whether the writer should keep running
+	private final Thread writer; // background writer thread
+
+	// writer state
+	private final Card[][] grid = new Card[SIZE][SIZE]; // grid of the game being rendered
+	private long game = 0; // number of the game being rendered
+	private final byte[] bytes = new byte[8]; // scratch bytes of a BINARY event
+
+	/**
+	 * Create a transcript with the default buffer capacity writing to the given sink, and start its writer thread.
+	 * @param system point system (used for GRID scores)
+	 * @param sink destination stream (not closed by the transcript)
+	 * @param format output format
+	 */
+	public PokerSquaresTranscript(PokerSquaresPointSystem system, OutputStream sink, Format format) {
+		this(system, sink, format, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Create a transcript writing to the given sink, and start its writer thread.  The sink is not closed by
+	 * the transcript.
+	 * @param system point system (used for GRID scores)
+	 * @param sink destination stream
+	 * @param format output format
+	 * @param capacity ring buffer capacity in events (rounded up to a power of 2)
+	 */
+	public PokerSquaresTranscript(PokerSquaresPointSystem system, OutputStream sink, Format format, int capacity) {
+		this.system = system;
+		this.format = format;
+		BufferedOutputStream buffered = new BufferedOutputStream(sink, 1 << 16); // rendered events are written in batches
+		out = new PrintStream(buffered, false);
+		int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+		events = new long[size];
+		mask = size - 1;
+		if (format == Format.CSV)
+			out.println("game,turn,card,row,col,score");
+		writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				drain();
+			}
+		}, "PokerSquaresTranscript-writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Record a placement.  Called on the game thread.
+	 * @param turn number of cards placed before this one
+	 * @param card placed card
+	 * @param row row of the placement
+	 * @param col column of the placement
+	 */
+	public void move(int turn, Card card, int row, int col) {
+		offer(pack(MOVE, turn, card.getCardId(), row * SIZE + col, 0));
+	}
+
+	/**
+	 * Record the end of a game.  Called on the game thread.
+	 * @param score final game score
+	 */
+	public void endGame(int score) {
+		offer(pack(END, 0, 0, 0, score));
+	}
+
+	/**
+	 * Pack an event: type (bits 56-63), turn (48-55), card id (40-47), row-major position (32-39), score (0-31).
+	 */
+	private static long pack(int type, int turn, int cardId, int pos, int score) {
+		return (long) type << 56 | (long) turn << 48 | (long) cardId << 40 | (long) pos << 32 | (score & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Append an event to the ring buffer, waiting only if it is full.
+	 */
+	private void offer(long event) {
+		long t = tail.get();
+		if (t - cachedHead >= events.length) {
+			cachedHead = head.get();
+			while (t - cachedHead >= events.length) {
+				stalls++;
+				Thread.yield();
+				cachedHead = head.get();
+			}
+		}
+		events[(int) (t & mask)] = event;
+		tail.lazySet(t + 1); // publish the event
+	}
+
+	/**
+	 * Writer loop: render events in batches, flushing the sink whenever the buffer is empty.
+	 */
+	private void drain() {
+		while (true) {
+			long h = head.get();
+			long t = tail.get();
+			if (h == t) {
+				if (flushed.get() < t) {
+					out.flush();
+					flushed.set(t);
+				}
+				if (!running)
+					return;
+				LockSupport.parkNanos(IDLE_NANOS);
+				continue;
+			}
+			for (; h < t; h++)
+				render(events[(int) (h & mask)]);
+			head.lazySet(t); // release the slots
+		}
+	}
+
+	/**
+	 * Render one event to the sink.
+	 */
+	private void render(long event) {
+		int type = (int) (event >>> 56);
+		int turn = (int) (event >>> 48) & 0xFF;
+		int cardId = (int) (event >>> 40) & 0xFF;
+		int pos = (int) (event >>> 32) & 0xFF;
+		int score = (int) event;
+		switch (format) {
+		case BINARY:
+			for (int i = 0; i < 8; i++)
+				bytes[i] = (byte) (event >>> (56 - 8 * i));
+			out.write(bytes, 0, 8);
+			break;
+		case CSV:
+			if (type == MOVE)
+				out.printf("%d,%d,%s,%d,%d,\n", game, turn, Card.getCard(cardId), pos / SIZE, pos % SIZE);
+			else
+				out.printf("%d,end,,,,%d\n", game, score);
+			break;
+		case GRID:
+			if (type == MOVE) {
+				grid[pos / SIZE][pos % SIZE] = Card.getCard(cardId);
+				system.printGrid(grid, out);
+				out.println();
+			}
+			break;
+		}
+		if (type == END) {
+			game++;
+			for (Card[] row : grid)
+				Arrays.fill(row, null);
+		}
+	}
+
+	/**
+	 * Wait until all events recorded so far have been rendered and flushed to the sink.
+	 */
+	public void flush() {
+		long t = tail.get();
+		while (flushed.get() < t && writer.isAlive())
+			LockSupport.parkNanos(IDLE_NANOS / 10);
+	}
+
+	/**
+	 * Flush all events and stop the writer thread.  The sink is left open.
+	 */
+	public void close() {
+		flush();
+		running = false;
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * @return number of times the game thread waited on a full buffer
+	 */
+	public long getStalls() {
+		return stalls;
+	}
+}
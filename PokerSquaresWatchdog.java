@@ -0,0 +1,231 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * PokerSquaresWatchdog - runs getPlay calls on a dedicated player thread under a hard deadline.
+ *
+ * When a watchdog is attached to a PokerSquares object (PokerSquares.setWatchdog), each getPlay call runs on the
+ * watchdog's player thread while the game thread waits for it.  If the call overruns the game's remaining
+ * time, the game thread stops waiting and records a timeout loss, so a player stuck in an endless search
+ * cannot hang a batch of games.  An overrunning PokerSquaresAnytimePlayer is first asked to cancel() and given
+ * CANCEL_GRACE_MILLIS to return, so a cooperative player leaves no thread behind.  Otherwise the player thread
+ * is interrupted and abandoned (at the lowest priority) and a new one runs later calls.  Since the abandoned
+ * thread may still be changing the player's state, the player object is abandoned with it: PokerSquares
+ * records every later game of that object as a timeout loss without calling it (see isAbandoned).  Searches
+ * that do not check for interrupts also keep an abandoned thread busy, taking a core from later games;
+ * getLiveOverruns counts such threads.
+ *
+ * Time is charged in one of two modes:
+ *   - WALL: elapsed wall-clock time, as in PokerSquares without a watchdog,
+ *   - CPU: CPU time of the player thread (ThreadMXBean), so that a player is not charged for time other
+ *     processes or parallel games take from it.  CPU time used by threads the player starts itself is not
+ *     charged, so players that search on helper threads should be timed by WALL.  A CPU-timed call is also
+ *     stopped when its wall-clock time exceeds WALL_LIMIT_FACTOR times the remaining time (plus a second),
+ *     so a blocked player still cannot hang the game.
+ *
+ * Author: Caleb Reath
+ */
+public class PokerSquaresWatchdog {
+	private static final long POLL_MILLIS = 1L; // CPU time polling interval
+	private static final long WALL_LIMIT_FACTOR = 4; // wall-clock limit of a CPU-timed call, relative to the time remaining
+	private static final long WALL_LIMIT_MILLIS = 1000L; // additional wall-clock allowance of a CPU-timed call
+	private static final long CANCEL_GRACE_MILLIS = 100L; // wait for a cancelled anytime player to return
+	public static final int[] OVERRUN = new int[0]; // getPlay result of a call stopped for overrunning
+
+	/**
+	 * TimingMode - how time spent in getPlay is charged.
+	 */
+	public enum TimingMode {
+		WALL, CPU
+	}
+
+	private final TimingMode mode; // time charging mode
+	private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean(); // thread CPU time source
+	private ExecutorService executor; // single player thread
+	private volatile Thread playerThread; // current player thread
+	private long chargedMillis; // milliseconds charged for the last call
+	private long overruns = 0; // number of calls stopped by the watchdog
+	private final ArrayList<Thread> abandonedThreads = new ArrayList<Thread>(); // player threads abandoned while running
+	private final Set<PokerSquaresPlayer> abandonedPlayers = Collections.newSetFromMap(new IdentityHashMap<PokerSquaresPlayer, Boolean>()); // players of abandoned threads
+
+	/**
+	 * Create a watchdog with the given time charging mode.
+	 * @param mode time charging mode
+	 * @throws UnsupportedOperationException if CPU timing is requested but not supported by the JVM
+	 */
+	public PokerSquaresWatchdog(TimingMode mode) {
+		if (mode == TimingMode.CPU) {
+			if (!threadBean.isCurrentThreadCpuTimeSupported())
+				throw new UnsupportedOperationException("Thread CPU time is not supported by this JVM");
+			threadBean.setThreadCpuTimeEnabled(true);
+		}
+		this.mode = mode;
+		executor = newExecutor();
+	}
+
+	private ExecutorService newExecutor() {
+		return Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "PokerSquaresWatchdog-player");
+				thread.setDaemon(true);
+				playerThread = thread;
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Call the player's getPlay on the player thread, waiting at most until its time runs out.
+	 * @param player player
+	 * @param card drawn card
+	 * @param millisRemaining milliseconds remaining in the player's game
+	 * @return the player's play (as returned, possibly null or illegal), or OVERRUN if the call overran the
+	 * remaining time
+	 * @throws Exception any exception thrown by the player's getPlay
+	 */
+	public int[] getPlay(final PokerSquaresPlayer player, final Card card, final long millisRemaining) throws Exception {
+		final long[] cpuNanos = new long[1];
+		Future<int[]> future = executor.submit(new Callable<int[]>() {
+			@Override
+			public int[] call() {
+				long start = mode == TimingMode.CPU ? threadBean.getCurrentThreadCpuTime() : 0;
+				try {
+					return player.getPlay(card, millisRemaining);
+				} finally {
+					if (mode == TimingMode.CPU)
+						cpuNanos[0] = threadBean.getCurrentThreadCpuTime() - start;
+				}
+			}
+		});
+		long startNanos = System.nanoTime();
+		try {
+			int[] play;
+			if (mode == TimingMode.WALL)
+				play = future.get(millisRemaining + 1, TimeUnit.MILLISECONDS);
+			else
+				play = awaitCpu(future, millisRemaining, startNanos);
+			chargedMillis = mode == TimingMode.WALL ? (System.nanoTime() - startNanos) / 1000000L : cpuNanos[0] / 1000000L;
+			return play;
+		} catch (TimeoutException e) {
+			overrun(player, future);
+			chargedMillis = millisRemaining + 1;
+			return OVERRUN;
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof Exception)
+				throw (Exception) cause;
+			throw new RuntimeException(cause);
+		}
+	}
+
+	/**
+	 * Wait for a CPU-timed call, polling the player thread's CPU time.
+	 * @throws TimeoutException if the call exceeds its CPU time or wall-clock limit
+	 */
+	private int[] awaitCpu(Future<int[]> future, long millisRemaining, long startNanos) throws Exception {
+		Thread thread = playerThread;
+		long cpuStart = threadBean.getThreadCpuTime(thread.getId());
+		long wallLimitNanos = (WALL_LIMIT_FACTOR * Math.max(0, millisRemaining) + WALL_LIMIT_MILLIS) * 1000000L;
+		while (true) {
+			try {
+				return future.get(POLL_MILLIS, TimeUnit.MILLISECONDS);
+			} catch (TimeoutException e) {
+				long cpu = threadBean.getThreadCpuTime(thread.getId()) - cpuStart;
+				if (cpu > (millisRemaining + 1) * 1000000L || System.nanoTime() - startNanos > wallLimitNanos)
+					throw e;
+			}
+		}
+	}
+
+	/**
+	 * Stop an overrunning call: cancel an anytime player and wait briefly for it to return, or else interrupt
+	 * the call and continue with a new player thread.
+	 */
+	private void overrun(PokerSquaresPlayer player, Future<int[]> future) {
+		overruns++;
+		if (player instanceof PokerSquaresAnytimePlayer && !future.isDone()) {
+			((PokerSquaresAnytimePlayer) player).cancel();
+			try {
+				future.get(CANCEL_GRACE_MILLIS, TimeUnit.MILLISECONDS);
+				return; // the player thread is free again
+			} catch (TimeoutException e) { // not cancellable in time
+			} catch (Exception e) { // the call ended anyway
+				return;
+			}
+		}
+		if (future.isDone())
+			return;
+		Thread thread = playerThread;
+		future.cancel(true);
+		executor.shutdownNow();
+		executor = newExecutor();
+		if (thread != null && thread.isAlive()) {
+			thread.setPriority(Thread.MIN_PRIORITY);
+			abandonedThreads.add(thread);
+			abandonedPlayers.add(player);
+			System.err.println("PokerSquaresWatchdog: abandoned a running player thread; later games of " + player.getName() + " are lost");
+		}
+	}
+
+	/**
+	 * Return whether a player was abandoned with the thread of an overrunning call, which may still be running
+	 * its getPlay.  Such a player must not be initialized or called again.
+	 * @param player player
+	 * @return whether the player was abandoned
+	 */
+	public boolean isAbandoned(PokerSquaresPlayer player) {
+		return abandonedPlayers.contains(player);
+	}
+
+	/**
+	 * @return milliseconds charged for the last getPlay call
+	 */
+	public long getChargedMillis() {
+		return chargedMillis;
+	}
+
+	/**
+	 * @return number of getPlay calls stopped for overrunning
+	 */
+	public long getOverruns() {
+		return overruns;
+	}
+
+	/**
+	 * @return number of abandoned player threads of overrunning calls that are still running
+	 */
+	public int getLiveOverruns() {
+		for (Iterator<Thread> it = abandonedThreads.iterator(); it.hasNext();)
+			if (!it.next().isAlive())
+				it.remove();
+		return abandonedThreads.size();
+	}
+
+	/**
+	 * @return time charging mode
+	 */
+	public TimingMode getMode() {
+		return mode;
+	}
+
+	/**
+	 * Stop the player thread.
+	 */
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+}
@@ -0,0 +1,123 @@
+import java.util.Random;
+
+/**
+ * Reath_CommonRandomNumbers - the common deal sequences and paired stopping rule of a common random numbers
+ * (CRN) comparison of candidate plays.
+ *
+ * In each round, a player simulates every candidate on the same sampled sequence of future cards and
+ * tie-breaks (sampleSequence, getCard, getTieBreak), so that the differences between the candidates' averages
+ * reflect the plays rather than the luck of their draws.  Each completed round is passed to addRound, which
+ * accumulates the candidates' score totals and the sums of products of their paired scores.  From these,
+ * the mean and standard error of the paired score difference of the leading candidate (highest total) to
+ * each other candidate follow, and simulation may stop once the leader is ahead of every other candidate by
+ * more than Z standard errors.  The leader is first checked after MIN_ROUNDS rounds, then every
+ * CHECK_ROUNDS rounds.
+ *
+ * Author: Caleb Reath
+ */
+public class Reath_CommonRandomNumbers {
+	public static final double Z = 3.0; // paired standard errors by which the leader must lead every other candidate
+	public static final int MIN_ROUNDS = 32; // rounds before the leader may be accepted
+	public static final int CHECK_ROUNDS = 8; // rounds between checks of the leader
+	private static final int NUM_POS = Reath_GameState.NUM_POS;
+
+	private final int[] cards = new int[NUM_POS]; // card ids of the current common deal sequence
+	private final int[] tieBreaks = new int[NUM_POS]; // nonnegative random tie-break values of the current common deal sequence
+	private int numCandidates; // number of candidates of the current comparison
+	private long[][] productSums; // sums over rounds of products of paired scores (i <= j)
+	private int rounds; // completed rounds of the current comparison
+
+	/**
+	 * Start a comparison of candidates with no completed rounds.
+	 * @param numCandidates number of candidates
+	 */
+	public void start(int numCandidates) {
+		this.numCandidates = numCandidates;
+		productSums = new long[numCandidates][numCandidates];
+		rounds = 0;
+	}
+
+	/**
+	 * @return completed rounds of the current comparison
+	 */
+	public int getRounds() {
+		return rounds;
+	}
+
+	/**
+	 * Sample the common deal sequence: distinct undealt cards and tie-break values.  The cards are moved to
+	 * deck[first] onward by a partial Fisher-Yates shuffle of deck[first] through the end of the deck.
+	 * @param deck deck whose cards from index first onward are undealt
+	 * @param first index of the first undealt card
+	 * @param depth length of the sequence
+	 * @param random pseudorandom number generator
+	 */
+	public void sampleSequence(Card[] deck, int first, int depth, Random random) {
+		for (int d = 0; d < depth; d++) {
+			int c = first + d + random.nextInt(deck.length - first - d);
+			Card swap = deck[c];
+			deck[c] = deck[first + d];
+			deck[first + d] = swap;
+			cards[d] = swap.getCardId();
+			tieBreaks[d] = random.nextInt(Integer.MAX_VALUE);
+		}
+	}
+
+	/**
+	 * @param d index in the common deal sequence
+	 * @return d-th card of the sequence
+	 */
+	public Card getCard(int d) {
+		return Card.getCard(cards[d]);
+	}
+
+	/**
+	 * @param d index in the common deal sequence
+	 * @return nonnegative tie-break value of the d-th placement of the sequence
+	 */
+	public int getTieBreak(int d) {
+		return tieBreaks[d];
+	}
+
+	/**
+	 * Add a completed round to the candidates' totals and the paired score sums.
+	 * @param roundScores candidate scores on the round's sequence
+	 * @param scoreTotals simulation score totals of the candidates (added to)
+	 * @param simCounts simulation counts of the candidates (added to)
+	 * @return whether simulation may stop because the leader is separated from every other candidate
+	 */
+	public boolean addRound(int[] roundScores, int[] scoreTotals, int[] simCounts) {
+		rounds++;
+		for (int i = 0; i < numCandidates; i++) {
+			scoreTotals[i] += roundScores[i];
+			simCounts[i]++;
+			for (int j = i; j < numCandidates; j++)
+				productSums[i][j] += (long) roundScores[i] * roundScores[j];
+		}
+		return rounds >= MIN_ROUNDS && rounds % CHECK_ROUNDS == 0 && isLeaderSeparated(scoreTotals);
+	}
+
+	/**
+	 * Return whether the candidate with the highest score total leads each other candidate by more than Z
+	 * standard errors of their paired score differences (candidates that scored identically in every round are
+	 * equivalent and ignored).
+	 */
+	private boolean isLeaderSeparated(int[] scoreTotals) {
+		int leader = 0;
+		for (int i = 1; i < numCandidates; i++)
+			if (scoreTotals[i] > scoreTotals[leader])
+				leader = i;
+		for (int j = 0; j < numCandidates; j++) {
+			if (j == leader)
+				continue;
+			double meanDifference = (double) (scoreTotals[leader] - scoreTotals[j]) / rounds;
+			double squareSum = productSums[leader][leader] - 2.0 * productSums[Math.min(leader, j)][Math.max(leader, j)] + productSums[j][j];
+			double variance = (squareSum - rounds * meanDifference * meanDifference) / (rounds - 1);
+			if (variance <= 0 && meanDifference == 0) // equivalent candidates
+				continue;
+			if (meanDifference <= Z * Math.sqrt(Math.max(0, variance) / rounds))
+				return false;
+		}
+		return true;
+	}
+}
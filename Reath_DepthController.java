@@ -0,0 +1,90 @@
+/**
+ * Reath_DepthController - chooses the depth of greedy Monte Carlo rollouts for each turn.
+ *
+ * A greedy rollout of depth d from a grid with e empty positions evaluates e + (e - 1) + ... + (e - d + 1)
+ * placements, so deep rollouts are expensive early in the game and cheap late.  Given the time of a turn,
+ * the number of candidate plays and the measured cost of a placement evaluation, the controller picks the
+ * deepest rollout (up to game end) that still affords the target number of rollouts per candidate, so
+ * that no turn trades its sample size for depth below that target.  If not even the minimum depth affords
+ * the target, the minimum depth is used.
+ *
+ * Players that accept a depth limit use the controller when given ADAPTIVE as their depth limit.
+ *
+ * Author: Caleb Reath
+ */
+public class Reath_DepthController {
+	public static final int ADAPTIVE = -1; // depth limit value selecting a depth controller
+	public static final int DEFAULT_TARGET_SAMPLES = 200; // default rollouts per candidate a turn should afford
+	private static final double COST_RATE = 0.2; // running mean weight of the latest measured placement cost
+
+	private final int minDepth; // shallowest rollout depth
+	private final int targetSamples; // rollouts per candidate a turn should afford
+	private double nanosPerPlacement = 100; // running mean of the measured cost of a placement evaluation
+	private int depth = 1; // depth chosen for the current turn
+
+	/**
+	 * Create a depth controller with minimum depth 1 and the default target sample count.
+	 */
+	public Reath_DepthController() {
+		this(1, DEFAULT_TARGET_SAMPLES);
+	}
+
+	/**
+	 * Create a depth controller.
+	 * @param minDepth shallowest rollout depth
+	 * @param targetSamples rollouts per candidate a turn should afford
+	 */
+	public Reath_DepthController(int minDepth, int targetSamples) {
+		this.minDepth = Math.max(1, minDepth);
+		this.targetSamples = Math.max(1, targetSamples);
+	}
+
+	/**
+	 * Choose the rollout depth of a turn.
+	 * @param empties empty positions after the candidate play
+	 * @param numCandidates number of candidate plays
+	 * @param turnNanos nanoseconds available for the turn's rollouts
+	 * @return rollout depth (at least the minimum depth, at most empties)
+	 */
+	public int getDepth(int empties, int numCandidates, long turnNanos) {
+		double rollouts = (double) targetSamples * Math.max(1, numCandidates);
+		depth = Math.min(minDepth, empties);
+		for (int d = empties; d > depth; d--)
+			if (rollouts * getPlacements(empties, d) * nanosPerPlacement <= turnNanos) {
+				depth = d;
+				break;
+			}
+		return depth;
+	}
+
+	/**
+	 * Record the rollouts of a turn at the depth last chosen, updating the measured placement cost.
+	 * @param empties empty positions after the candidate play
+	 * @param rollouts number of rollouts
+	 * @param nanos time of the rollouts in nanoseconds
+	 */
+	public void recordRollouts(int empties, long rollouts, long nanos) {
+		long placements = rollouts * getPlacements(empties, depth);
+		if (placements < 1000) // too few to measure
+			return;
+		nanosPerPlacement += COST_RATE * ((double) nanos / placements - nanosPerPlacement);
+	}
+
+	/**
+	 * @return depth chosen for the current turn
+	 */
+	public int getCurrentDepth() {
+		return depth;
+	}
+
+	/**
+	 * Get the number of placement evaluations of a greedy rollout.
+	 * @param empties empty positions at the start of the rollout
+	 * @param depth rollout depth
+	 * @return placements evaluated
+	 */
+	public static long getPlacements(int empties, int depth) {
+		depth = Math.min(depth, empties);
+		return (long) depth * empties - (long) depth * (depth - 1) / 2;
+	}
+}
@@ -0,0 +1,393 @@
+/**
+ * Reath_EndgameSolver - an exact expectimax solver for the last few plays of a Poker Squares game.
+ *
+ * Decision nodes maximize over the empty positions and chance nodes average over the undealt cards.
+ * Undealt cards are grouped into classes (rank, suit) where all suits that can no longer complete a flush
+ * in any unfinished line share one "other" suit, since such suits can never affect the score again.
+ * Chance node values are memoized in a Reath_TranspositionTable under a key packing the card class placed in
+ * each empty position of the solve context.  Because the remaining deck is determined by the grid, that key
+ * identifies the (empty positions, line contents, remaining deck) state exactly, and it merges states that
+ * differ only in irrelevant suits, which a Zobrist hash of the cards would not.  Entries are stored with their
+ * number of empty positions as depth, so a full table keeps the values that are most expensive to recompute
+ * and those of the current solve.  Line scores are updated incrementally for the two lines through each
+ * placement.
+ *
+ * The context (empty positions and suit classes) is kept for later plays of the same game, so after the
+ * first successful solve the following turns are mostly memo lookups.  solve() refuses endgames whose
+ * estimated size does not fit in the given time and gives up (returning -1) if the deadline passes or
+ * cancel() is called.  Since the size estimate can be low and the time of an aborted solve is lost, players
+ * give a solve getSolveMillis(), a few turns' even share of their remaining time, rather than a fixed
+ * fraction of all of it.  solveWithinPlacements() bounds a solve by a number of placements instead, so that
+ * whether it succeeds does not depend on machine speed.
+ *
+ * Author: Caleb Reath
+ */
+public class Reath_EndgameSolver {
+	public static final int MAX_EMPTY = 6; // largest number of empty positions attempted
+	private static final int SIZE = Reath_GameState.SIZE; // number of rows/columns in square grid
+	private static final int NUM_POS = Reath_GameState.NUM_POS; // number of positions in square grid
+	private static final int NUM_LINES = Reath_GameState.NUM_LINES; // number of scored lines
+	private static final int NUM_RANKS = Card.NUM_RANKS;
+	private static final int OTHER_SUIT = Card.NUM_SUITS; // shared suit of all suits that cannot flush
+	private static final int NUM_SUIT_CLASSES = Card.NUM_SUITS + 1;
+	private static final int NUM_CLASSES = NUM_RANKS * NUM_SUIT_CLASSES;
+	private static final int KEY_BITS = 7; // bits per position in a memo key
+	private static final int DEFAULT_MEMO_BITS = 21; // log2 of the default memo capacity
+	private static final int CHECK_INTERVAL = 1 << 12; // placements between deadline checks
+	private static final int SOLVE_TURNS = 2; // even turn shares of the remaining time available to a solve
+
+	private final int[] scoreTable; // points for each PokerHand id
+
+	// solve context (kept across plays of one game)
+	private boolean contextValid = false;
+	private int relevantSuits; // bit s set when suit s keeps its own card classes
+	private final int[] cellIndex = new int[NUM_POS]; // index of each context position within the key or -1
+
+	// search state
+	private final int[] free = new int[MAX_EMPTY]; // empty positions
+	private int numEmpty;
+	private final int[] classCount = new int[NUM_CLASSES]; // undealt cards in each class
+	private final int[] presentClasses = new int[NUM_CLASSES]; // classes with undealt cards at the solve root
+	private int numPresent;
+	private int numUndealt;
+	private final int[] lineSize = new int[NUM_LINES];
+	private final int[] lineRankCounts = new int[NUM_LINES * NUM_RANKS];
+	private final int[] lineSuitCounts = new int[NUM_LINES * NUM_SUIT_CLASSES];
+	private final int[] lineRankMask = new int[NUM_LINES];
+	private final int[] lineSuitMask = new int[NUM_LINES];
+	private final int[] lineHand = new int[NUM_LINES];
+	private int score; // grid score
+	private long key; // memo key of the current state
+
+	private final Reath_TranspositionTable memo; // chance node values by memo key
+
+	private long placements; // placements made by the current solve
+	private long deadline; // System.nanoTime() at which the current solve gives up
+	private long maxPlacements; // number of placements after which the current solve gives up
+	private boolean aborted;
+	private volatile boolean cancelled = false; // whether cancel() has asked the current solve to give up
+	private double placementsPerMilli = 20000; // measured solver speed
+	private double value; // expected final score of the last solved play
+
+	/**
+	 * Create an endgame solver for the given point system with the default memo capacity.
+	 * @param system point system
+	 */
+	public Reath_EndgameSolver(PokerSquaresPointSystem system) {
+		this(system, DEFAULT_MEMO_BITS);
+	}
+
+	/**
+	 * Create an endgame solver for the given point system.
+	 * @param system point system
+	 * @param memoBits log2 of the number of memoized chance nodes
+	 */
+	public Reath_EndgameSolver(PokerSquaresPointSystem system, int memoBits) {
+		scoreTable = system.getScoreTable();
+		memo = new Reath_TranspositionTable(memoBits);
+	}
+
+	/**
+	 * Forget the solve context and memo.  Should be called before each game.
+	 */
+	public void reset() {
+		memo.clear();
+		contextValid = false;
+	}
+
+	/**
+	 * Return whether the endgame with the given number of empty positions is expected to be solved within
+	 * the given time.
+	 * @param state current game state (before placing the drawn card)
+	 * @param millis available milliseconds
+	 * @return whether solve() is expected to succeed
+	 */
+	public boolean fits(Reath_GameState state, long millis) {
+		return estimatePlacements(state) <= placementsPerMilli * millis;
+	}
+
+	/**
+	 * Get the time a player should allow a solve: SOLVE_TURNS even shares of its remaining time (a successful
+	 * solve also answers the following turns), but never more than half of it.
+	 * @param millisRemaining remaining milliseconds for play in the rest of the game
+	 * @param remainingPlays plays left in the game, including the current one
+	 * @return milliseconds available for the solve
+	 */
+	public static long getSolveMillis(long millisRemaining, int remainingPlays) {
+		return Math.min(millisRemaining / 2, SOLVE_TURNS * millisRemaining / Math.max(1, remainingPlays));
+	}
+
+	/**
+	 * Estimate the number of placements of a solve (infinite if the endgame is not attempted).
+	 * @param state current game state (before placing the drawn card)
+	 * @return estimated number of placements
+	 */
+	private double estimatePlacements(Reath_GameState state) {
+		int empties = NUM_POS - state.getNumPlays();
+		if (empties > MAX_EMPTY || empties < 1)
+			return Double.POSITIVE_INFINITY;
+		int classes = Math.min(Card.NUM_CARDS - state.getNumPlays() - 1, NUM_RANKS * (Integer.bitCount(getRelevantSuits(state)) + 1));
+		// chance nodes with j of the remaining cells filled: C(empties - 1, j) * classes^j, each expanding classes * (empties - 1 - j) placements
+		double estimate = empties;
+		double states = 1;
+		for (int j = 0; j < empties - 1; j++) {
+			estimate += states * classes * (empties - 1 - j);
+			states *= (double) classes * (empties - 1 - j) / (j + 1);
+		}
+		return estimate;
+	}
+
+	/**
+	 * Find the play maximizing the expected final score for the drawn card, or give up.
+	 * @param state current game state (before placing the drawn card); not modified
+	 * @param cardId id of the drawn card
+	 * @param millis milliseconds available for the solve
+	 * @return row-major index of the best position, or -1 if the endgame does not fit in the given time
+	 */
+	public int solve(Reath_GameState state, int cardId, long millis) {
+		if (!fits(state, millis))
+			return -1;
+		return solve(state, cardId, System.nanoTime() + millis * 1000000L, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Find the play maximizing the expected final score for the drawn card, or give up, within a number of
+	 * placements rather than a time.  Given the same game (and earlier solves), the result does not depend on
+	 * machine speed.
+	 * @param state current game state (before placing the drawn card); not modified
+	 * @param cardId id of the drawn card
+	 * @param maxPlacements placements available for the solve
+	 * @return row-major index of the best position, or -1 if the endgame does not fit in the given placements
+	 */
+	public int solveWithinPlacements(Reath_GameState state, int cardId, long maxPlacements) {
+		if (estimatePlacements(state) > maxPlacements)
+			return -1;
+		return solve(state, cardId, Long.MAX_VALUE, maxPlacements);
+	}
+
+	/**
+	 * Solve until the given deadline (System.nanoTime()) or number of placements.
+	 */
+	private int solve(Reath_GameState state, int cardId, long deadline, long maxPlacements) {
+		long start = System.nanoTime();
+		this.deadline = deadline;
+		this.maxPlacements = maxPlacements;
+		placements = 0;
+		aborted = false;
+		setUp(state, cardId);
+		memo.newSearch();
+
+		int cls = cardClass(cardId);
+		int bestPos = -1;
+		double bestValue = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < numEmpty && !aborted; i++) {
+			int pos = free[i];
+			double v = place(i, cls);
+			unplace(i, pos, cls);
+			if (v > bestValue) {
+				bestValue = v;
+				bestPos = pos;
+			}
+		}
+		long elapsedMillis = (System.nanoTime() - start) / 1000000L;
+		if (elapsedMillis > 10) // calibrate the size estimate of fits()
+			placementsPerMilli = (double) placements / elapsedMillis;
+		cancelled = false;
+		if (aborted)
+			return -1;
+		value = bestValue;
+		return bestPos;
+	}
+
+	/**
+	 * Ask the solve in progress (or, if there is none, the next one) to give up.  May be called from any thread.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * Forget a cancel() that no solve has acted on, e.g. when the turn it was meant for ended without a solve.
+	 */
+	public void clearCancel() {
+		cancelled = false;
+	}
+
+	/**
+	 * Get the expected final score of the play returned by the last successful solve.
+	 * @return expected final score
+	 */
+	public double getValue() {
+		return value;
+	}
+
+	/**
+	 * Compute the set of suits that can still complete a flush in some unfinished line.
+	 */
+	private int getRelevantSuits(Reath_GameState state) {
+		int suits = 0;
+		for (int line = 0; line < NUM_LINES; line++) {
+			int size = state.lineSize[line];
+			if (size == 0)
+				suits = (1 << Card.NUM_SUITS) - 1;
+			else if (size < SIZE && Integer.bitCount(state.lineSuitMask[line]) == 1)
+				suits |= state.lineSuitMask[line];
+		}
+		return suits;
+	}
+
+	private int cardClass(int cardId) {
+		int suit = cardId / NUM_RANKS;
+		return (cardId % NUM_RANKS) * NUM_SUIT_CLASSES + ((relevantSuits & (1 << suit)) != 0 ? suit : OTHER_SUIT);
+	}
+
+	/**
+	 * Set up (or reuse) the solve context and copy the line state of the given game state.
+	 */
+	private void setUp(Reath_GameState state, int cardId) {
+		int empties = NUM_POS - state.getNumPlays();
+		int suits = getRelevantSuits(state);
+		boolean reuse = contextValid && (suits & ~relevantSuits) == 0;
+		for (int i = 0; reuse && i < empties; i++)
+			reuse = cellIndex[state.getEmpty(i)] >= 0;
+		if (!reuse) {
+			reset();
+			relevantSuits = suits;
+			java.util.Arrays.fill(cellIndex, -1);
+			for (int i = 0; i < empties; i++)
+				cellIndex[state.getEmpty(i)] = i;
+			contextValid = true;
+		}
+
+		// lines (real suits keep their counts; the class of each placed card decides the suit slot of new cards)
+		java.util.Arrays.fill(lineSuitCounts, 0);
+		for (int line = 0; line < NUM_LINES; line++) {
+			lineSize[line] = state.lineSize[line];
+			lineRankMask[line] = state.lineRankMask[line];
+			lineSuitMask[line] = state.lineSuitMask[line];
+			lineHand[line] = state.lineHand[line];
+			for (int s = 0; s < Card.NUM_SUITS; s++)
+				lineSuitCounts[line * NUM_SUIT_CLASSES + s] = state.lineSuitCounts[line * Card.NUM_SUITS + s];
+		}
+		System.arraycopy(state.lineRankCounts, 0, lineRankCounts, 0, lineRankCounts.length);
+		score = state.getScore();
+
+		// key of the context positions filled since the context was created
+		key = 0;
+		for (int pos = 0; pos < NUM_POS; pos++)
+			if (cellIndex[pos] >= 0 && state.getCard(pos) != Reath_GameState.EMPTY)
+				key += (long) (cardClass(state.getCard(pos)) + 1) << (KEY_BITS * cellIndex[pos]);
+
+		// empty positions and undealt card classes
+		numEmpty = empties;
+		for (int i = 0; i < empties; i++)
+			free[i] = state.getEmpty(i);
+		java.util.Arrays.fill(classCount, 0);
+		numUndealt = 0;
+		for (int i = 0; i < Card.NUM_CARDS - state.getNumPlays(); i++) {
+			int undealt = state.getUndealt(i);
+			if (undealt != cardId) {
+				classCount[cardClass(undealt)]++;
+				numUndealt++;
+			}
+		}
+		numPresent = 0;
+		for (int c = 0; c < NUM_CLASSES; c++)
+			if (classCount[c] > 0)
+				presentClasses[numPresent++] = c;
+	}
+
+	/**
+	 * Place a card of the given class at free[i] and return the value of the resulting chance node.
+	 * The placement stays made; unplace() must follow.
+	 */
+	private double place(int i, int cls) {
+		int pos = free[i];
+		free[i] = free[numEmpty - 1];
+		free[numEmpty - 1] = pos;
+		numEmpty--;
+		int rank = cls / NUM_SUIT_CLASSES;
+		int suit = cls % NUM_SUIT_CLASSES;
+		addToLine(pos / SIZE, rank, suit);
+		addToLine(SIZE + pos % SIZE, rank, suit);
+		key += (long) (cls + 1) << (KEY_BITS * cellIndex[pos]);
+		if ((++placements & (CHECK_INTERVAL - 1)) == 0 && (cancelled || placements > maxPlacements || System.nanoTime() > deadline))
+			aborted = true;
+		return chance();
+	}
+
+	/**
+	 * Undo the placement made by place(i, cls) at position pos.
+	 */
+	private void unplace(int i, int pos, int cls) {
+		key -= (long) (cls + 1) << (KEY_BITS * cellIndex[pos]);
+		int rank = cls / NUM_SUIT_CLASSES;
+		int suit = cls % NUM_SUIT_CLASSES;
+		removeFromLine(pos / SIZE, rank, suit);
+		removeFromLine(SIZE + pos % SIZE, rank, suit);
+		numEmpty++;
+		free[numEmpty - 1] = free[i];
+		free[i] = pos;
+	}
+
+	/**
+	 * Return the expected final score of the current grid with the next card still to be drawn.
+	 */
+	private double chance() {
+		if (numEmpty == 0)
+			return score;
+		if (aborted)
+			return 0;
+		int entry = memo.probe(key);
+		if (entry != Reath_TranspositionTable.NOT_FOUND)
+			return memo.getValue(entry);
+		double sum = 0;
+		for (int p = 0; p < numPresent; p++) {
+			int cls = presentClasses[p];
+			int count = classCount[cls];
+			if (count == 0)
+				continue;
+			classCount[cls]--;
+			numUndealt--;
+			double best = Double.NEGATIVE_INFINITY;
+			for (int i = 0; i < numEmpty; i++) {
+				int pos = free[i];
+				double v = place(i, cls);
+				unplace(i, pos, cls);
+				if (v > best)
+					best = v;
+			}
+			classCount[cls]++;
+			numUndealt++;
+			sum += count * best;
+		}
+		double v = sum / numUndealt;
+		if (!aborted)
+			memo.store(key, v, numEmpty);
+		return v;
+	}
+
+	private void addToLine(int line, int rank, int suit) {
+		lineSize[line]++;
+		lineRankCounts[line * NUM_RANKS + rank]++;
+		lineSuitCounts[line * NUM_SUIT_CLASSES + suit]++;
+		lineRankMask[line] |= 1 << rank;
+		lineSuitMask[line] |= 1 << suit;
+		updateLine(line);
+	}
+
+	private void removeFromLine(int line, int rank, int suit) {
+		lineSize[line]--;
+		if (--lineRankCounts[line * NUM_RANKS + rank] == 0)
+			lineRankMask[line] &= ~(1 << rank);
+		if (--lineSuitCounts[line * NUM_SUIT_CLASSES + suit] == 0)
+			lineSuitMask[line] &= ~(1 << suit);
+		updateLine(line);
+	}
+
+	private void updateLine(int line) {
+		int hand = Reath_GameState.classify(lineSize[line], lineRankMask[line], lineSuitMask[line], lineRankCounts, line * NUM_RANKS);
+		score += scoreTable[hand] - scoreTable[lineHand[line]];
+		lineHand[line] = hand;
+	}
+}
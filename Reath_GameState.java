@@ -0,0 +1,380 @@
+/**
+ * Reath_GameState - a compact Poker Squares game state for search.
+ *
+ * Cards are stored by card id (see Card.getCardId()) and positions by row-major index (r * SIZE + c).
+ * Like GreedyMCPlayer, plays[0 .. numPlays - 1] holds the positions played so far in order and the rest of
+ * plays holds the empty positions; deck[0 .. numPlays - 1] holds the cards placed so far and the rest of deck
+ * holds the undealt cards.  Each of the 10 lines (rows 0-4 followed by columns 0-4) keeps rank/suit counts
+ * so that makePlay/undoPlay only reclassify the two lines through the played position.  No objects are
+ * allocated by makePlay, undoPlay or the greedy simulation methods.
+ *
+ * makePlay/undoPlay also maintain a 64-bit Zobrist hash of the grid: the XOR of a fixed random key for each
+ * (position, card) placement.  It does not depend on the order of the placements, and since the remaining deck
+ * is the complement of the placed cards, equal hashes identify equal (grid, remaining deck) states up to
+ * hash collisions (see Reath_TranspositionTable).
+ *
+ * Author: Caleb Reath
+ */
+public class Reath_GameState {
+	public static final int SIZE = PokerSquares.SIZE; // number of rows/columns in square grid
+	public static final int NUM_POS = SIZE * SIZE; // number of positions in square grid
+	public static final int NUM_LINES = 2 * SIZE; // number of scored lines (rows then columns)
+	public static final int NUM_CARDS = Card.NUM_CARDS; // number of cards in deck
+	public static final int EMPTY = -1; // grid value of an empty position
+	static final int ROYAL_RANKS = 0x1E01; // rank mask of A, T, J, Q, K
+	private static final long[] ZOBRIST = new long[NUM_POS * NUM_CARDS]; // hash key of each (position, card) placement
+
+	static {
+		java.util.Random random = new java.util.Random(0x5DEECE66DL);
+		for (int i = 0; i < ZOBRIST.length; i++)
+			ZOBRIST[i] = random.nextLong();
+	}
+
+	final int[] grid = new int[NUM_POS]; // card id at each position or EMPTY
+	final int[] plays = new int[NUM_POS]; // played positions (index 0 through numPlays - 1) followed by empty positions
+	final int[] playIndex = new int[NUM_POS]; // index of each position within plays
+	final int[] deck = new int[NUM_CARDS]; // placed cards (index 0 through numPlays - 1) followed by undealt cards
+	final int[] deckIndex = new int[NUM_CARDS]; // index of each card within deck
+	int numPlays = 0; // number of cards placed so far
+	long hash = 0; // Zobrist hash of the placements
+
+	final int[] lineSize = new int[NUM_LINES]; // number of cards in each line
+	final int[] lineRankCounts = new int[NUM_LINES * Card.NUM_RANKS]; // rank counts of each line
+	final int[] lineSuitCounts = new int[NUM_LINES * Card.NUM_SUITS]; // suit counts of each line
+	final int[] lineRankMask = new int[NUM_LINES]; // bit r set when rank r is present in the line
+	final int[] lineSuitMask = new int[NUM_LINES]; // bit s set when suit s is present in the line
+	final int[] lineHand = new int[NUM_LINES]; // current PokerHand id of each line
+
+	private int[] scoreTable = new int[PokerHand.NUM_HANDS]; // points for each PokerHand id
+	private int score = 0; // current grid score under scoreTable
+	private final int[] bestPlays = new int[NUM_POS]; // scratch list of tied greedy plays
+
+	/**
+	 * Create an empty game state scored with the given point system.
+	 * @param system point system used for scoring (may be null and set later)
+	 */
+	public Reath_GameState(PokerSquaresPointSystem system) {
+		if (system != null)
+			scoreTable = system.getScoreTable();
+		reset();
+	}
+
+	/**
+	 * Set the point system used for scoring.  Should be called on an empty state.
+	 * @param system point system
+	 */
+	public void setPointSystem(PokerSquaresPointSystem system) {
+		scoreTable = system.getScoreTable();
+		reset();
+	}
+
+	/**
+	 * Clear the grid and return all cards to the deck.
+	 */
+	public void reset() {
+		numPlays = 0;
+		for (int i = 0; i < NUM_POS; i++) {
+			grid[i] = EMPTY;
+			plays[i] = i;
+			playIndex[i] = i;
+		}
+		for (int i = 0; i < NUM_CARDS; i++) {
+			deck[i] = i;
+			deckIndex[i] = i;
+		}
+		java.util.Arrays.fill(lineSize, 0);
+		java.util.Arrays.fill(lineRankCounts, 0);
+		java.util.Arrays.fill(lineSuitCounts, 0);
+		java.util.Arrays.fill(lineRankMask, 0);
+		java.util.Arrays.fill(lineSuitMask, 0);
+		java.util.Arrays.fill(lineHand, PokerHand.HIGH_CARD.id);
+		score = NUM_LINES * scoreTable[PokerHand.HIGH_CARD.id];
+		hash = 0;
+	}
+
+	/**
+	 * Make this state an exact copy of another state.
+	 * @param other state to copy
+	 */
+	public void copyFrom(Reath_GameState other) {
+		System.arraycopy(other.grid, 0, grid, 0, NUM_POS);
+		System.arraycopy(other.plays, 0, plays, 0, NUM_POS);
+		System.arraycopy(other.playIndex, 0, playIndex, 0, NUM_POS);
+		System.arraycopy(other.deck, 0, deck, 0, NUM_CARDS);
+		System.arraycopy(other.deckIndex, 0, deckIndex, 0, NUM_CARDS);
+		System.arraycopy(other.lineSize, 0, lineSize, 0, NUM_LINES);
+		System.arraycopy(other.lineRankCounts, 0, lineRankCounts, 0, lineRankCounts.length);
+		System.arraycopy(other.lineSuitCounts, 0, lineSuitCounts, 0, lineSuitCounts.length);
+		System.arraycopy(other.lineRankMask, 0, lineRankMask, 0, NUM_LINES);
+		System.arraycopy(other.lineSuitMask, 0, lineSuitMask, 0, NUM_LINES);
+		System.arraycopy(other.lineHand, 0, lineHand, 0, NUM_LINES);
+		scoreTable = other.scoreTable;
+		score = other.score;
+		numPlays = other.numPlays;
+		hash = other.hash;
+	}
+
+	/**
+	 * Place the given card at the given empty position.
+	 * @param cardId id of an undealt card
+	 * @param pos row-major index of an empty position
+	 */
+	public void makePlay(int cardId, int pos) {
+		// move the card to the end of the placed section of the deck
+		int i = deckIndex[cardId];
+		int other = deck[numPlays];
+		deck[i] = other;
+		deckIndex[other] = i;
+		deck[numPlays] = cardId;
+		deckIndex[cardId] = numPlays;
+
+		// move the position to the end of the played section of plays
+		i = playIndex[pos];
+		other = plays[numPlays];
+		plays[i] = other;
+		playIndex[other] = i;
+		plays[numPlays] = pos;
+		playIndex[pos] = numPlays;
+
+		grid[pos] = cardId;
+		numPlays++;
+		hash ^= ZOBRIST[pos * NUM_CARDS + cardId];
+		addToLine(pos / SIZE, cardId);
+		addToLine(SIZE + pos % SIZE, cardId);
+	}
+
+	/**
+	 * Undo the most recent play.
+	 */
+	public void undoPlay() {
+		numPlays--;
+		int pos = plays[numPlays];
+		int cardId = grid[pos];
+		grid[pos] = EMPTY;
+		hash ^= ZOBRIST[pos * NUM_CARDS + cardId];
+		removeFromLine(pos / SIZE, cardId);
+		removeFromLine(SIZE + pos % SIZE, cardId);
+	}
+
+	private void addToLine(int line, int cardId) {
+		int rank = cardId % Card.NUM_RANKS;
+		int suit = cardId / Card.NUM_RANKS;
+		lineSize[line]++;
+		lineRankCounts[line * Card.NUM_RANKS + rank]++;
+		lineSuitCounts[line * Card.NUM_SUITS + suit]++;
+		lineRankMask[line] |= 1 << rank;
+		lineSuitMask[line] |= 1 << suit;
+		updateLine(line);
+	}
+
+	private void removeFromLine(int line, int cardId) {
+		int rank = cardId % Card.NUM_RANKS;
+		int suit = cardId / Card.NUM_RANKS;
+		lineSize[line]--;
+		if (--lineRankCounts[line * Card.NUM_RANKS + rank] == 0)
+			lineRankMask[line] &= ~(1 << rank);
+		if (--lineSuitCounts[line * Card.NUM_SUITS + suit] == 0)
+			lineSuitMask[line] &= ~(1 << suit);
+		updateLine(line);
+	}
+
+	private void updateLine(int line) {
+		int hand = classify(lineSize[line], lineRankMask[line], lineSuitMask[line], lineRankCounts, line * Card.NUM_RANKS);
+		score += scoreTable[hand] - scoreTable[lineHand[line]];
+		lineHand[line] = hand;
+	}
+
+	/**
+	 * Classify a (possibly partial) line from its counts.  Agrees with PokerHand.getPokerHandId on the same cards.
+	 * @param size number of cards in the line
+	 * @param rankMask bit r set when rank r is present
+	 * @param suitMask bit s set when suit s is present
+	 * @param rankCounts array holding the rank counts of the line
+	 * @param offset index of rank 0 of the line within rankCounts
+	 * @return PokerHand id of the line
+	 */
+	static int classify(int size, int rankMask, int suitMask, int[] rankCounts, int offset) {
+		int pairs = 0, trips = 0, quads = 0;
+		for (int m = rankMask; m != 0; m &= m - 1) {
+			int count = rankCounts[offset + Integer.numberOfTrailingZeros(m)];
+			if (count == 2)
+				pairs++;
+			else if (count == 3)
+				trips++;
+			else if (count == 4)
+				quads++;
+		}
+		boolean flush = size == SIZE && Integer.bitCount(suitMask) == 1;
+		boolean straight = size == SIZE && Integer.bitCount(rankMask) == SIZE
+				&& (rankMask == ROYAL_RANKS || rankMask == (rankMask & -rankMask) * 0x1F);
+		if (flush && rankMask == ROYAL_RANKS)
+			return PokerHand.ROYAL_FLUSH.id;
+		if (flush && straight)
+			return PokerHand.STRAIGHT_FLUSH.id;
+		if (quads > 0)
+			return PokerHand.FOUR_OF_A_KIND.id;
+		if (trips == 1 && pairs == 1)
+			return PokerHand.FULL_HOUSE.id;
+		if (flush)
+			return PokerHand.FLUSH.id;
+		if (straight)
+			return PokerHand.STRAIGHT.id;
+		if (trips > 0)
+			return PokerHand.THREE_OF_A_KIND.id;
+		if (pairs == 2)
+			return PokerHand.TWO_PAIR.id;
+		if (pairs == 1)
+			return PokerHand.ONE_PAIR.id;
+		return PokerHand.HIGH_CARD.id;
+	}
+
+	/**
+	 * Choose a greedy position for the given card: the empty position maximizing the resulting grid score,
+	 * breaking ties randomly.
+	 * @param cardId id of an undealt card
+	 * @param random pseudorandom number generator for tie breaking
+	 * @return row-major index of the chosen position
+	 */
+	public int getGreedyPlay(int cardId, java.util.Random random) {
+		int maxScore = Integer.MIN_VALUE;
+		int numBest = 0;
+		for (int i = numPlays; i < NUM_POS; i++) {
+			int pos = plays[i];
+			makePlay(cardId, pos);
+			int s = score;
+			undoPlay();
+			if (s >= maxScore) {
+				if (s > maxScore)
+					numBest = 0;
+				bestPlays[numBest++] = pos;
+				maxScore = s;
+			}
+		}
+		return numBest == 1 ? bestPlays[0] : bestPlays[random.nextInt(numBest)];
+	}
+
+	/**
+	 * Perform simulated random card draws and greedy placements to the given depth limit (or game end) and
+	 * return the resulting grid score.  The state is restored before returning.
+	 * @param depthLimit how many simulated greedy plays to perform
+	 * @param random pseudorandom number generator for card draws and tie breaking
+	 * @return resulting grid score after greedy simulation
+	 */
+	public int simGreedyPlay(int depthLimit, java.util.Random random) {
+		int depth = Math.min(depthLimit, NUM_POS - numPlays);
+		for (int d = 0; d < depth; d++) {
+			int cardId = deck[numPlays + random.nextInt(NUM_CARDS - numPlays)];
+			makePlay(cardId, getGreedyPlay(cardId, random));
+		}
+		int result = score;
+		for (int d = 0; d < depth; d++)
+			undoPlay();
+		return result;
+	}
+
+	/**
+	 * Perform simulated random card draws and uniformly random placements to the given depth limit (or game
+	 * end).  Since the placements do not depend on the point system, the resulting hand counts may be scored
+	 * under any number of point systems at once (see PokerSquaresPointSystemBatch).  The state is restored
+	 * before returning.
+	 * @param depthLimit how many simulated random plays to perform
+	 * @param random pseudorandom number generator for card draws and placements
+	 * @param handCounts array of length PokerHand.NUM_HANDS to fill with the resulting number of lines of each
+	 * PokerHand id (or null)
+	 * @return resulting grid score
+	 */
+	public int simRandomPlay(int depthLimit, java.util.Random random, int[] handCounts) {
+		int depth = Math.min(depthLimit, NUM_POS - numPlays);
+		for (int d = 0; d < depth; d++) {
+			int cardId = deck[numPlays + random.nextInt(NUM_CARDS - numPlays)];
+			makePlay(cardId, plays[numPlays + random.nextInt(NUM_POS - numPlays)]);
+		}
+		int result = score;
+		if (handCounts != null)
+			getHandCounts(handCounts);
+		for (int d = 0; d < depth; d++)
+			undoPlay();
+		return result;
+	}
+
+	/**
+	 * Count the current hand classes of the 10 lines.
+	 * @param handCounts array of length PokerHand.NUM_HANDS to fill with the number of lines of each PokerHand id
+	 */
+	public void getHandCounts(int[] handCounts) {
+		java.util.Arrays.fill(handCounts, 0);
+		for (int line = 0; line < NUM_LINES; line++)
+			handCounts[lineHand[line]]++;
+	}
+
+	/**
+	 * Get the current grid score.
+	 * @return current grid score
+	 */
+	public int getScore() {
+		return score;
+	}
+
+	/**
+	 * Get the Zobrist hash of the current grid (and so of the remaining deck).
+	 * @return 64-bit hash of the placements made so far
+	 */
+	public long getHash() {
+		return hash;
+	}
+
+	/**
+	 * Get the Zobrist key of a placement: the hash of a grid after placing a card at an empty position is its
+	 * hash XOR this key.
+	 * @param pos row-major index
+	 * @param cardId card id
+	 * @return hash key of the placement
+	 */
+	public static long getZobrist(int pos, int cardId) {
+		return ZOBRIST[pos * NUM_CARDS + cardId];
+	}
+
+	/**
+	 * Get the number of cards placed so far.
+	 * @return number of cards placed so far
+	 */
+	public int getNumPlays() {
+		return numPlays;
+	}
+
+	/**
+	 * Get the card id at the given position.
+	 * @param pos row-major index
+	 * @return card id at the given position or EMPTY
+	 */
+	public int getCard(int pos) {
+		return grid[pos];
+	}
+
+	/**
+	 * Get the i-th empty position (0 &lt;= i &lt; NUM_POS - getNumPlays()).
+	 * @param i empty position index
+	 * @return row-major index of the i-th empty position
+	 */
+	public int getEmpty(int i) {
+		return plays[numPlays + i];
+	}
+
+	/**
+	 * Get the i-th undealt card (0 &lt;= i &lt; NUM_CARDS - getNumPlays()).
+	 * @param i undealt card index
+	 * @return id of the i-th undealt card
+	 */
+	public int getUndealt(int i) {
+		return deck[numPlays + i];
+	}
+
+	/**
+	 * Get the current PokerHand id of the given line (rows 0-4 followed by columns 0-4).
+	 * @param line line index
+	 * @return PokerHand id of the line
+	 */
+	public int getLineHand(int line) {
+		return lineHand[line];
+	}
+}
@@ -13,9 +13,9 @@ import java.util.*;
  * MC depth 12 52.5  === BEST ===
  * MC depth 14 48.5
  *
- * Use this player on depthLimit 12
+ * Use this player on depthLimit 12 (or Reath_DepthController.ADAPTIVE to choose the depth for each turn)
  */
-public class Reath_GreedyProbabilityMCPlayer implements PokerSquaresPlayer {
+public class Reath_GreedyProbabilityMCPlayer implements PokerSquaresAnytimePlayer {
 	private final int SIZE = 5; // number of rows/columns in square grid
 	private final int NUM_POS = SIZE * SIZE; // number of positions in square grid
 	private final int NUM_CARDS = Card.NUM_CARDS; // number of cards in deck
@@ -44,8 +44,19 @@ public class Reath_GreedyProbabilityMCPlayer implements PokerSquaresPlayer {
 
 	private Reath_ProbabilityUtilities probUtil;
 	private Reath_ModifiedGreedyMCPlayer greedyMCPlayer;
+	private Reath_GameState gameState; // mirror of the game grid for the endgame solver
+	private Reath_EndgameSolver endgameSolver; // exact solver for the last plays
+	private Reath_TimeManager timeManager = null; // turn time budgets of the MC searches (null: even split of the remaining time)
+	private Reath_DepthController depthController = new Reath_DepthController(); // MC rollout depths for an ADAPTIVE depth limit
 
 	private boolean mcEnabled = true;
+	private double utilityThreshold = 1; // smallest utility of a critical play
+	private int maxCriticalPlays = 18; // critical play count from which MC is skipped for the max utility play
+	private boolean commonRandomNumbers = false; // whether MC compares critical plays on common deal sequences
+	private boolean controlVariate = false; // whether MC averages are corrected with the line potential control variate
+	private static final long BUDGET_ENDGAME_PLACEMENTS = 10000000L; // endgame solver placements per turn with a rollout budget
+	private int rolloutBudget = 0; // MC rollouts per turn (0: search until the turn's time is used)
+	private long seed = 0; // pseudorandom number generator seed of each game with a rollout budget
 
 	private int numPlay = 0;
 	private HashSet<Integer> allPlays;
@@ -56,11 +67,14 @@ public class Reath_GreedyProbabilityMCPlayer implements PokerSquaresPlayer {
 	@Override
 	public void setPointSystem(PokerSquaresPointSystem system, long millis) {
 		this.system = system;
+		this.gameState = new Reath_GameState(system);
+		this.endgameSolver = new Reath_EndgameSolver(system);
 	}
 
 	/**
 	 * Create a Greedy Monte Carlo player that simulates greedy play to a given depth limit.
-	 * @param depthLimit depth limit for random greedy simulated play
+	 * @param depthLimit depth limit for random greedy simulated play (or Reath_DepthController.ADAPTIVE to choose
+	 * it for each turn)
 	 */
 	public Reath_GreedyProbabilityMCPlayer(int depthLimit) {
 		super();
@@ -68,6 +82,54 @@ public class Reath_GreedyProbabilityMCPlayer implements PokerSquaresPlayer {
 		this.rewards = REWARDS;
 	}
 
+	/**
+	 * Create a Greedy Monte Carlo player that simulates greedy play to a given depth limit, optionally comparing
+	 * critical plays on common deal sequences (common random numbers).
+	 * @param depthLimit depth limit for random greedy simulated play
+	 * @param commonRandomNumbers whether to simulate all critical plays of a turn on the same sampled deal sequences
+	 */
+	public Reath_GreedyProbabilityMCPlayer(int depthLimit, boolean commonRandomNumbers) {
+		this(depthLimit);
+		this.commonRandomNumbers = commonRandomNumbers;
+	}
+
+	/**
+	 * Create a Greedy Monte Carlo player that simulates greedy play to a given depth limit, optionally comparing
+	 * critical plays on common deal sequences and correcting their averages with a control variate.
+	 * @param depthLimit depth limit for random greedy simulated play
+	 * @param commonRandomNumbers whether to simulate all critical plays of a turn on the same sampled deal sequences
+	 * @param controlVariate whether to correct MC averages with the line potential of the simulated draws
+	 */
+	public Reath_GreedyProbabilityMCPlayer(int depthLimit, boolean commonRandomNumbers, boolean controlVariate) {
+		this(depthLimit, commonRandomNumbers);
+		this.controlVariate = controlVariate;
+	}
+
+	/**
+	 * Create a Greedy Monte Carlo player that simulates greedy play to a given depth limit with a fixed number of
+	 * rollouts per turn (see setRolloutBudget).
+	 * @param depthLimit depth limit for random greedy simulated play
+	 * @param rolloutsPerTurn MC rollouts per turn
+	 * @param seed pseudorandom number generator seed of each game
+	 */
+	public Reath_GreedyProbabilityMCPlayer(int depthLimit, int rolloutsPerTurn, long seed) {
+		this(depthLimit);
+		setRolloutBudget(rolloutsPerTurn, seed);
+	}
+
+	/**
+	 * Create a Greedy Monte Carlo player that simulates greedy play to a given depth limit with the given critical
+	 * play selection.
+	 * @param depthLimit depth limit for random greedy simulated play
+	 * @param utilityThreshold smallest utility of a critical play (default 1)
+	 * @param maxCriticalPlays critical play count from which MC is skipped for the max utility play (default 18)
+	 */
+	public Reath_GreedyProbabilityMCPlayer(int depthLimit, double utilityThreshold, int maxCriticalPlays) {
+		this(depthLimit);
+		this.utilityThreshold = utilityThreshold;
+		this.maxCriticalPlays = maxCriticalPlays;
+	}
+
 	public Reath_GreedyProbabilityMCPlayer(double[] rewards) {
 		super();
 		if (rewards != null) 
@@ -77,6 +139,29 @@ public class Reath_GreedyProbabilityMCPlayer implements PokerSquaresPlayer {
 		this.mcEnabled = false;
 	}
 	
+	/**
+	 * Budget the time of each MC search with the given time manager (with the utility lead of the best critical
+	 * play as the value spread), or null (the default) to split the remaining time evenly among the remaining turns.
+	 * @param timeManager time manager (null for an even split)
+	 */
+	public void setTimeManager(Reath_TimeManager timeManager) {
+		this.timeManager = timeManager;
+	}
+
+	/**
+	 * Perform a fixed number of MC rollouts per turn, and bound endgame solves by placements, instead of searching
+	 * by time, reseeding the pseudorandom number generator at the start of each game.  Decisions then depend only
+	 * on the cards dealt, as long as the game's time (or an anytime deadline) does not run out first.  The MC
+	 * rollouts are spent in whole rounds of one rollout per critical play: the budget is rounded down to a
+	 * multiple of the turn's critical plays, but covers at least one round.
+	 * @param rolloutsPerTurn MC rollouts per turn (0 to return to timed search)
+	 * @param seed pseudorandom number generator seed of each game
+	 */
+	public void setRolloutBudget(int rolloutsPerTurn, long seed) {
+		this.rolloutBudget = Math.max(0, rolloutsPerTurn);
+		this.seed = seed;
+	}
+
 	/* (non-Javadoc)
 	 * @see PokerSquaresPlayer#init()
 	 */
@@ -85,6 +170,15 @@ public class Reath_GreedyProbabilityMCPlayer implements PokerSquaresPlayer {
 		probUtil = new Reath_ProbabilityUtilities(rewards);
 		greedyMCPlayer = new Reath_ModifiedGreedyMCPlayer(this.depthLimit, this.system);
 		greedyMCPlayer.init();
+		greedyMCPlayer.setTimeManager(timeManager);
+		greedyMCPlayer.setDepthController(depthController);
+		greedyMCPlayer.setCommonRandomNumbers(commonRandomNumbers);
+		greedyMCPlayer.setControlVariate(controlVariate);
+		if (rolloutBudget > 0)
+			greedyMCPlayer.setRolloutBudget(rolloutBudget, seed);
+		gameState.reset();
+		endgameSolver.reset();
+		endgameSolver.clearCancel(); // forget a cancel() of the last game
 		numPlay = 0;
 
 		allPlays = new HashSet<>();
@@ -98,6 +192,24 @@ public class Reath_GreedyProbabilityMCPlayer implements PokerSquaresPlayer {
 	 */
 	@Override
 	public int[] getPlay(Card card, long millisRemaining) {
+		return getPlay(card, millisRemaining, System.nanoTime() + millisRemaining * 1000000L);
+	}
+
+	/* (non-Javadoc)
+	 * @see PokerSquaresAnytimePlayer#getPlay(Card, long, long)
+	 */
+	@Override
+	public int[] getPlay(Card card, long millisRemaining, long deadlineNanos) {
+		try {
+			return choosePlay(card, millisRemaining, deadlineNanos);
+		} finally { // a cancel() of this turn must not reach a later one through the component that did not act on it
+			endgameSolver.clearCancel();
+			greedyMCPlayer.clearCancel();
+		}
+	}
+
+	// Choose the play of the drawn card: by endgame solve, MC over the critical plays or max utility
+	private int[] choosePlay(Card card, long millisRemaining, long deadlineNanos) {
 		int[] play;
 		if (numPlay == 0) {
 			numPlay++;
@@ -105,6 +217,7 @@ public class Reath_GreedyProbabilityMCPlayer implements PokerSquaresPlayer {
 			play = new int[]{0, 0};
 			probUtil.updateHands(card, play);
 			greedyMCPlayer.makePlay(card, play[0], play[1]);
+			gameState.makePlay(card.getCardId(), 0);
 			return play;
 		}
 		if (numPlay == 24) {
@@ -113,6 +226,22 @@ public class Reath_GreedyProbabilityMCPlayer implements PokerSquaresPlayer {
 			}
 		}
 
+		// Solve the last plays exactly once the endgame fits in the time left (later turns reuse the solver memo)
+		if (mcEnabled && 25 - numPlay <= Reath_EndgameSolver.MAX_EMPTY) {
+			long millisToDeadline = Math.max(0, (deadlineNanos - System.nanoTime()) / 1000000L);
+			int pos = rolloutBudget > 0 ? endgameSolver.solveWithinPlacements(gameState, card.getCardId(), BUDGET_ENDGAME_PLACEMENTS)
+					: endgameSolver.solve(gameState, card.getCardId(), Math.min(Reath_EndgameSolver.getSolveMillis(millisRemaining, 25 - numPlay), millisToDeadline));
+			if (pos >= 0) {
+				play = new int[]{pos/5, pos%5};
+				greedyMCPlayer.makePlay(card, play[0], play[1]);
+				probUtil.updateHands(card, play);
+				gameState.makePlay(card.getCardId(), pos);
+				allPlays.remove(pos);
+				numPlay++;
+				return play;
+			}
+		}
+
 		long now = System.currentTimeMillis();
 
 		// Get an updated utilityGrid with the new card included
@@ -136,10 +265,10 @@ public class Reath_GreedyProbabilityMCPlayer implements PokerSquaresPlayer {
 				}
 			}
 			greedyMCPlayer.makePlay(card, play[0], play[1]);
-		} else if (mcEnabled && criticalPlays.length < 18 && criticalPlays.length > 1) { // Iterate MC on a small set of high value plays
+		} else if (mcEnabled && criticalPlays.length < maxCriticalPlays && criticalPlays.length > 1) { // Iterate MC on a small set of high value plays
 			//System.out.println("PLAY MC");
 			millisRemaining -= (System.currentTimeMillis() - now);
-			play = greedyMCPlayer.getMCPlay(card, millisRemaining, criticalPlays, utilityGrid);
+			play = greedyMCPlayer.getMCPlay(card, millisRemaining, deadlineNanos, criticalPlays, utilityGrid);
 		} else { // Greedy select the max probability utility
 			//System.out.println("PLAY MAX");
 			greedyMCPlayer.makePlay(card, play[0], play[1]);
@@ -147,12 +276,26 @@ public class Reath_GreedyProbabilityMCPlayer implements PokerSquaresPlayer {
 
 		// Update probability helper
 		probUtil.updateHands(card, play);
+		gameState.makePlay(card.getCardId(), play[0]*5+play[1]);
 
 		allPlays.remove(play[0]*5+play[1]);
 		numPlay++;
 		return play; // return it
 	}
 
+	/* (non-Javadoc)
+	 * @see PokerSquaresAnytimePlayer#cancel()
+	 */
+	@Override
+	public void cancel() {
+		Reath_EndgameSolver solver = endgameSolver;
+		if (solver != null)
+			solver.cancel();
+		Reath_ModifiedGreedyMCPlayer mcPlayer = greedyMCPlayer;
+		if (mcPlayer != null)
+			mcPlayer.cancel();
+	}
+
 	// Get the critical plays with the highest utilities
 	private int[] getCriticalPlays(double[][] utilityGrid) {
 		// Use avg to select the top candidates
@@ -168,7 +311,7 @@ public class Reath_GreedyProbabilityMCPlayer implements PokerSquaresPlayer {
 		// Count the number of plays better than the average
 		int numCritical = 0;
 		for (int i=0; i<25; i++) {
-			if (utilityGrid[i/5][i%5] >= 1) {
+			if (utilityGrid[i/5][i%5] >= utilityThreshold) {
 				numCritical++;
 			}
 		}
@@ -194,7 +337,7 @@ public class Reath_GreedyProbabilityMCPlayer implements PokerSquaresPlayer {
 		int[] criticalPlays = new int[numCritical];
 		int criticalCount = 0;
 		for (int i=0; i<25; i++) {
-			if (utilityGrid[i/5][i%5] >= 1) {
+			if (utilityGrid[i/5][i%5] >= utilityThreshold) {
 				criticalPlays[criticalCount++] = i;
 			}
 		}
@@ -227,7 +370,8 @@ public class Reath_GreedyProbabilityMCPlayer implements PokerSquaresPlayer {
 	@Override
 	public String getName() {
 		if (this.mcEnabled)
-			return "Reath_GreedyProbabilityMCPlayer_Depth" + this.depthLimit;
+			return "Reath_GreedyProbabilityMCPlayer_Depth" + (depthLimit == Reath_DepthController.ADAPTIVE ? "Adaptive" : depthLimit) + (commonRandomNumbers ? "_CRN" : "") + (controlVariate ? "_CV" : "") + (rolloutBudget > 0 ? "_Rollouts" + rolloutBudget : "") + (timeManager != null ? "_TM" : "")
+					+ (utilityThreshold != 1 || maxCriticalPlays != 18 ? "_U" + utilityThreshold + "_C" + maxCriticalPlays : "");
 		else 
 			return "Reath_GreedyProbabilityPlayer";
 	}
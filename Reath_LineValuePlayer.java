@@ -0,0 +1,113 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Reath_LineValuePlayer - places each card at the position with the highest learned afterstate value
+ * (see Reath_LineValueTable).
+ *
+ * For each point system the player loads a saved table from its table directory.  If none exists, or the saved
+ * table was trained for less time than setPointSystem allots to training now, it trains the table further by
+ * parallel TD(lambda) self-play during that time and (optionally) saves it for later runs, so one short run
+ * does not pin an undertrained table.
+ *
+ * Author: Caleb Reath
+ */
+public class Reath_LineValuePlayer implements PokerSquaresPlayer {
+	private final int SIZE = 5; // number of rows/columns in square grid
+	private static final double ALPHA = 0.1; // TD learning rate
+	private static final double LAMBDA = 0.7; // TD trace decay
+	private static final double TRAINING_FRACTION = 0.8; // fraction of the point system time used for training
+
+	private Random random = new Random(); // pseudorandom number generator for tie breaking
+	private PokerSquaresPointSystem system; // point system
+	private Reath_GameState state; // actual game state
+	private Reath_LineValueTable table; // learned line values for the current point system
+	private final File directory; // directory of saved tables
+	private final boolean saveTables; // whether trained tables are saved
+
+	/**
+	 * Create a line value player using tables in the working directory, saving trained tables.
+	 */
+	public Reath_LineValuePlayer() {
+		this(new File("."), true);
+	}
+
+	/**
+	 * Create a line value player.
+	 * @param directory directory of saved tables
+	 * @param saveTables whether trained tables are saved
+	 */
+	public Reath_LineValuePlayer(File directory, boolean saveTables) {
+		this.directory = directory;
+		this.saveTables = saveTables;
+	}
+
+	/* (non-Javadoc)
+	 * @see PokerSquaresPlayer#setPointSystem(PokerSquaresPointSystem, long)
+	 */
+	@Override
+	public void setPointSystem(PokerSquaresPointSystem system, long millis) {
+		this.system = system;
+		state = new Reath_GameState(system);
+		File file = Reath_LineValueTable.getFile(directory, system);
+		long trainingMillis = (long) (millis * TRAINING_FRACTION);
+		table = null;
+		if (file.exists()) {
+			try {
+				table = Reath_LineValueTable.load(file, system);
+				if (table.getTrainingMillis() >= trainingMillis)
+					return;
+			} catch (IOException e) {
+				System.err.println(e.getMessage());
+			}
+		}
+		if (table == null)
+			table = new Reath_LineValueTable(system);
+		table.train(trainingMillis, Runtime.getRuntime().availableProcessors(), ALPHA, LAMBDA);
+		if (saveTables) {
+			try {
+				table.save(file);
+			} catch (IOException e) {
+				System.err.println("Could not save line value table: " + e.getMessage());
+			}
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see PokerSquaresPlayer#init()
+	 */
+	@Override
+	public void init() {
+		state.reset();
+	}
+
+	/* (non-Javadoc)
+	 * @see PokerSquaresPlayer#getPlay(Card, long)
+	 */
+	@Override
+	public int[] getPlay(Card card, long millisRemaining) {
+		int cardId = card.getCardId();
+		int bestPlay = table.getBestPlay(state, cardId, random);
+		state.makePlay(cardId, bestPlay);
+		return new int[] {bestPlay / SIZE, bestPlay % SIZE};
+	}
+
+	/* (non-Javadoc)
+	 * @see PokerSquaresPlayer#getName()
+	 */
+	@Override
+	public String getName() {
+		return "Reath_LineValuePlayer";
+	}
+
+	/**
+	 * Train (or load) the table for the British point system and play a batch of games.
+	 * @param args (not used)
+	 */
+	public static void main(String[] args) {
+		PokerSquaresPointSystem system = PokerSquaresPointSystem.getBritishPointSystem();
+		System.out.println(system);
+		new PokerSquares(new Reath_LineValuePlayer(), system).playSequence(100, 0, false);
+	}
+}
@@ -0,0 +1,291 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Reath_LineValueTable - a learned value function for Poker Squares grids built from line abstractions.
+ *
+ * The value of a grid is the sum of the values of its 10 lines.  A complete line is worth exactly its points.
+ * An unfinished line is abstracted to (rank-count pattern, flush potential, straight potential, game phase):
+ *   - the rank-count pattern is the number of ranks held once, twice, three and four times,
+ *   - flush potential is whether all cards in the line share a suit,
+ *   - straight potential is whether the ranks are distinct and fit in one straight window,
+ *   - the game phase is the number of cards placed in the whole grid, bucketed into PHASES buckets.
+ * Each abstraction indexes one float of a small table, so a grid is evaluated with 10 lookups.
+ *
+ * The table is trained by TD(lambda) self-play on afterstates, with the final grid score as the only reward.
+ * Worker threads play games greedily with respect to the shared table and apply their updates to it
+ * directly (without locking) at the end of each game.  Tables are saved per point system in a compact
+ * binary format (see save()) that records how many games and milliseconds of training they received, so a
+ * table trained briefly can be recognized and trained further.
+ *
+ * Author: Caleb Reath
+ */
+public class Reath_LineValueTable {
+	public static final int PHASES = 5; // number of game phase buckets
+	private static final int NUM_PATTERNS = 5 * 5 * 5 * 5; // (singles, pairs, trips, quads) counts in base 5
+	public static final int NUM_ENTRIES = NUM_PATTERNS * 2 * 2 * PHASES; // number of table entries
+	private static final int MAGIC = 0x524C5654; // file magic number ("RLVT")
+	private static final int VERSION = 2; // file format version (1: no training record)
+	private static final double EXPLORATION = 0.02; // probability of a random placement during training
+	private static final int NUM_POS = Reath_GameState.NUM_POS;
+	private static final int NUM_LINES = Reath_GameState.NUM_LINES;
+
+	private final int[] scoreTable; // points for each PokerHand id
+	private final float[] values = new float[NUM_ENTRIES]; // learned values of unfinished line abstractions
+	private long trainingGames = 0; // self-play games of all training so far
+	private long trainingMillis = 0; // milliseconds of all training so far
+
+	/**
+	 * Create an untrained (all zero) table for the given point system.
+	 * @param system point system
+	 */
+	public Reath_LineValueTable(PokerSquaresPointSystem system) {
+		scoreTable = system.getScoreTable();
+	}
+
+	/**
+	 * Get the game phase bucket for the given number of cards placed in the grid.
+	 * @param numPlays number of cards placed
+	 * @return phase bucket in [0, PHASES - 1]
+	 */
+	static int phase(int numPlays) {
+		return Math.min(PHASES - 1, numPlays * PHASES / NUM_POS);
+	}
+
+	/**
+	 * Get the table index of an unfinished line of the given state.
+	 * @param state game state
+	 * @param line line index (rows 0-4 followed by columns 0-4)
+	 * @param phase game phase bucket
+	 * @return table index
+	 */
+	static int index(Reath_GameState state, int line, int phase) {
+		int rankMask = state.lineRankMask[line];
+		int pattern = 0;
+		boolean distinct = true;
+		for (int m = rankMask; m != 0; m &= m - 1) {
+			int count = state.lineRankCounts[line * Card.NUM_RANKS + Integer.numberOfTrailingZeros(m)];
+			pattern += PATTERN_WEIGHTS[count];
+			distinct &= count == 1;
+		}
+		int flush = Integer.bitCount(state.lineSuitMask[line]) <= 1 ? 1 : 0;
+		int straight = 0;
+		if (distinct) {
+			int span = rankMask == 0 ? 0 : 31 - Integer.numberOfLeadingZeros(rankMask) - Integer.numberOfTrailingZeros(rankMask);
+			if (span < Reath_GameState.SIZE || (rankMask & ~Reath_GameState.ROYAL_RANKS) == 0)
+				straight = 1;
+		}
+		return ((pattern * 2 + flush) * 2 + straight) * PHASES + phase;
+	}
+
+	private static final int[] PATTERN_WEIGHTS = {0, 1, 5, 25, 125}; // pattern digit of each rank count
+
+	/**
+	 * Evaluate the given state: exact points of complete lines plus learned values of unfinished lines.
+	 * @param state game state
+	 * @return estimated final grid score
+	 */
+	public double evaluate(Reath_GameState state) {
+		int phase = phase(state.numPlays);
+		double value = 0;
+		for (int line = 0; line < NUM_LINES; line++)
+			value += state.lineSize[line] == Reath_GameState.SIZE ? scoreTable[state.lineHand[line]] : values[index(state, line, phase)];
+		return value;
+	}
+
+	/**
+	 * Return the empty position whose afterstate has the highest value for the given card (breaking ties randomly).
+	 * @param state game state (restored before returning)
+	 * @param cardId id of the drawn card
+	 * @param random pseudorandom number generator for tie breaking
+	 * @return row-major index of the chosen position
+	 */
+	public int getBestPlay(Reath_GameState state, int cardId, Random random) {
+		double maxValue = Double.NEGATIVE_INFINITY;
+		int bestPlay = -1;
+		int numBest = 0;
+		for (int i = 0; i < NUM_POS - state.numPlays; i++) {
+			int pos = state.getEmpty(i);
+			state.makePlay(cardId, pos);
+			double value = evaluate(state);
+			state.undoPlay();
+			if (value > maxValue) {
+				maxValue = value;
+				bestPlay = pos;
+				numBest = 1;
+			}
+			else if (value == maxValue && random.nextInt(++numBest) == 0)
+				bestPlay = pos;
+		}
+		return bestPlay;
+	}
+
+	/**
+	 * Train the table by TD(lambda) self-play for the given time, adding to its training record.
+	 * @param millis training time in milliseconds
+	 * @param numThreads number of self-play threads sharing the table
+	 * @param alpha learning rate (divided among the unfinished lines of each afterstate)
+	 * @param lambda trace decay
+	 * @return number of games played
+	 */
+	public long train(long millis, int numThreads, final double alpha, final double lambda) {
+		final long endTime = System.currentTimeMillis() + millis;
+		final PokerSquaresPointSystem system = new PokerSquaresPointSystem(scoreTable.clone());
+		final long[] games = new long[numThreads];
+		Thread[] threads = new Thread[numThreads];
+		for (int t = 0; t < numThreads; t++) {
+			final int id = t;
+			threads[t] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					Reath_GameState state = new Reath_GameState(system);
+					Random random = new Random();
+					int[] features = new int[NUM_POS * NUM_LINES]; // unfinished line indices of each afterstate
+					int[] numFeatures = new int[NUM_POS];
+					double[] afterValues = new double[NUM_POS + 1];
+					while (System.currentTimeMillis() < endTime) {
+						playTrainingGame(state, random, features, numFeatures, afterValues, alpha, lambda);
+						games[id]++;
+					}
+				}
+			});
+			threads[t].start();
+		}
+		long total = 0;
+		for (int t = 0; t < numThreads; t++) {
+			try {
+				threads[t].join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			total += games[t];
+		}
+		trainingGames += total;
+		trainingMillis += millis;
+		return total;
+	}
+
+	/**
+	 * @return self-play games of all training of the table (0 for tables saved without a training record)
+	 */
+	public long getTrainingGames() {
+		return trainingGames;
+	}
+
+	/**
+	 * @return milliseconds of all training of the table (0 for tables saved without a training record)
+	 */
+	public long getTrainingMillis() {
+		return trainingMillis;
+	}
+
+	/**
+	 * Play one self-play game and apply offline lambda-return updates to the afterstate values.
+	 */
+	private void playTrainingGame(Reath_GameState state, Random random, int[] features, int[] numFeatures,
+			double[] afterValues, double alpha, double lambda) {
+		state.reset();
+		for (int t = 0; t < NUM_POS; t++) {
+			int cardId = state.getUndealt(random.nextInt(Card.NUM_CARDS - t));
+			int pos = random.nextDouble() < EXPLORATION ? state.getEmpty(random.nextInt(NUM_POS - t))
+					: getBestPlay(state, cardId, random);
+			state.makePlay(cardId, pos);
+			int phase = phase(state.numPlays);
+			int n = 0;
+			for (int line = 0; line < NUM_LINES; line++)
+				if (state.lineSize[line] < Reath_GameState.SIZE)
+					features[t * NUM_LINES + n++] = index(state, line, phase);
+			numFeatures[t] = n;
+			afterValues[t] = evaluate(state);
+		}
+		// the last afterstate is the final grid, whose value is exact; compute lambda-returns backward
+		double lambdaReturn = state.getScore();
+		for (int t = NUM_POS - 2; t >= 0; t--) {
+			lambdaReturn = (1 - lambda) * afterValues[t + 1] + lambda * lambdaReturn;
+			int n = numFeatures[t];
+			if (n == 0)
+				continue;
+			float step = (float) (alpha / n * (lambdaReturn - afterValues[t]));
+			for (int i = 0; i < n; i++)
+				values[features[t * NUM_LINES + i]] += step;
+		}
+	}
+
+	/**
+	 * Get the file name used for the table of the given point system.
+	 * @param directory directory of table files
+	 * @param system point system
+	 * @return table file
+	 */
+	public static File getFile(File directory, PokerSquaresPointSystem system) {
+		StringBuilder sb = new StringBuilder("Reath_LineValues");
+		for (int points : system.getScoreTable())
+			sb.append(String.format("_%d", points));
+		return new File(directory, sb.append(".bin").toString());
+	}
+
+	/**
+	 * Save the table.  Format: int magic, short version, byte per hand score, byte phases, int entries, long
+	 * training games, long training milliseconds, then one float per entry (all big-endian).
+	 * @param file destination file
+	 * @throws IOException if the file cannot be written
+	 */
+	public void save(File file) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeShort(VERSION);
+			for (int points : scoreTable)
+				out.writeByte(points);
+			out.writeByte(PHASES);
+			out.writeInt(NUM_ENTRIES);
+			out.writeLong(trainingGames);
+			out.writeLong(trainingMillis);
+			for (float value : values)
+				out.writeFloat(value);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Load a table saved by save() for the given point system.  Tables of format version 1 have no training
+	 * record and load with none.
+	 * @param file source file
+	 * @param system point system the table must have been trained for
+	 * @return loaded table
+	 * @throws IOException if the file cannot be read or does not match the point system or table layout
+	 */
+	public static Reath_LineValueTable load(File file, PokerSquaresPointSystem system) throws IOException {
+		Reath_LineValueTable table = new Reath_LineValueTable(system);
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			if (in.readInt() != MAGIC)
+				throw new IOException("Not a line value table: " + file);
+			int version = in.readShort();
+			if (version != 1 && version != VERSION)
+				throw new IOException("Not a line value table: " + file);
+			for (int points : table.scoreTable)
+				if (in.readByte() != points)
+					throw new IOException("Line value table was trained for another point system: " + file);
+			if (in.readByte() != PHASES || in.readInt() != NUM_ENTRIES)
+				throw new IOException("Line value table layout mismatch: " + file);
+			if (version >= 2) {
+				table.trainingGames = in.readLong();
+				table.trainingMillis = in.readLong();
+			}
+			for (int i = 0; i < NUM_ENTRIES; i++)
+				table.values[i] = in.readFloat();
+		} finally {
+			in.close();
+		}
+		return table;
+	}
+}
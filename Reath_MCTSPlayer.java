@@ -0,0 +1,518 @@
+import java.util.Random;
+
+/**
+ * Reath_MCTSPlayer - a UCT Monte Carlo Tree Search implementation of the player interface for PokerSquares.
+ *
+ * The tree alternates between chance nodes (a grid waiting for the next card) and decision nodes (a drawn
+ * card waiting to be placed).  Decision nodes select placements with UCT; chance nodes use progressive
+ * widening so that only about PW_CONSTANT * visits^PW_EXPONENT distinct cards are expanded below them.
+ * Leaves are evaluated with greedy rollouts (as in GreedyMCPlayer) to the depth limit or game end.
+ * Search time is split evenly among the remaining turns, or budgeted per turn by a Reath_TimeManager (see
+ * setTimeManager), or search may be limited to a fixed number of simulations (each expanding at most one node)
+ * per turn with seeded, reproducible decisions.
+ *
+ * Nodes live in a pool of primitive arrays indexed by node number.  After each play, the chance node of the
+ * chosen placement becomes the new root, so the subtree for the next dealt card is reused by the next call
+ * to getPlay.  When the pool fills past COMPACT_FRACTION, the reused subtree is copied into a spare pool.
+ *
+ * With transpositions enabled, the same grid reached through different placement orders shares one value
+ * estimate: each simulation also adds its value to a Reath_TranspositionTable entry (mean value, with the
+ * number of samples as depth) under the Zobrist hash of every chance node's grid on its path, and UCT uses
+ * that mean for a placement whenever it rests on more samples than the placement's own node.  Exploration
+ * still follows the node's own visit count.
+ *
+ * Author: Caleb Reath
+ */
+public class Reath_MCTSPlayer implements PokerSquaresPlayer {
+	private final int SIZE = 5; // number of rows/columns in square grid
+	private final int NUM_POS = SIZE * SIZE; // number of positions in square grid
+	private static final int NONE = -1; // null node index
+	private static final int DEFAULT_CAPACITY = 1 << 20; // default maximum number of nodes in the pool
+	private static final double COMPACT_FRACTION = 0.5; // pool fraction in use that triggers compaction before a search
+	private static final double UCT_CONSTANT = 0.7; // UCT exploration constant (scaled by observed value range)
+	private static final double PW_CONSTANT = 1.0; // progressive widening constant for chance nodes
+	private static final double PW_EXPONENT = 0.5; // progressive widening exponent for chance nodes
+	private static final long BUDGET_ENDGAME_PLACEMENTS = 10000000L; // endgame solver placements per turn with a simulation budget
+	private static final int TRANSPOSITION_BITS = 20; // log2 of the number of transposition table entries
+
+	private Random random = new Random(); // pseudorandom number generator for card sampling and rollouts
+	private PokerSquaresPointSystem system; // point system
+	private int depthLimit = NUM_POS; // rollout depth limit (default: play to game end)
+	private Reath_EndgameSolver endgameSolver; // exact solver for the last plays
+	private Reath_GameState state; // actual game state (restored after each simulation)
+	private Reath_TimeManager timeManager = null; // turn time budgets (null: even split of the remaining time)
+	private int simulationBudget = 0; // simulations per turn (0: search until the turn's time is used)
+	private long seed = 0; // pseudorandom number generator seed of each game with a simulation budget
+	private final int capacity; // maximum number of nodes in the pool
+	private boolean useTranspositions = false; // whether transposed grids share value estimates
+	private Reath_TranspositionTable transpositions = null; // mean simulation value by grid hash (null if not used)
+
+	// Node pool. A node's move is the placement position for chance nodes and the drawn card id for decision nodes.
+	private int[] move, firstChild, nextSibling, numChildren, visits, triedMask;
+	private double[] valueSum;
+	private boolean[] chance;
+	// Spare pool used as the destination of compaction
+	private int[] move2, firstChild2, nextSibling2, numChildren2, visits2, triedMask2;
+	private double[] valueSum2;
+	private boolean[] chance2;
+	private int numNodes = 0; // number of nodes in use
+	private int root = NONE; // chance node for the current grid (awaiting the next card)
+
+	private int[] path = new int[2 * NUM_POS + 2]; // nodes visited by the current simulation
+	private long[] pathHash = new long[2 * NUM_POS + 2]; // grid hash of each chance node visited by the current simulation
+	private double minValue, maxValue; // range of simulation values observed during the current search
+
+	/**
+	 * Create an MCTS player with rollouts to game end.
+	 */
+	public Reath_MCTSPlayer() {
+		this(25, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Create an MCTS player with a given rollout depth limit.
+	 * @param depthLimit depth limit for greedy rollouts from tree leaves
+	 */
+	public Reath_MCTSPlayer(int depthLimit) {
+		this(depthLimit, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Create an MCTS player with a given rollout depth limit and node pool capacity.
+	 * @param depthLimit depth limit for greedy rollouts from tree leaves
+	 * @param capacity maximum number of nodes in the pool
+	 */
+	public Reath_MCTSPlayer(int depthLimit, int capacity) {
+		this.depthLimit = depthLimit;
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Create an MCTS player with a given rollout depth limit and node pool capacity, optionally sharing value
+	 * estimates between transposed grids (see setTranspositions).
+	 * @param depthLimit depth limit for greedy rollouts from tree leaves
+	 * @param capacity maximum number of nodes in the pool
+	 * @param transpositions whether transposed grids share value estimates
+	 */
+	public Reath_MCTSPlayer(int depthLimit, int capacity, boolean transpositions) {
+		this(depthLimit, capacity);
+		setTranspositions(transpositions);
+	}
+
+	/**
+	 * Create an MCTS player with a given rollout depth limit and a fixed number of simulations per turn
+	 * (see setSimulationBudget).
+	 * @param depthLimit depth limit for greedy rollouts from tree leaves
+	 * @param simulationsPerTurn simulations per turn
+	 * @param seed pseudorandom number generator seed of each game
+	 */
+	public Reath_MCTSPlayer(int depthLimit, int simulationsPerTurn, long seed) {
+		this(depthLimit, DEFAULT_CAPACITY);
+		setSimulationBudget(simulationsPerTurn, seed);
+	}
+
+	/**
+	 * Create an MCTS player with a given rollout depth limit and a fixed number of simulations per turn (see
+	 * setSimulationBudget), optionally sharing value estimates between transposed grids (see setTranspositions).
+	 * @param depthLimit depth limit for greedy rollouts from tree leaves
+	 * @param simulationsPerTurn simulations per turn
+	 * @param seed pseudorandom number generator seed of each game
+	 * @param transpositions whether transposed grids share value estimates
+	 */
+	public Reath_MCTSPlayer(int depthLimit, int simulationsPerTurn, long seed, boolean transpositions) {
+		this(depthLimit, simulationsPerTurn, seed);
+		setTranspositions(transpositions);
+	}
+
+	/**
+	 * Share value estimates between grids reached through different placement orders, using a transposition
+	 * table keyed by the grid's Zobrist hash.  Takes effect with the next setPointSystem call.
+	 * @param transpositions whether transposed grids share value estimates
+	 */
+	public void setTranspositions(boolean transpositions) {
+		this.useTranspositions = transpositions;
+	}
+
+	/**
+	 * Budget each turn's search time with the given time manager, or null (the default) to split the remaining
+	 * time evenly among the remaining turns.
+	 * @param timeManager time manager (null for an even split)
+	 */
+	public void setTimeManager(Reath_TimeManager timeManager) {
+		this.timeManager = timeManager;
+	}
+
+	/**
+	 * Perform a fixed number of simulations per turn, and bound endgame solves by placements, instead of searching
+	 * by time, reseeding the pseudorandom number generator at the start of each game.  Decisions then depend only
+	 * on the cards dealt, as long as the game's time does not run out first.
+	 * @param simulationsPerTurn simulations per turn (0 to return to timed search)
+	 * @param seed pseudorandom number generator seed of each game
+	 */
+	public void setSimulationBudget(int simulationsPerTurn, long seed) {
+		this.simulationBudget = Math.max(0, simulationsPerTurn);
+		this.seed = seed;
+	}
+
+	/* (non-Javadoc)
+	 * @see PokerSquaresPlayer#setPointSystem(PokerSquaresPointSystem, long)
+	 */
+	@Override
+	public void setPointSystem(PokerSquaresPointSystem system, long millis) {
+		this.system = system;
+		state = new Reath_GameState(system);
+		endgameSolver = new Reath_EndgameSolver(system);
+		transpositions = useTranspositions ? new Reath_TranspositionTable(TRANSPOSITION_BITS) : null;
+		if (move == null) {
+			move = new int[capacity]; firstChild = new int[capacity]; nextSibling = new int[capacity];
+			numChildren = new int[capacity]; visits = new int[capacity]; triedMask = new int[capacity];
+			valueSum = new double[capacity]; chance = new boolean[capacity];
+			move2 = new int[capacity]; firstChild2 = new int[capacity]; nextSibling2 = new int[capacity];
+			numChildren2 = new int[capacity]; visits2 = new int[capacity]; triedMask2 = new int[capacity];
+			valueSum2 = new double[capacity]; chance2 = new boolean[capacity];
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see PokerSquaresPlayer#init()
+	 */
+	@Override
+	public void init() {
+		state.reset();
+		endgameSolver.reset();
+		if (transpositions != null)
+			transpositions.clear();
+		if (simulationBudget > 0)
+			random.setSeed(seed);
+		numNodes = 0;
+		root = newNode(true, NONE);
+	}
+
+	/* (non-Javadoc)
+	 * @see PokerSquaresPlayer#getPlay(Card, long)
+	 */
+	@Override
+	public int[] getPlay(Card card, long millisRemaining) {
+		int cardId = card.getCardId();
+		int remainingPlays = NUM_POS - state.getNumPlays();
+		int bestPlay;
+		if (remainingPlays == 1) { // forced last play
+			bestPlay = state.getEmpty(0);
+		}
+		else if (remainingPlays <= Reath_EndgameSolver.MAX_EMPTY
+				&& (bestPlay = simulationBudget > 0 ? endgameSolver.solveWithinPlacements(state, cardId, BUDGET_ENDGAME_PLACEMENTS)
+						: endgameSolver.solve(state, cardId, Reath_EndgameSolver.getSolveMillis(millisRemaining, remainingPlays))) >= 0) { // exact endgame play
+			root = NONE;
+		}
+		else {
+			long millisPerPlay = simulationBudget > 0 ? millisRemaining // a simulation budget is bounded only by the game's time
+					: timeManager == null ? millisRemaining / remainingPlays // dividing time evenly with future getPlay() calls
+					: timeManager.getTurnMillis(state.getNumPlays(), millisRemaining,
+							Reath_TimeManager.countCandidateClasses(state), 0); // weighting this turn against future getPlay() calls
+			long startNanos = System.nanoTime();
+			long endTime = System.currentTimeMillis() + millisPerPlay;
+			if (numNodes > COMPACT_FRACTION * capacity)
+				compact();
+			int decision = getChild(root, cardId);
+			if (decision == NONE)
+				decision = addChild(root, false, cardId);
+			if (decision == NONE) { // pool exhausted: restart the tree from the current grid
+				numNodes = 0;
+				root = newNode(true, NONE);
+				decision = addChild(root, false, cardId);
+			}
+			int simulations = search(decision, endTime);
+			if (timeManager != null)
+				timeManager.recordRollouts(simulations, System.nanoTime() - startNanos);
+			int next = getMostVisitedChild(decision);
+			bestPlay = next == NONE ? state.getGreedyPlay(cardId, random) : move[next];
+			root = next == NONE ? NONE : next;
+		}
+		state.makePlay(cardId, bestPlay);
+		if (root == NONE) { // no subtree to reuse
+			numNodes = 0;
+			root = newNode(true, NONE);
+		}
+		return new int[] {bestPlay / SIZE, bestPlay % SIZE};
+	}
+
+	/**
+	 * Run MCTS simulations from the given decision node (whose card has been drawn on the actual grid)
+	 * until the given time (or the simulation budget is used).
+	 * @param decision decision node for the drawn card
+	 * @param endTime time (System.currentTimeMillis()) at which the search ends
+	 * @return number of simulations performed
+	 */
+	private int search(int decision, long endTime) {
+		minValue = Double.POSITIVE_INFINITY;
+		maxValue = Double.NEGATIVE_INFINITY;
+		if (transpositions != null)
+			transpositions.newSearch();
+		int simulations = 0;
+		do {
+			simulate(decision);
+			simulations++;
+		} while (System.currentTimeMillis() < endTime && (simulationBudget == 0 || simulations < simulationBudget));
+		return simulations;
+	}
+
+	/**
+	 * Perform one MCTS simulation (selection, expansion, rollout, backpropagation) from the given decision node.
+	 * @param decision decision node for the card drawn on the actual grid
+	 */
+	private void simulate(int decision) {
+		int numPlaysAtRoot = state.getNumPlays();
+		int pathLength = 0;
+		int node = decision;
+		path[pathLength++] = node;
+		boolean expanded = false;
+		double value;
+		while (true) {
+			if (chance[node]) {
+				if (state.getNumPlays() == NUM_POS) { // terminal grid
+					value = state.getScore();
+					break;
+				}
+				int child = selectChanceChild(node);
+				if (child == NONE) { // pool exhausted
+					value = state.simGreedyPlay(depthLimit, random);
+					break;
+				}
+				expanded = visits[child] == 0;
+				node = child;
+				path[pathLength++] = node;
+			}
+			else {
+				int child = selectDecisionChild(node);
+				if (child == NONE) { // pool exhausted: place greedily and roll out
+					int cardId = move[node];
+					state.makePlay(cardId, state.getGreedyPlay(cardId, random));
+					value = state.simGreedyPlay(depthLimit, random);
+					break;
+				}
+				state.makePlay(move[node], move[child]);
+				boolean newChild = visits[child] == 0;
+				node = child;
+				pathHash[pathLength] = state.getHash();
+				path[pathLength++] = node;
+				if (newChild || expanded) { // evaluate a newly expanded leaf
+					value = state.getNumPlays() == NUM_POS ? state.getScore() : state.simGreedyPlay(depthLimit, random);
+					break;
+				}
+			}
+		}
+		// restore the actual grid
+		while (state.getNumPlays() > numPlaysAtRoot)
+			state.undoPlay();
+		// backpropagate
+		for (int i = 0; i < pathLength; i++) {
+			visits[path[i]]++;
+			valueSum[path[i]] += value;
+			if (transpositions != null && chance[path[i]]) {
+				int entry = transpositions.probe(pathHash[i]);
+				int samples = entry == Reath_TranspositionTable.NOT_FOUND ? 0 : transpositions.getDepth(entry);
+				double mean = samples == 0 ? value : transpositions.getValue(entry) + (value - transpositions.getValue(entry)) / (samples + 1);
+				transpositions.store(pathHash[i], mean, samples + 1);
+			}
+		}
+		if (value < minValue)
+			minValue = value;
+		if (value > maxValue)
+			maxValue = value;
+	}
+
+	/**
+	 * Select (and, if necessary, expand) the placement child of a decision node.  Untried placements are
+	 * expanded in random order before UCT selection among existing children.
+	 * @param node decision node
+	 * @return chosen chance child or NONE if the pool is exhausted
+	 */
+	private int selectDecisionChild(int node) {
+		int numEmpty = NUM_POS - state.getNumPlays();
+		if (numChildren[node] < numEmpty) {
+			// choose a random untried empty position
+			int untried = numEmpty - numChildren[node];
+			int k = random.nextInt(untried);
+			for (int i = 0; i < numEmpty; i++) {
+				int pos = state.getEmpty(i);
+				if ((triedMask[node] & (1 << pos)) == 0 && k-- == 0) {
+					int child = addChild(node, true, pos);
+					if (child != NONE)
+						triedMask[node] |= 1 << pos;
+					return child;
+				}
+			}
+		}
+		double scale = UCT_CONSTANT * Math.max(1.0, maxValue - minValue);
+		double logVisits = Math.log(visits[node] + 1);
+		double bestUct = Double.NEGATIVE_INFINITY;
+		int best = NONE;
+		for (int child = firstChild[node]; child != NONE; child = nextSibling[child]) {
+			if (visits[child] == 0)
+				return child;
+			double mean = valueSum[child] / visits[child];
+			if (transpositions != null) { // prefer the shared estimate of the child's grid if it rests on more samples
+				int entry = transpositions.probe(state.getHash() ^ Reath_GameState.getZobrist(move[child], move[node]));
+				if (entry != Reath_TranspositionTable.NOT_FOUND && transpositions.getDepth(entry) > visits[child])
+					mean = transpositions.getValue(entry);
+			}
+			double uct = mean + scale * Math.sqrt(logVisits / visits[child]);
+			if (uct > bestUct) {
+				bestUct = uct;
+				best = child;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Select (and, if progressive widening allows, expand) the card child of a chance node.  A card is drawn
+	 * uniformly from the undealt cards; if it has no child and the widening limit is reached, an existing
+	 * child is chosen uniformly instead.
+	 * @param node chance node
+	 * @return chosen decision child or NONE if the pool is exhausted
+	 */
+	private int selectChanceChild(int node) {
+		int numUndealt = Card.NUM_CARDS - state.getNumPlays();
+		int cardId = state.getUndealt(random.nextInt(numUndealt));
+		int child = getChild(node, cardId);
+		if (child != NONE)
+			return child;
+		int limit = (int) Math.ceil(PW_CONSTANT * Math.pow(visits[node] + 1, PW_EXPONENT));
+		if (numChildren[node] < limit) {
+			child = addChild(node, false, cardId);
+			if (child != NONE)
+				return child;
+		}
+		if (numChildren[node] == 0)
+			return NONE;
+		int k = random.nextInt(numChildren[node]);
+		child = firstChild[node];
+		while (k-- > 0)
+			child = nextSibling[child];
+		return child;
+	}
+
+	/**
+	 * Return the child of the given node with the given move, or NONE.
+	 */
+	private int getChild(int node, int childMove) {
+		for (int child = firstChild[node]; child != NONE; child = nextSibling[child])
+			if (move[child] == childMove)
+				return child;
+		return NONE;
+	}
+
+	/**
+	 * Return the most visited child of the given node (breaking ties randomly), or NONE if it has no children.
+	 */
+	private int getMostVisitedChild(int node) {
+		int best = NONE;
+		int bestVisits = -1;
+		int numTied = 0;
+		for (int child = firstChild[node]; child != NONE; child = nextSibling[child]) {
+			if (visits[child] > bestVisits) {
+				best = child;
+				bestVisits = visits[child];
+				numTied = 1;
+			}
+			else if (visits[child] == bestVisits && random.nextInt(++numTied) == 0)
+				best = child;
+		}
+		return best;
+	}
+
+	/**
+	 * Allocate a new node from the pool.
+	 * @param isChance whether the node is a chance node
+	 * @param nodeMove placement position (chance nodes) or card id (decision nodes)
+	 * @return new node index or NONE if the pool is exhausted
+	 */
+	private int newNode(boolean isChance, int nodeMove) {
+		if (numNodes == capacity)
+			return NONE;
+		int node = numNodes++;
+		chance[node] = isChance;
+		move[node] = nodeMove;
+		firstChild[node] = NONE;
+		nextSibling[node] = NONE;
+		numChildren[node] = 0;
+		visits[node] = 0;
+		triedMask[node] = 0;
+		valueSum[node] = 0;
+		return node;
+	}
+
+	/**
+	 * Allocate a new node and link it as the first child of the given parent.
+	 */
+	private int addChild(int parent, boolean isChance, int nodeMove) {
+		int child = newNode(isChance, nodeMove);
+		if (child != NONE) {
+			nextSibling[child] = firstChild[parent];
+			firstChild[parent] = child;
+			numChildren[parent]++;
+		}
+		return child;
+	}
+
+	/**
+	 * Copy the subtree under the root into the spare pool (breadth first) and swap pools, discarding all
+	 * nodes that are no longer reachable.
+	 */
+	private void compact() {
+		int[] order = new int[numNodes]; // old node index of each new node
+		int[] newIndex = new int[numNodes];
+		int head = 0, tail = 0;
+		order[tail] = root;
+		newIndex[root] = tail++;
+		while (head < tail) {
+			int node = order[head++];
+			for (int child = firstChild[node]; child != NONE; child = nextSibling[child]) {
+				newIndex[child] = tail;
+				order[tail++] = child;
+			}
+		}
+		for (int i = 0; i < tail; i++) {
+			int node = order[i];
+			move2[i] = move[node];
+			chance2[i] = chance[node];
+			numChildren2[i] = numChildren[node];
+			visits2[i] = visits[node];
+			triedMask2[i] = triedMask[node];
+			valueSum2[i] = valueSum[node];
+			firstChild2[i] = firstChild[node] == NONE ? NONE : newIndex[firstChild[node]];
+			nextSibling2[i] = (i == 0 || nextSibling[node] == NONE) ? NONE : newIndex[nextSibling[node]];
+		}
+		int[] t;
+		t = move; move = move2; move2 = t;
+		t = firstChild; firstChild = firstChild2; firstChild2 = t;
+		t = nextSibling; nextSibling = nextSibling2; nextSibling2 = t;
+		t = numChildren; numChildren = numChildren2; numChildren2 = t;
+		t = visits; visits = visits2; visits2 = t;
+		t = triedMask; triedMask = triedMask2; triedMask2 = t;
+		double[] d = valueSum; valueSum = valueSum2; valueSum2 = d;
+		boolean[] b = chance; chance = chance2; chance2 = b;
+		numNodes = tail;
+		root = 0;
+	}
+
+	/* (non-Javadoc)
+	 * @see PokerSquaresPlayer#getName()
+	 */
+	@Override
+	public String getName() {
+		return "Reath_MCTSPlayerDepth" + depthLimit + (simulationBudget > 0 ? "Simulations" + simulationBudget : "")
+				+ (useTranspositions ? "Transpositions" : "") + (timeManager != null ? "TimeManager" : "");
+	}
+
+	/**
+	 * Demonstrate Reath_MCTSPlayer play with British point system.
+	 * @param args (not used)
+	 */
+	public static void main(String[] args) {
+		PokerSquaresPointSystem system = PokerSquaresPointSystem.getBritishPointSystem();
+		System.out.println(system);
+		new PokerSquares(new Reath_MCTSPlayer(), system).play(); // play a single game
+	}
+}
@@ -28,6 +28,23 @@ public class Reath_ModifiedGreedyMCPlayer {
 	                                             // we swap each dealt card to its correct index.  Thus, from index numPlays 
 												 // onward, we maintain a list of undealt cards for MC simulation.
 	private int[][] legalPlayLists = new int[NUM_POS][NUM_POS]; // stores legal play lists indexed by numPlays (depth)
+	private volatile boolean cancelled = false; // whether cancel() has asked the current search to stop
+	private Reath_TimeManager timeManager = null; // turn time budgets (null: even split of the remaining time)
+	private boolean commonRandomNumbers = false; // whether candidate plays are compared on common deal sequences (CRN)
+	private Reath_CommonRandomNumbers crn = new Reath_CommonRandomNumbers(); // common deal sequences and stopping rule of CRN
+	private boolean controlVariate = false; // whether MC averages are corrected with the line potential control variate
+	private boolean turnControlVariate = false; // whether the control variate is prepared and used in the current turn
+	private int rolloutBudget = 0; // rollouts per turn (0: search until the turn's time is used)
+	private int turnRollouts; // rollouts of the current turn: the rollout budget in whole rounds (0: no budget)
+	private int turnDepth; // rollout depth of the current turn
+	private Reath_DepthController depthController = new Reath_DepthController(); // chooses turnDepth for an ADAPTIVE depth limit
+	private int[] simCards = new int[NUM_POS]; // card ids drawn by the last simulation
+	private int simDepth; // number of cards drawn by each simulation of the current turn
+	private double[][] cvPotentials = new double[NUM_POS][NUM_CARDS]; // per candidate: best immediate score for each undealt card id
+	private double[] cvExpectations = new double[NUM_POS]; // per candidate: exact expectation of the control variate
+	private double[] cvSums = new double[NUM_POS]; // per candidate: sum of control variate values
+	private double[] cvSquareSums = new double[NUM_POS]; // per candidate: sum of squared control variate values
+	private double[] cvProductSums = new double[NUM_POS]; // per candidate: sum of control variate values times scores
 
 	public Reath_ModifiedGreedyMCPlayer(int depthLimit, PokerSquaresPointSystem system) {
 		this.depthLimit = depthLimit;
@@ -38,6 +55,36 @@ public class Reath_ModifiedGreedyMCPlayer {
 		return grid;
 	}
 
+	// Compare the critical plays of a turn on common deal sequences (common random numbers) or independent ones
+	public void setCommonRandomNumbers(boolean commonRandomNumbers) {
+		this.commonRandomNumbers = commonRandomNumbers;
+	}
+
+	// Correct each critical play's MC average with a control variate: the summed best immediate scores of the
+	// simulated draws, whose exact expectation follows from the undealt cards
+	public void setControlVariate(boolean controlVariate) {
+		this.controlVariate = controlVariate;
+	}
+
+	// Perform a fixed number of rollouts per turn (0 to search by time) with a pseudorandom number generator seeded
+	// now, so that decisions depend only on the cards dealt.  The rollouts are spent in whole rounds of one rollout
+	// per critical play: the budget is rounded down to a multiple of the turn's critical plays, but covers at least
+	// one round.
+	public void setRolloutBudget(int rolloutsPerTurn, long seed) {
+		this.rolloutBudget = Math.max(0, rolloutsPerTurn);
+		random.setSeed(seed);
+	}
+
+	// Choose the rollout depth of each turn with the given controller when the depth limit is ADAPTIVE
+	public void setDepthController(Reath_DepthController depthController) {
+		this.depthController = depthController;
+	}
+
+	// Budget each turn's simulations with the given time manager (or null for an even split of the remaining time)
+	public void setTimeManager(Reath_TimeManager timeManager) {
+		this.timeManager = timeManager;
+	}
+
 	public void init() {
 		// clear grid
 		for (int row = 0; row < SIZE; row++)
@@ -51,6 +98,11 @@ public class Reath_ModifiedGreedyMCPlayer {
 	}
 
 	public int[] getMCPlay(Card card, long millisRemaining, int[] criticalPlays, double[][] utilityGrid) {
+		return getMCPlay(card, millisRemaining, System.nanoTime() + millisRemaining * 1000000L, criticalPlays, utilityGrid);
+	}
+
+	// Same as above, but stops simulating at deadlineNanos (System.nanoTime()) or on cancel() if that comes first
+	public int[] getMCPlay(Card card, long millisRemaining, long deadlineNanos, int[] criticalPlays, double[][] utilityGrid) {
 		/*
 		 * With this algorithm, the player chooses the legal play that has the highest expected score outcome.
 		 * This outcome is estimated as follows:
@@ -60,6 +112,8 @@ public class Reath_ModifiedGreedyMCPlayer {
 		 *     picks a play position that maximizes the score (breaking ties randomly).
 		 *   After many such plays, the average score per simulated play is computed.  The play with the highest 
 		 *     average score is chosen (breaking ties randomly).   
+		 *   Critical plays are simulated round-robin so that their averages are comparable whenever the
+		 *     search stops.
 		 */
 		
 		// match simDeck to actual play event; in this way, all indices forward from the card contain a list of 
@@ -71,29 +125,69 @@ public class Reath_ModifiedGreedyMCPlayer {
 		simDeck[numPlays] = card;
 		
 		if (numPlays < 24) { // not the forced last play
-			// compute average time per move evaluation
+			// compute when the search should end
 			int remainingPlays = NUM_POS - numPlays; // ignores triviality of last play to keep a conservative margin for game completion
 			long millisPerPlay = millisRemaining / remainingPlays; // dividing time evenly with future getPlay() calls
-			long millisPerMoveEval = millisPerPlay / criticalPlays.length; // dividing time evenly across moves now considered
+			if (timeManager != null) // or by the candidates of this turn
+				millisPerPlay = timeManager.getTurnMillis(numPlays, millisRemaining,
+						Reath_TimeManager.countCandidateClasses(grid, criticalPlays), getSpread(criticalPlays, utilityGrid));
+			long startNanos = System.nanoTime();
+			long endNanos = startNanos + millisPerPlay * 1000000L;
+			if (rolloutBudget > 0 || deadlineNanos - endNanos < 0) // the caller's deadline comes first (and alone bounds a rollout budget)
+				endNanos = deadlineNanos;
+			// choose the rollout depth of this turn
+			if (depthLimit != Reath_DepthController.ADAPTIVE)
+				turnDepth = depthLimit;
+			else if (rolloutBudget > 0) // reproducible: rollouts to game end
+				turnDepth = remainingPlays - 1;
+			else
+				turnDepth = depthController.getDepth(remainingPlays - 1, criticalPlays.length, endNanos - System.nanoTime());
+			long searchNanos = System.nanoTime();
 			// copy the play positions (row-major indices) that are empty
 			System.arraycopy(plays, numPlays, legalPlayLists[numPlays], 0, remainingPlays);
+			int[] scoreTotals = new int[criticalPlays.length]; // MC simulation score totals of the critical plays
+			int[] simCounts = new int[criticalPlays.length]; // MC simulation counts of the critical plays
+			turnRollouts = getTurnRollouts(criticalPlays.length);
+			turnControlVariate = controlVariate && prepareControlVariate(card, criticalPlays, endNanos);
+			if (commonRandomNumbers) // compare the critical plays on common deal sequences
+				simCommonPlays(card, criticalPlays, criticalPlays.length, endNanos, scoreTotals, simCounts);
+			else {
+				int next = 0; // index of the critical play to simulate next
+				for (int simulations = 0; isSearching(endNanos, simulations); simulations++) { // perform as many MC simulations as possible through the allotted time (or budget)
+					int play = criticalPlays[next];
+					makePlay(card, play / SIZE, play % SIZE);  // play the card at the empty position
+					// Perform a Monte Carlo simulation of greedy play to the depth limit or game end, whichever comes first.
+					int score = simGreedyPlay(turnDepth);
+					scoreTotals[next] += score;  // accumulate MC simulation scores
+					simCounts[next]++; // increment count of MC simulations
+					if (turnControlVariate)
+						recordControl(next, score, getControl(next));
+					undoPlay(); // undo the play under evaluation
+					next = (next + 1) % criticalPlays.length;
+				}
+			}
+			if (timeManager != null) {
+				long simTotal = 0;
+				for (int simCount : simCounts)
+					simTotal += simCount;
+				timeManager.recordRollouts(simTotal, System.nanoTime() - startNanos);
+			}
+			if (depthLimit == Reath_DepthController.ADAPTIVE && rolloutBudget == 0) { // update the measured rollout cost
+				long simTotal = 0;
+				for (int simCount : simCounts)
+					simTotal += simCount;
+				depthController.recordRollouts(remainingPlays - 1, simTotal, System.nanoTime() - searchNanos);
+			}
+			double beta = turnControlVariate ? getControlCoefficient(scoreTotals, simCounts, criticalPlays.length) : 0;
 			double maxAverageScore = Double.NEGATIVE_INFINITY; // maximum average score found for moves so far
 			ArrayList<Integer> bestPlays = new ArrayList<Integer>(); // all plays yielding the maximum average score 
-			for (int i = 0; i < criticalPlays.length; i++) { // for each legal play position
+			for (int i = 0; i < criticalPlays.length; i++) { // for each critical play position
 				int play = criticalPlays[i];
-				long startTime = System.currentTimeMillis();
-				long endTime = startTime + millisPerMoveEval; // compute when MC simulations should end
-				makePlay(card, play / SIZE, play % SIZE);  // play the card at the empty position
-				int simCount = 0;
-				int scoreTotal = 0;
-				while (System.currentTimeMillis() < endTime) { // perform as many MC simulations as possible through the allotted time
-					// Perform a Monte Carlo simulation of greedy play to the depth limit or game end, whichever comes first.
-					scoreTotal += simGreedyPlay(depthLimit);  // accumulate MC simulation scores
-					simCount++; // increment count of MC simulations
-				}
-				undoPlay(); // undo the play under evaluation
-				// update (if necessary) the maximum average score and the list of best plays
-				double averageScore = (double) scoreTotal / (double) simCount;
+				// update (if necessary) the maximum average score and the list of best plays (by utility if none was simulated)
+				double averageScore = simCounts[i] > 0 ? (double) scoreTotals[i] / (double) simCounts[i]
+						: -1e9 + utilityGrid[play / SIZE][play % SIZE];
+				if (beta != 0 && simCounts[i] > 0) // control variate correction
+					averageScore -= beta * (cvSums[i] / simCounts[i] - cvExpectations[i]);
 				if (averageScore >= maxAverageScore) {
 					if (averageScore > maxAverageScore)
 						bestPlays.clear();
@@ -111,9 +205,124 @@ public class Reath_ModifiedGreedyMCPlayer {
 		}
 		int[] playPos = {plays[numPlays] / SIZE, plays[numPlays] % SIZE}; // decode it into row and column
 		makePlay(card, playPos[0], playPos[1]); // make the chosen play (not undoing this time)
+		cancelled = false;
 		return playPos; // return the chosen play
 	}
 
+	/**
+	 * Prepare the control variate of each critical play for the drawn card: for each undealt card, its potential
+	 * is the best grid score reachable by placing it right after the critical play.  A simulation's control
+	 * variate is the sum of the potentials of the cards it draws; since each draw is uniform over the undealt
+	 * cards, its expectation is the number of draws times the mean potential.  A placement changes only the
+	 * row and column through its cell, so each potential is the grid score less their old scores plus their new
+	 * ones.  The preparation counts against the turn's time: it gives up, leaving the control variate unused
+	 * for the turn, once endNanos passes or cancel() is called.
+	 * @param card - card just drawn (at simDeck[numPlays])
+	 * @param criticalPlays - row-major indices of the critical plays
+	 * @param endNanos - System.nanoTime() at which the turn's search stops
+	 * @return whether the control variate was prepared for every critical play
+	 */
+	private boolean prepareControlVariate(Card card, int[] criticalPlays, long endNanos) {
+		simDepth = turnDepth == 0 ? 0 : Math.min(turnDepth, NUM_POS - numPlays - 1);
+		Card[] column = new Card[SIZE];
+		int[] rowScores = new int[SIZE];
+		int[] colScores = new int[SIZE];
+		for (int i = 0; i < criticalPlays.length; i++) {
+			int play = criticalPlays[i];
+			makePlay(card, play / SIZE, play % SIZE);
+			int gridScore = 0;
+			for (int row = 0; row < SIZE; row++)
+				gridScore += rowScores[row] = system.getHandScore(grid[row]);
+			for (int col = 0; col < SIZE; col++) {
+				for (int row = 0; row < SIZE; row++)
+					column[row] = grid[row][col];
+				gridScore += colScores[col] = system.getHandScore(column);
+			}
+			double potentialSum = 0;
+			for (int c = numPlays; c < NUM_CARDS; c++) {
+				if (cancelled || System.nanoTime() - endNanos >= 0) { // out of time: search without the control variate
+					undoPlay();
+					return false;
+				}
+				Card next = simDeck[c];
+				int best = Integer.MIN_VALUE;
+				for (int j = numPlays; j < NUM_POS; j++) {
+					int pos = plays[j];
+					int row = pos / SIZE;
+					int col = pos % SIZE;
+					grid[row][col] = next;
+					for (int r = 0; r < SIZE; r++)
+						column[r] = grid[r][col];
+					int score = gridScore - rowScores[row] - colScores[col] + system.getHandScore(grid[row]) + system.getHandScore(column);
+					grid[row][col] = null;
+					best = Math.max(best, score);
+				}
+				cvPotentials[i][next.getCardId()] = best;
+				potentialSum += best;
+			}
+			cvExpectations[i] = simDepth * potentialSum / (NUM_CARDS - numPlays);
+			undoPlay();
+			cvSums[i] = cvSquareSums[i] = cvProductSums[i] = 0;
+		}
+		return true;
+	}
+
+	// Control variate value of the last simulation of critical play i
+	private double getControl(int i) {
+		double control = 0;
+		for (int d = 0; d < simDepth; d++)
+			control += cvPotentials[i][simCards[d]];
+		return control;
+	}
+
+	// Add a simulation's score and control variate value to the sums of critical play i
+	private void recordControl(int i, int score, double control) {
+		cvSums[i] += control;
+		cvSquareSums[i] += control * control;
+		cvProductSums[i] += control * score;
+	}
+
+	// Regression coefficient of score on control variate, pooled over the critical plays' centered sums
+	private double getControlCoefficient(int[] scoreTotals, int[] simCounts, int numCandidates) {
+		double covariance = 0;
+		double variance = 0;
+		for (int i = 0; i < numCandidates; i++) {
+			if (simCounts[i] < 2)
+				continue;
+			covariance += cvProductSums[i] - cvSums[i] * scoreTotals[i] / simCounts[i];
+			variance += cvSquareSums[i] - cvSums[i] * cvSums[i] / simCounts[i];
+		}
+		return variance > 0 ? covariance / variance : 0;
+	}
+
+	// Relative utility lead of the best critical play over the second best, in [0, 1]
+	private double getSpread(int[] criticalPlays, double[][] utilityGrid) {
+		double best = Double.NEGATIVE_INFINITY;
+		double second = Double.NEGATIVE_INFINITY;
+		for (int play : criticalPlays) {
+			double utility = utilityGrid[play / SIZE][play % SIZE];
+			if (utility > best) {
+				second = best;
+				best = utility;
+			}
+			else if (utility > second)
+				second = utility;
+		}
+		if (best <= 0 || second == Double.NEGATIVE_INFINITY)
+			return 0;
+		return Math.max(0, Math.min(1, (best - second) / best));
+	}
+
+	// Ask the getMCPlay call in progress (or the next one) to stop simulating and return its best play so far
+	public void cancel() {
+		cancelled = true;
+	}
+
+	// Forget a cancel() that no getMCPlay call has acted on, e.g. when the turn it was meant for ended without MC
+	public void clearCancel() {
+		cancelled = false;
+	}
+
 	/**
 	 * From the chosen play, perform simulated Card draws and greedy placement (depthLimit) iterations forward 
 	 * and return the resulting grid score.
@@ -121,6 +330,17 @@ public class Reath_ModifiedGreedyMCPlayer {
 	 * @return resulting grid score after greedy MC simulation to given depthLimit
 	 */
 	private int simGreedyPlay(int depthLimit) {
+		return simGreedyPlay(depthLimit, false);
+	}
+
+	/**
+	 * As simGreedyPlay(int), but optionally drawing the cards and breaking the ties of the common deal sequence
+	 * (see Reath_CommonRandomNumbers) instead of fresh random ones.
+	 * @param depthLimit - how many simulated greedy plays to perform
+	 * @param common - whether to follow the common deal sequence
+	 * @return resulting grid score after greedy MC simulation to given depthLimit
+	 */
+	private int simGreedyPlay(int depthLimit, boolean common) {
 		if (depthLimit == 0) { // with zero depth limit, return current score
 			return system.getScore(grid);
 		}
@@ -129,9 +349,9 @@ public class Reath_ModifiedGreedyMCPlayer {
 			int maxScore = Integer.MIN_VALUE;
 			int depth = Math.min(depthLimit, NUM_POS - numPlays); // compute real depth limit, taking into account game end
 			for (int d = 0; d < depth; d++) {
-				// generate a random card draw
-				int c = random.nextInt(NUM_CARDS - numPlays) + numPlays;
-				Card card = simDeck[c];
+				// generate a random card draw (or take the next card of the common sequence)
+				Card card = common ? crn.getCard(d) : simDeck[random.nextInt(NUM_CARDS - numPlays) + numPlays];
+				simCards[d] = card.getCardId();
 				// iterate through legal plays and choose the best greedy play (see similar approach in getPlay)
 				int remainingPlays = NUM_POS - numPlays;
 				System.arraycopy(plays, numPlays, legalPlayLists[numPlays], 0, remainingPlays);
@@ -149,7 +369,7 @@ public class Reath_ModifiedGreedyMCPlayer {
 					}
 					undoPlay();
 				}
-				int bestPlay = bestPlays.get(random.nextInt(bestPlays.size()));
+				int bestPlay = bestPlays.get(common ? crn.getTieBreak(d) % bestPlays.size() : random.nextInt(bestPlays.size()));
 				makePlay(card, bestPlay / SIZE, bestPlay % SIZE);
 			}
 			// At this point, the last maxScore value is the end value of this Monte Carlo situation.
@@ -161,6 +381,62 @@ public class Reath_ModifiedGreedyMCPlayer {
 		}
 	}
 	
+	/**
+	 * Simulate candidate plays of the drawn card on common deal sequences (common random numbers): in each round,
+	 * every candidate is simulated on the same sampled sequence of future cards and tie-breaks, so that the
+	 * differences between candidates' averages reflect the plays rather than the luck of their draws.  Only
+	 * completed rounds are counted, and the first round is always completed (the rollout budget of a turn is a
+	 * whole number of rounds, so it never ends a round early).  Simulation stops early once the leading
+	 * candidate's mean paired score difference to every other candidate exceeds Reath_CommonRandomNumbers.Z
+	 * standard errors.
+	 * @param card - card just drawn (at simDeck[numPlays])
+	 * @param candidates - row-major indices of candidate plays
+	 * @param numCandidates - number of candidate plays
+	 * @param endNanos - System.nanoTime() at which simulation stops
+	 * @param scoreTotals - simulation score totals of the candidates (added to)
+	 * @param simCounts - simulation counts of the candidates (added to)
+	 */
+	private void simCommonPlays(Card card, int[] candidates, int numCandidates, long endNanos, int[] scoreTotals, int[] simCounts) {
+		int[] roundScores = new int[numCandidates]; // candidate scores on the current sequence
+		double[] roundControls = new double[numCandidates]; // candidate control variate values on the current sequence
+		crn.start(numCandidates);
+		while (crn.getRounds() == 0 || isSearching(endNanos, crn.getRounds() * numCandidates)) { // always complete one round
+			crn.sampleSequence(simDeck, numPlays + 1, Math.min(turnDepth, NUM_POS - numPlays - 1), random);
+			int i = 0;
+			for (; i < numCandidates && (crn.getRounds() == 0 || isSearching(endNanos, crn.getRounds() * numCandidates + i)); i++) {
+				int play = candidates[i];
+				makePlay(card, play / SIZE, play % SIZE);
+				roundScores[i] = simGreedyPlay(turnDepth, true);
+				if (turnControlVariate)
+					roundControls[i] = getControl(i);
+				undoPlay();
+			}
+			if (i < numCandidates) // incomplete round
+				break;
+			if (turnControlVariate)
+				for (i = 0; i < numCandidates; i++)
+					recordControl(i, roundScores[i], roundControls[i]);
+			if (crn.addRound(roundScores, scoreTotals, simCounts))
+				break;
+		}
+	}
+
+	/**
+	 * Return whether search should continue: it has not been cancelled, endNanos (System.nanoTime()) has not
+	 * passed and, with a rollout budget, fewer than the turn's rollouts have been performed.
+	 */
+	private boolean isSearching(long endNanos, int simulations) {
+		return !cancelled && System.nanoTime() - endNanos < 0 && (turnRollouts == 0 || simulations < turnRollouts);
+	}
+
+	/**
+	 * Return the rollouts of a turn comparing the given number of candidates: the rollout budget rounded down to
+	 * whole rounds of one rollout per candidate, but at least one round (0 without a rollout budget).
+	 */
+	private int getTurnRollouts(int numCandidates) {
+		return rolloutBudget == 0 ? 0 : Math.max(1, rolloutBudget / numCandidates) * numCandidates;
+	}
+
 	public void makePlay(Card card, int row, int col) {
 		// match simDeck to event
 		int cardIndex = numPlays;
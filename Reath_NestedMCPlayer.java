@@ -0,0 +1,253 @@
+import java.util.Random;
+
+/**
+ * Reath_NestedMCPlayer - a Nested Monte Carlo Search implementation of the player interface for PokerSquares.
+ *
+ * This is the sampling variant of NMCS for a single-player game with chance: a level-L choice for a drawn card
+ * tries every empty position and scores it by playouts to game end in which each later (randomly drawn) card
+ * is placed by a level-(L-1) choice.  The level-0 policy is the greedy policy of GreedyMCPlayer.simGreedyPlay.
+ * At the root, passes over all positions are repeated until the time for the turn is used.
+ *
+ * The nesting level is fitted to each turn: the largest level (up to the configured maximum) for which
+ * MIN_ROOT_PASSES full root passes are expected to fit in the turn's time, estimated from the measured cost
+ * of a greedy placement.  All simulation uses Reath_GameState makePlay/undoPlay and per-level scratch
+ * arrays, so search allocates nothing.
+ *
+ * Author: Caleb Reath
+ */
+public class Reath_NestedMCPlayer implements PokerSquaresPlayer {
+	private final int SIZE = 5; // number of rows/columns in square grid
+	private final int NUM_POS = SIZE * SIZE; // number of positions in square grid
+	private static final int MAX_LEVEL = 4; // largest supported nesting level
+	private static final int MIN_ROOT_PASSES = 128; // root passes over all positions required to choose a level above 1
+
+	private Random random = new Random(); // pseudorandom number generator for card draws and tie breaking
+	private PokerSquaresPointSystem system; // point system
+	private Reath_GameState state; // actual game state (restored after each simulation)
+	private final int maxLevel; // configured nesting level
+	private final int innerSamples; // playouts per position for choices below the root
+	private int level; // nesting level used for the current turn
+	private long endNanos; // System.nanoTime() at which the current turn's search ends
+	private boolean timeUp; // whether the current turn's time has run out
+	private double nanosPerPlacement = 100; // measured cost of one greedy placement evaluation
+	private long placements; // greedy placement evaluations made during the current turn
+
+	private final int[][] candidates = new int[MAX_LEVEL + 1][25]; // per-level candidate positions
+	private final double[][] sums = new double[MAX_LEVEL + 1][25]; // per-level playout score sums
+	private final int[][] counts = new int[MAX_LEVEL + 1][25]; // per-level playout counts
+	private final int[] bestPlays = new int[25]; // scratch list of tied best positions
+
+	/**
+	 * Create a nested Monte Carlo player with nesting level up to 2 and one inner playout per position.
+	 */
+	public Reath_NestedMCPlayer() {
+		this(2, 1);
+	}
+
+	/**
+	 * Create a nested Monte Carlo player with one inner playout per position.
+	 * @param maxLevel maximum nesting level (1 is flat greedy Monte Carlo)
+	 */
+	public Reath_NestedMCPlayer(int maxLevel) {
+		this(maxLevel, 1);
+	}
+
+	/**
+	 * Create a nested Monte Carlo player.
+	 * @param maxLevel maximum nesting level (1 is flat greedy Monte Carlo)
+	 * @param innerSamples playouts per position for choices below the root
+	 */
+	public Reath_NestedMCPlayer(int maxLevel, int innerSamples) {
+		this.maxLevel = Math.max(1, Math.min(MAX_LEVEL, maxLevel));
+		this.innerSamples = Math.max(1, innerSamples);
+	}
+
+	/* (non-Javadoc)
+	 * @see PokerSquaresPlayer#setPointSystem(PokerSquaresPointSystem, long)
+	 */
+	@Override
+	public void setPointSystem(PokerSquaresPointSystem system, long millis) {
+		this.system = system;
+		state = new Reath_GameState(system);
+	}
+
+	/* (non-Javadoc)
+	 * @see PokerSquaresPlayer#init()
+	 */
+	@Override
+	public void init() {
+		state.reset();
+	}
+
+	/* (non-Javadoc)
+	 * @see PokerSquaresPlayer#getPlay(Card, long)
+	 */
+	@Override
+	public int[] getPlay(Card card, long millisRemaining) {
+		int cardId = card.getCardId();
+		int remainingPlays = NUM_POS - state.getNumPlays();
+		int bestPlay;
+		if (remainingPlays == 1) { // forced last play
+			bestPlay = state.getEmpty(0);
+		}
+		else {
+			long millisPerPlay = millisRemaining / remainingPlays; // dividing time evenly with future getPlay() calls
+			long start = System.nanoTime();
+			endNanos = start + millisPerPlay * 1000000L;
+			timeUp = false;
+			placements = 0;
+			level = fitLevel(remainingPlays, millisPerPlay * 1e6);
+			bestPlay = searchRoot(cardId);
+			long elapsed = System.nanoTime() - start;
+			if (placements > 1000) // update the measured cost of a greedy placement
+				nanosPerPlacement = (double) elapsed / placements;
+		}
+		state.makePlay(cardId, bestPlay);
+		return new int[] {bestPlay / SIZE, bestPlay % SIZE};
+	}
+
+	/**
+	 * Return the largest nesting level (up to maxLevel) for which MIN_ROOT_PASSES root passes over all positions
+	 * are expected to fit in the given time.
+	 * @param empties number of empty positions
+	 * @param nanos nanoseconds available for the turn
+	 * @return nesting level for the turn (at least 1)
+	 */
+	private int fitLevel(int empties, double nanos) {
+		// cost[l][e]: expected nanoseconds of one level-l choice with e empty positions
+		double[] previous = new double[empties + 1];
+		for (int e = 1; e <= empties; e++)
+			previous[e] = e * nanosPerPlacement;
+		int fitted = 1;
+		for (int l = 1; l <= maxLevel; l++) {
+			double[] cost = new double[empties + 1];
+			double playout = 0; // cost of a playout of level-(l - 1) choices from e - 1 empty positions
+			for (int e = 1; e <= empties; e++) {
+				cost[e] = e * (l == 1 ? 1 : innerSamples) * playout;
+				playout += previous[e];
+			}
+			if (l > 1 && MIN_ROOT_PASSES * cost[empties] / innerSamples > nanos)
+				break;
+			fitted = l;
+			previous = cost;
+		}
+		return fitted;
+	}
+
+	/**
+	 * Repeat passes of level-(level - 1) playouts over all positions for the drawn card until time runs out
+	 * and return the position with the best average score.
+	 */
+	private int searchRoot(int cardId) {
+		int numCandidates = NUM_POS - state.getNumPlays();
+		int[] candidates = this.candidates[level];
+		double[] sums = this.sums[level];
+		int[] counts = this.counts[level];
+		for (int i = 0; i < numCandidates; i++) {
+			candidates[i] = state.getEmpty(i);
+			sums[i] = 0;
+			counts[i] = 0;
+		}
+		do {
+			for (int i = 0; i < numCandidates && !timeUp; i++) {
+				state.makePlay(cardId, candidates[i]);
+				sums[i] += playout(level - 1);
+				counts[i]++;
+				state.undoPlay();
+				timeUp = System.nanoTime() >= endNanos;
+			}
+		} while (!timeUp);
+		return best(candidates, sums, counts, numCandidates, cardId);
+	}
+
+	/**
+	 * Choose a position for the drawn card with a level-l search.
+	 */
+	private int choose(int l, int cardId) {
+		if (l == 0 || timeUp) {
+			placements += NUM_POS - state.getNumPlays();
+			return state.getGreedyPlay(cardId, random);
+		}
+		int numCandidates = NUM_POS - state.getNumPlays();
+		int[] candidates = this.candidates[l];
+		double[] sums = this.sums[l];
+		int[] counts = this.counts[l];
+		for (int i = 0; i < numCandidates; i++) {
+			candidates[i] = state.getEmpty(i);
+			sums[i] = 0;
+			counts[i] = 0;
+		}
+		for (int i = 0; i < numCandidates && !timeUp; i++) {
+			state.makePlay(cardId, candidates[i]);
+			for (int s = 0; s < innerSamples; s++) {
+				sums[i] += playout(l - 1);
+				counts[i]++;
+			}
+			state.undoPlay();
+			timeUp = System.nanoTime() >= endNanos;
+		}
+		return best(candidates, sums, counts, numCandidates, cardId);
+	}
+
+	/**
+	 * Play randomly drawn cards to game end with level-l choices and return the final score.  The state is
+	 * restored before returning.
+	 */
+	private int playout(int l) {
+		if (l == 0) {
+			int empties = NUM_POS - state.getNumPlays();
+			placements += empties * (empties + 1) / 2;
+			return state.simGreedyPlay(NUM_POS, random);
+		}
+		int start = state.getNumPlays();
+		while (state.getNumPlays() < NUM_POS) {
+			int cardId = state.getUndealt(random.nextInt(Card.NUM_CARDS - state.getNumPlays()));
+			state.makePlay(cardId, choose(l, cardId));
+		}
+		int score = state.getScore();
+		while (state.getNumPlays() > start)
+			state.undoPlay();
+		return score;
+	}
+
+	/**
+	 * Return the sampled candidate with the best average score (breaking ties randomly), or the greedy play
+	 * if no candidate was sampled.
+	 */
+	private int best(int[] candidates, double[] sums, int[] counts, int numCandidates, int cardId) {
+		double maxAverage = Double.NEGATIVE_INFINITY;
+		int numBest = 0;
+		for (int i = 0; i < numCandidates; i++) {
+			if (counts[i] == 0)
+				continue;
+			double average = sums[i] / counts[i];
+			if (average >= maxAverage) {
+				if (average > maxAverage)
+					numBest = 0;
+				bestPlays[numBest++] = candidates[i];
+				maxAverage = average;
+			}
+		}
+		if (numBest == 0)
+			return state.getGreedyPlay(cardId, random);
+		return bestPlays[random.nextInt(numBest)];
+	}
+
+	/* (non-Javadoc)
+	 * @see PokerSquaresPlayer#getName()
+	 */
+	@Override
+	public String getName() {
+		return "Reath_NestedMCLevel" + maxLevel;
+	}
+
+	/**
+	 * Demonstrate Reath_NestedMCPlayer play with British point system.
+	 * @param args (not used)
+	 */
+	public static void main(String[] args) {
+		PokerSquaresPointSystem system = PokerSquaresPointSystem.getBritishPointSystem();
+		System.out.println(system);
+		new PokerSquares(new Reath_NestedMCPlayer(), system).play(); // play a single game
+	}
+}
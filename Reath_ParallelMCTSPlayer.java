@@ -0,0 +1,581 @@
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Reath_ParallelMCTSPlayer - a tree-parallel version of Reath_MCTSPlayer.
+ *
+ * All worker threads search one shared tree.  Visit counts and value sums live in a long[]-backed
+ * AtomicLongArray (values in fixed point) and are updated with atomic adds; children are published by CAS on
+ * the parent's child list head, and each placement or card is claimed by CAS on the parent's expanded mask so
+ * that no child is created twice.  A worker descending through a node applies a virtual loss (VIRTUAL_LOSS
+ * visits valued at the worst possible grid score) that is removed on backpropagation, which spreads the
+ * workers across branches instead of piling them onto the current best line.
+ *
+ * Tree reuse and compaction between turns work as in Reath_MCTSPlayer.  Each search ends SAFETY_MILLIS
+ * before its share of millisRemaining so that joining the workers stays inside the budget.
+ *
+ * Author: Caleb Reath
+ */
+public class Reath_ParallelMCTSPlayer implements PokerSquaresPlayer {
+	private final int SIZE = 5; // number of rows/columns in square grid
+	private final int NUM_POS = SIZE * SIZE; // number of positions in square grid
+	private static final int NONE = -1; // null node index
+	private static final int DEFAULT_CAPACITY = 1 << 21; // default maximum number of nodes in the pool
+	private static final double COMPACT_FRACTION = 0.5; // pool fraction in use that triggers compaction before a search
+	private static final double UCT_CONSTANT = 0.7; // UCT exploration constant (scaled by observed value range)
+	private static final double PW_CONSTANT = 1.0; // progressive widening constant for chance nodes
+	private static final double PW_EXPONENT = 0.5; // progressive widening exponent for chance nodes
+	private static final int VIRTUAL_LOSS = 3; // visits added to a node while a worker is below it
+	private static final double VALUE_SCALE = 1024.0; // fixed-point scale of value sums
+	private static final long SAFETY_MILLIS = 2; // margin for stopping and joining workers
+	private static final int SLOT_SHIFT = 6; // slot(node) transposes blocks of 8 << SLOT_SHIFT nodes (see slot)
+	private static final int BLOCK_NODES = 8 << SLOT_SHIFT; // nodes per transposed block (capacity is a multiple)
+
+	private final int numThreads; // number of worker threads
+	private final int depthLimit; // rollout depth limit
+	private final int capacity; // maximum number of nodes in the pool
+	private PokerSquaresPointSystem system; // point system
+	private Reath_EndgameSolver endgameSolver; // exact solver for the last plays
+	private Reath_GameState state; // actual game state
+	private Random random = new Random(); // pseudorandom number generator for tie breaking
+	private ExecutorService pool; // worker threads
+	private Worker[] workers; // per-thread search state
+	private long lossValue; // fixed-point value of one virtual loss visit
+	private long simulations; // simulations (playouts) of all workers in the last search
+
+	// Node pool (see Reath_MCTSPlayer).  The atomic arrays hold the fields of a node at slot(node); stats holds its
+	// visits at 2 * slot(node) and its fixed-point value sum at 2 * slot(node) + 1.
+	private int[] move, nextSibling;
+	private boolean[] chance;
+	private AtomicIntegerArray firstChild, numChildren;
+	private AtomicLongArray expandedMask, stats;
+	private int[] move2, nextSibling2;
+	private boolean[] chance2;
+	private AtomicIntegerArray firstChild2, numChildren2;
+	private AtomicLongArray expandedMask2, stats2;
+	private final AtomicInteger numNodes = new AtomicInteger(); // number of nodes in use
+	private int root = NONE; // chance node for the current grid
+
+	/**
+	 * Create a tree-parallel MCTS player using all available processors and rollouts to game end.
+	 */
+	public Reath_ParallelMCTSPlayer() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Create a tree-parallel MCTS player with a given number of worker threads and rollouts to game end.
+	 * @param numThreads number of worker threads
+	 */
+	public Reath_ParallelMCTSPlayer(int numThreads) {
+		this(numThreads, 25, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Create a tree-parallel MCTS player.
+	 * @param numThreads number of worker threads
+	 * @param depthLimit depth limit for greedy rollouts from tree leaves
+	 * @param capacity maximum number of nodes in the pool (rounded up to a multiple of BLOCK_NODES)
+	 */
+	public Reath_ParallelMCTSPlayer(int numThreads, int depthLimit, int capacity) {
+		this.numThreads = Math.max(1, numThreads);
+		this.depthLimit = depthLimit;
+		this.capacity = (capacity + BLOCK_NODES - 1) / BLOCK_NODES * BLOCK_NODES;
+	}
+
+	/* (non-Javadoc)
+	 * @see PokerSquaresPlayer#setPointSystem(PokerSquaresPointSystem, long)
+	 */
+	@Override
+	public void setPointSystem(PokerSquaresPointSystem system, long millis) {
+		this.system = system;
+		state = new Reath_GameState(system);
+		endgameSolver = new Reath_EndgameSolver(system);
+		int minScore = Integer.MAX_VALUE;
+		for (int points : system.getScoreTable())
+			minScore = Math.min(minScore, points);
+		lossValue = Math.round(2 * SIZE * minScore * VALUE_SCALE);
+		if (move == null) {
+			move = new int[capacity]; nextSibling = new int[capacity]; chance = new boolean[capacity];
+			firstChild = new AtomicIntegerArray(capacity); numChildren = new AtomicIntegerArray(capacity);
+			expandedMask = new AtomicLongArray(capacity); stats = new AtomicLongArray(2 * capacity);
+			move2 = new int[capacity]; nextSibling2 = new int[capacity]; chance2 = new boolean[capacity];
+			firstChild2 = new AtomicIntegerArray(capacity); numChildren2 = new AtomicIntegerArray(capacity);
+			expandedMask2 = new AtomicLongArray(capacity); stats2 = new AtomicLongArray(2 * capacity);
+		}
+		if (pool == null) {
+			pool = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "Reath_ParallelMCTSPlayer-worker");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			workers = new Worker[numThreads];
+			for (int i = 0; i < numThreads; i++)
+				workers[i] = new Worker();
+		}
+		for (Worker worker : workers)
+			worker.state = new Reath_GameState(system);
+	}
+
+	/* (non-Javadoc)
+	 * @see PokerSquaresPlayer#init()
+	 */
+	@Override
+	public void init() {
+		state.reset();
+		endgameSolver.reset();
+		numNodes.set(0);
+		root = newNode(true, NONE);
+	}
+
+	/* (non-Javadoc)
+	 * @see PokerSquaresPlayer#getPlay(Card, long)
+	 */
+	@Override
+	public int[] getPlay(Card card, long millisRemaining) {
+		simulations = 0;
+		int cardId = card.getCardId();
+		int remainingPlays = NUM_POS - state.getNumPlays();
+		int bestPlay;
+		if (remainingPlays == 1) { // forced last play
+			bestPlay = state.getEmpty(0);
+		}
+		else if (remainingPlays <= Reath_EndgameSolver.MAX_EMPTY
+				&& (bestPlay = endgameSolver.solve(state, cardId, Reath_EndgameSolver.getSolveMillis(millisRemaining, remainingPlays))) >= 0) { // exact endgame play
+			root = NONE;
+		}
+		else {
+			long millisPerPlay = millisRemaining / remainingPlays; // dividing time evenly with future getPlay() calls
+			long endNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, millisPerPlay - SAFETY_MILLIS));
+			if (numNodes.get() > COMPACT_FRACTION * capacity)
+				compact();
+			int decision = getChild(root, cardId);
+			if (decision == NONE)
+				decision = addChild(root, false, cardId);
+			if (decision == NONE) { // pool exhausted: restart the tree from the current grid
+				numNodes.set(0);
+				root = newNode(true, NONE);
+				decision = addChild(root, false, cardId);
+			}
+			search(decision, endNanos);
+			int next = getMostVisitedChild(decision);
+			bestPlay = next == NONE ? state.getGreedyPlay(cardId, random) : move[next];
+			root = next;
+		}
+		state.makePlay(cardId, bestPlay);
+		if (root == NONE) { // no subtree to reuse
+			numNodes.set(0);
+			root = newNode(true, NONE);
+		}
+		return new int[] {bestPlay / SIZE, bestPlay % SIZE};
+	}
+
+	/**
+	 * Run all workers on the shared tree from the given decision node until the given time.
+	 * @param decision decision node for the drawn card
+	 * @param endNanos time (System.nanoTime()) at which the workers stop
+	 */
+	private void search(int decision, long endNanos) {
+		ArrayList<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>(numThreads);
+		for (Worker worker : workers) {
+			worker.state.copyFrom(state);
+			worker.decision = decision;
+			worker.endNanos = endNanos;
+			tasks.add(worker);
+		}
+		try {
+			pool.invokeAll(tasks);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		for (Worker worker : workers)
+			simulations += worker.simCount;
+	}
+
+	/**
+	 * Get the number of simulations (playouts) of all workers in the last search.
+	 * @return simulations of the last play (0 if it was solved or forced rather than searched)
+	 */
+	public long getSimulations() {
+		return simulations;
+	}
+
+	/**
+	 * Per-thread search state.  Each worker simulates on its own copy of the actual grid.
+	 */
+	private class Worker implements Callable<Integer> {
+		Reath_GameState state; // worker copy of the game state
+		final Random random = new Random(); // worker pseudorandom number generator
+		final int[] path = new int[2 * NUM_POS + 2]; // nodes visited by the current simulation
+		int decision; // search root
+		long endNanos; // search end time
+		double minValue, maxValue; // range of simulation values observed by this worker
+		int simCount; // simulations of the current search
+
+		@Override
+		public Integer call() {
+			minValue = Double.POSITIVE_INFINITY;
+			maxValue = Double.NEGATIVE_INFINITY;
+			simCount = 0;
+			do {
+				simulate();
+				simCount++;
+			} while (System.nanoTime() < endNanos);
+			return simCount;
+		}
+
+		/**
+		 * Perform one simulation from the search root, applying virtual loss along the path.
+		 */
+		private void simulate() {
+			int numPlaysAtRoot = state.getNumPlays();
+			int pathLength = 0;
+			int node = decision;
+			path[pathLength++] = node;
+			addVirtualLoss(node);
+			boolean expanded = false;
+			double value;
+			while (true) {
+				if (chance[node]) {
+					if (state.getNumPlays() == NUM_POS) {
+						value = state.getScore();
+						break;
+					}
+					int child = selectChanceChild(node);
+					if (child == NONE) {
+						value = state.simGreedyPlay(depthLimit, random);
+						break;
+					}
+					expanded = visits(child) == 0;
+					node = child;
+					path[pathLength++] = node;
+					addVirtualLoss(node);
+				}
+				else {
+					int child = selectDecisionChild(node);
+					if (child == NONE) {
+						int cardId = move[node];
+						state.makePlay(cardId, state.getGreedyPlay(cardId, random));
+						value = state.simGreedyPlay(depthLimit, random);
+						break;
+					}
+					state.makePlay(move[node], move[child]);
+					boolean newChild = visits(child) == 0;
+					node = child;
+					path[pathLength++] = node;
+					addVirtualLoss(node);
+					if (newChild || expanded) {
+						value = state.getNumPlays() == NUM_POS ? state.getScore() : state.simGreedyPlay(depthLimit, random);
+						break;
+					}
+				}
+			}
+			while (state.getNumPlays() > numPlaysAtRoot)
+				state.undoPlay();
+			// backpropagate, replacing each virtual loss with the real result
+			long fixedValue = Math.round(value * VALUE_SCALE);
+			for (int i = 0; i < pathLength; i++) {
+				stats.addAndGet(2 * slot(path[i]), 1 - VIRTUAL_LOSS);
+				stats.addAndGet(2 * slot(path[i]) + 1, fixedValue - VIRTUAL_LOSS * lossValue);
+			}
+			if (value < minValue)
+				minValue = value;
+			if (value > maxValue)
+				maxValue = value;
+		}
+
+		private void addVirtualLoss(int node) {
+			stats.addAndGet(2 * slot(node), VIRTUAL_LOSS);
+			stats.addAndGet(2 * slot(node) + 1, VIRTUAL_LOSS * lossValue);
+		}
+
+		/**
+		 * Select (claiming and expanding if necessary) the placement child of a decision node.
+		 */
+		private int selectDecisionChild(int node) {
+			int numEmpty = NUM_POS - state.getNumPlays();
+			if (numChildren.get(slot(node)) < numEmpty) {
+				int start = random.nextInt(numEmpty);
+				for (int i = 0; i < numEmpty; i++) {
+					int pos = state.getEmpty((start + i) % numEmpty);
+					if (claim(node, pos))
+						return addChild(node, true, pos);
+				}
+			}
+			double scale = UCT_CONSTANT * Math.max(1.0, maxValue - minValue);
+			double logVisits = Math.log(visits(node) + 1);
+			double bestUct = Double.NEGATIVE_INFINITY;
+			int best = NONE;
+			for (int child = firstChild.get(slot(node)); child != NONE; child = nextSibling[child]) {
+				long n = visits(child);
+				double uct = n == 0 ? Double.POSITIVE_INFINITY
+						: stats.get(2 * slot(child) + 1) / VALUE_SCALE / n + scale * Math.sqrt(logVisits / n);
+				if (uct > bestUct) {
+					bestUct = uct;
+					best = child;
+				}
+			}
+			return best;
+		}
+
+		/**
+		 * Select (claiming and expanding if progressive widening allows) the card child of a chance node.
+		 */
+		private int selectChanceChild(int node) {
+			int numUndealt = Card.NUM_CARDS - state.getNumPlays();
+			int cardId = state.getUndealt(random.nextInt(numUndealt));
+			int child = getChild(node, cardId);
+			if (child != NONE)
+				return child;
+			int limit = (int) Math.ceil(PW_CONSTANT * Math.pow(visits(node) + 1, PW_EXPONENT));
+			if (numChildren.get(slot(node)) < limit && claim(node, cardId)) {
+				child = addChild(node, false, cardId);
+				if (child != NONE)
+					return child;
+			}
+			int n = numChildren.get(slot(node));
+			if (n == 0)
+				return NONE;
+			int k = random.nextInt(n);
+			child = firstChild.get(slot(node));
+			while (k-- > 0 && nextSibling[child] != NONE)
+				child = nextSibling[child];
+			return child;
+		}
+	}
+
+	/**
+	 * Atomically claim the given move (position or card id) below a node.
+	 * @return whether this thread claimed the move
+	 */
+	private boolean claim(int node, int childMove) {
+		long bit = 1L << childMove;
+		while (true) {
+			long mask = expandedMask.get(slot(node));
+			if ((mask & bit) != 0)
+				return false;
+			if (expandedMask.compareAndSet(slot(node), mask, mask | bit))
+				return true;
+		}
+	}
+
+	/**
+	 * Return the index of a node's fields in the atomic arrays.  Within each block of BLOCK_NODES nodes, the
+	 * index transposes the node's 8 x 2^SLOT_SHIFT position, so that nodes allocated together (such as the
+	 * children of one node, which all workers update) are 128 bytes apart in stats instead of sharing cache
+	 * lines, and the 8 nodes of each 128 bytes were allocated 2^SLOT_SHIFT apart.
+	 */
+	private static int slot(int node) {
+		return node & -BLOCK_NODES | (node & (1 << SLOT_SHIFT) - 1) << 3 | node >> SLOT_SHIFT & 7;
+	}
+
+	private long visits(int node) {
+		return stats.get(2 * slot(node));
+	}
+
+	private int getChild(int node, int childMove) {
+		for (int child = firstChild.get(slot(node)); child != NONE; child = nextSibling[child])
+			if (move[child] == childMove)
+				return child;
+		return NONE;
+	}
+
+	private int getMostVisitedChild(int node) {
+		int best = NONE;
+		long bestVisits = -1;
+		for (int child = firstChild.get(slot(node)); child != NONE; child = nextSibling[child])
+			if (visits(child) > bestVisits) {
+				best = child;
+				bestVisits = visits(child);
+			}
+		return best;
+	}
+
+	/**
+	 * Allocate a new node from the pool.  Its fields are written before it is published by addChild.
+	 */
+	private int newNode(boolean isChance, int nodeMove) {
+		int node = numNodes.getAndIncrement();
+		if (node >= capacity) {
+			numNodes.set(capacity);
+			return NONE;
+		}
+		chance[node] = isChance;
+		move[node] = nodeMove;
+		nextSibling[node] = NONE;
+		firstChild.set(slot(node), NONE);
+		numChildren.set(slot(node), 0);
+		expandedMask.set(slot(node), 0L);
+		stats.set(2 * slot(node), 0L);
+		stats.set(2 * slot(node) + 1, 0L);
+		return node;
+	}
+
+	/**
+	 * Allocate a new node and publish it at the head of the parent's child list with CAS.
+	 */
+	private int addChild(int parent, boolean isChance, int nodeMove) {
+		int child = newNode(isChance, nodeMove);
+		if (child == NONE)
+			return NONE;
+		int head;
+		do {
+			head = firstChild.get(slot(parent));
+			nextSibling[child] = head;
+		} while (!firstChild.compareAndSet(slot(parent), head, child));
+		numChildren.incrementAndGet(slot(parent));
+		return child;
+	}
+
+	/**
+	 * Copy the subtree under the root into the spare pool and swap pools (single-threaded, between searches).
+	 */
+	private void compact() {
+		int used = Math.min(numNodes.get(), capacity);
+		int[] order = new int[used];
+		int[] newIndex = new int[used];
+		int head = 0, tail = 0;
+		order[tail] = root;
+		newIndex[root] = tail++;
+		while (head < tail) {
+			int node = order[head++];
+			for (int child = firstChild.get(slot(node)); child != NONE; child = nextSibling[child]) {
+				newIndex[child] = tail;
+				order[tail++] = child;
+			}
+		}
+		for (int i = 0; i < tail; i++) {
+			int node = order[i];
+			move2[i] = move[node];
+			chance2[i] = chance[node];
+			numChildren2.set(slot(i), numChildren.get(slot(node)));
+			expandedMask2.set(slot(i), expandedMask.get(slot(node)));
+			stats2.set(2 * slot(i), stats.get(2 * slot(node)));
+			stats2.set(2 * slot(i) + 1, stats.get(2 * slot(node) + 1));
+			firstChild2.set(slot(i), firstChild.get(slot(node)) == NONE ? NONE : newIndex[firstChild.get(slot(node))]);
+			nextSibling2[i] = (i == 0 || nextSibling[node] == NONE) ? NONE : newIndex[nextSibling[node]];
+		}
+		int[] t;
+		t = move; move = move2; move2 = t;
+		t = nextSibling; nextSibling = nextSibling2; nextSibling2 = t;
+		boolean[] b = chance; chance = chance2; chance2 = b;
+		AtomicIntegerArray a;
+		a = firstChild; firstChild = firstChild2; firstChild2 = a;
+		a = numChildren; numChildren = numChildren2; numChildren2 = a;
+		AtomicLongArray l;
+		l = expandedMask; expandedMask = expandedMask2; expandedMask2 = l;
+		l = stats; stats = stats2; stats2 = l;
+		numNodes.set(tail);
+		root = 0;
+	}
+
+	/* (non-Javadoc)
+	 * @see PokerSquaresPlayer#getName()
+	 */
+	@Override
+	public String getName() {
+		return "Reath_ParallelMCTS" + numThreads + "T";
+	}
+
+	/**
+	 * Print the mean simulations (playouts) per move of tree parallelism (one player with n worker threads
+	 * sharing a tree) and of root parallelism (n single-threaded players searching the same grid concurrently,
+	 * each in its own tree of 1/n of the shared tree's capacity) for n = 1, 2, 4, ... up to maxThreads.  Each configuration plays the first numMoves
+	 * moves of numDeals seeded deals with the American point system, searching millisPerMove per move.  Their
+	 * ratio is that of simulations per elapsed second, since the concurrent root players do not start at once.
+	 * @param maxThreads maximum number of threads
+	 * @param millisPerMove search time per move
+	 * @param numDeals number of deals
+	 * @param numMoves number of moves per deal (at most 20, so that no move is solved exactly)
+	 */
+	public static void printScaling(int maxThreads, long millisPerMove, int numDeals, int numMoves) {
+		PokerSquaresPointSystem system = PokerSquaresPointSystem.getAmericanPointSystem();
+		System.out.printf("%8s %14s %14s %8s\n", "Threads", "Tree/move", "Root/move", "Tree/Root");
+		for (int n = 1; n <= maxThreads; n *= 2) {
+			Reath_ParallelMCTSPlayer tree = new Reath_ParallelMCTSPlayer(n);
+			tree.setPointSystem(system, 0);
+			final Reath_ParallelMCTSPlayer[] roots = new Reath_ParallelMCTSPlayer[n];
+			for (int i = 0; i < n; i++) {
+				roots[i] = new Reath_ParallelMCTSPlayer(1, 25, DEFAULT_CAPACITY / n); // the same total pool as the shared tree
+				roots[i].setPointSystem(system, 0);
+			}
+			long treeTotal = 0, rootTotal = 0, treeNanos = 0, rootNanos = 0;
+			for (int deal = 0; deal < numDeals; deal++) {
+				Card[] deck = Card.getAllCards();
+				Random random = new Random(deal);
+				for (int i = deck.length - 1; i > 0; i--) {
+					int j = random.nextInt(i + 1);
+					Card swap = deck[i];
+					deck[i] = deck[j];
+					deck[j] = swap;
+				}
+				tree.init();
+				for (Reath_ParallelMCTSPlayer root : roots)
+					root.init();
+				for (int m = 0; m < numMoves; m++) {
+					final Card card = deck[m];
+					final long millisRemaining = (millisPerMove + SAFETY_MILLIS) * (25 - m); // millisPerMove for this move
+					long startNanos = System.nanoTime();
+					tree.getPlay(card, millisRemaining);
+					treeNanos += System.nanoTime() - startNanos;
+					treeTotal += tree.getSimulations();
+					startNanos = System.nanoTime();
+					Thread[] threads = new Thread[n];
+					for (int i = 0; i < n; i++) {
+						final Reath_ParallelMCTSPlayer root = roots[i];
+						threads[i] = new Thread(new Runnable() {
+							@Override
+							public void run() {
+								root.getPlay(card, millisRemaining);
+							}
+						});
+						threads[i].start();
+					}
+					for (int i = 0; i < n; i++) {
+						try {
+							threads[i].join();
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+							return;
+						}
+						rootTotal += roots[i].getSimulations();
+					}
+					rootNanos += System.nanoTime() - startNanos;
+				}
+			}
+			tree.pool.shutdown();
+			for (Reath_ParallelMCTSPlayer root : roots)
+				root.pool.shutdown();
+			double treeMean = (double) treeTotal / (numDeals * numMoves), rootMean = (double) rootTotal / (numDeals * numMoves);
+			System.out.printf("%8d %14.1f %14.1f %8.3f\n", n, treeMean, rootMean, treeTotal * (double) rootNanos / (rootTotal * (double) treeNanos));
+		}
+	}
+
+	/**
+	 * Demonstrate Reath_ParallelMCTSPlayer play with British point system, or, given arguments
+	 * "scaling [maxThreads [millisPerMove [numDeals [numMoves]]]]", print tree versus root parallelism
+	 * simulations per move (printScaling, by default up to 16 threads with 200 ms for 5 moves of 4 deals).
+	 * @param args (see above)
+	 */
+	public static void main(String[] args) {
+		if (args.length > 0 && args[0].equals("scaling")) {
+			printScaling(args.length > 1 ? Integer.parseInt(args[1]) : 16, args.length > 2 ? Long.parseLong(args[2]) : 200,
+					args.length > 3 ? Integer.parseInt(args[3]) : 4, args.length > 4 ? Integer.parseInt(args[4]) : 5);
+			return;
+		}
+		PokerSquaresPointSystem system = PokerSquaresPointSystem.getBritishPointSystem();
+		System.out.println(system);
+		new PokerSquares(new Reath_ParallelMCTSPlayer(), system).play(); // play a single game
+	}
+}
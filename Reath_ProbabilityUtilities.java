@@ -25,7 +25,11 @@ public class Reath_ProbabilityUtilities {
 
     private int cardsPlayed = 0; // Turn counter
 
-    private boolean[][] possibleHands; // Holds wether a hand type is possible given the selected hand (with replacments)
+    private int[] reachableHands; // Holds wether each hand type is possible given the selected hand (with replacments), bit i for hand type i
+    private int[] patternRanks; // Rank counts of the hand whose pattern key is being computed
+
+    // Reachable hands (see getReachableHands) of every pattern key (see getPatternKey)
+    private static final int[] REACHABLE_HANDS = buildReachableHands();
 
     public Reath_ProbabilityUtilities(double[] adj) {
         handRewards = adj;
@@ -52,7 +56,8 @@ public class Reath_ProbabilityUtilities {
             suits[i] = 13;
         }
 
-        possibleHands = new boolean[10][9];
+        reachableHands = new int[10];
+        patternRanks = new int[13];
     }
 
     // Update all variables for hands with the placment info for the new card
@@ -128,12 +133,12 @@ public class Reath_ProbabilityUtilities {
     private void getPossibleHands(Card drawnCard) {
         for (int hand=0; hand<10; hand++) {
             // Reset possibility of current hand to avoid forgetting
-            possibleHands[hand] = new boolean[9];
+            reachableHands[hand] = 0;
             tempCardIndex[hand] = -1;
 
             // If hand isnt complete yet
             if (handsSizes[hand] < 5) {
-                // Insert the new card into this hand temporarily
+                // Insert the new card into this hand temporarily (calculateProbabilities removes it again)
                 if (drawnCard != null) {
                     for (int i=0; i<5; i++) {
                         if (hands[hand][i] == null) {
@@ -145,145 +150,124 @@ public class Reath_ProbabilityUtilities {
                     }
                 }
 
-                // Get the current handId after insertion of new card
-                int newHand = PokerHand.getPokerHandId(hands[hand]);
-
-                // Sets the possibility of the current hand if not High Card
-                if (newHand != 0) {
-                    //possibleHands[hand][newHand - 1] = true;
-                }
-
-                // If hand is not one of the 5 card hands
-                if (newHand < 4) {
-                    int firstSuit = -1;
-
-                    int lowestCard = 13;
-                    int highestCard = 0;
-
-                    boolean flush = true;
-                    boolean royal = true;
-                    boolean straight = true;
+                // Look up the reachable hands of the hand's pattern
+                reachableHands[hand] = REACHABLE_HANDS[getPatternKey(hands[hand])];
+            }
+        }
+    }
 
-                    for (int i=0; i<5; i++) {
-                        Card card = hands[hand][i];
-                        if (card != null) {
-                            // Check Flush possibility
-                            if (flush) {
-                                if (firstSuit == -1) {
-                                    firstSuit = card.getSuit();
-                                } else if (firstSuit != card.getSuit()) {
-                                    flush = false;
-                                }
-                            }
+    // Returns wether the given hand type (0 = one pair ... 8 = royal flush) is possible for the given hand
+    private boolean isReachable(int hand, int handType) {
+        return (reachableHands[hand] & (1 << handType)) != 0;
+    }
 
-                            // Check Straight possibility
-                            if (straight) {
-                                if (card.getRank() > highestCard) {
-                                    highestCard = card.getRank();
-                                }
-                                if (card.getRank() < lowestCard) {
-                                    lowestCard = card.getRank();
-                                }
-
-                                // Check range of cards. If the range exceeds 4 then it cannot be a straight
-                                if (highestCard - lowestCard > 4) {
-                                    straight = false;
-                                }
-                            }
+    // Compute the pattern key of a hand: its size, number of repeated ranks, largest rank count
+    // and whether it can still be a flush, a straight (rank span of at most 4) or royal
+    private int getPatternKey(Card[] cardsInHand) {
+        int size = 0;
+        int distinct = 0;
+        int maxCount = 0;
+        int firstSuit = -1;
+        int lowestCard = 13;
+        int highestCard = 0;
+        boolean flush = true;
+        boolean royal = true;
+        for (int i=0; i<5; i++) {
+            Card card = cardsInHand[i];
+            if (card != null) {
+                int rank = card.getRank();
+                size++;
+                if (patternRanks[rank]++ == 0) {
+                    distinct++;
+                }
+                maxCount = Math.max(maxCount, patternRanks[rank]);
+                if (firstSuit == -1) {
+                    firstSuit = card.getSuit();
+                } else if (firstSuit != card.getSuit()) {
+                    flush = false;
+                }
+                lowestCard = Math.min(lowestCard, rank);
+                highestCard = Math.max(highestCard, rank);
+                if (rank > 0 && rank < 9) {
+                    royal = false;
+                }
+            }
+        }
+        // Clear the rank counts for the next hand
+        for (int i=0; i<5; i++) {
+            if (cardsInHand[i] != null) {
+                patternRanks[cardsInHand[i].getRank()] = 0;
+            }
+        }
+        return getPatternKey(size, size - distinct, maxCount, flush, highestCard - lowestCard <= 4, royal);
+    }
 
-                            // Check if all cards in hand are royal
-                            if (royal && card.getRank() > 0 && card.getRank() < 9) {
-                                royal = false;
-                            }
+    private static int getPatternKey(int size, int repeats, int maxCount, boolean flush, boolean straight, boolean royal) {
+        return (((size * 5 + repeats) * 5 + maxCount) * 2 + (flush ? 1 : 0)) * 4 + (straight ? 2 : 0) + (royal ? 1 : 0);
+    }
 
-                            // Break early if hand cannot be royal, straight, or a flush
-                            if (!royal && !flush && !straight) {
-                                break;
-                            }
-                        }
+    // Build the table of reachable hands for every pattern key (done once at class load)
+    private static int[] buildReachableHands() {
+        int[] table = new int[6 * 5 * 5 * 8];
+        for (int size=0; size<=5; size++) {
+            for (int repeats=0; repeats<5 && repeats<=size; repeats++) {
+                for (int maxCount=0; maxCount<5; maxCount++) {
+                    // PokerHand id of a hand with this rank pattern (nothing is reachable from a 5 card
+                    // hand, so its id does not matter there)
+                    int handId;
+                    if (maxCount == 4) {
+                        handId = 7; // Four of a kind
+                    } else if (maxCount == 3) {
+                        handId = repeats == 3 ? 6 : 3; // Full house or three of a kind
+                    } else if (maxCount == 2) {
+                        handId = repeats; // One pair or two pair
+                    } else {
+                        handId = 0; // High card
                     }
-
-                    // Set possible hands using simple logic
-                    if (newHand == 0) { // HighCard
-                        if (handsSizes[hand] == 0) {
-                            possibleHands[hand][0] = true; // One pair
-                            possibleHands[hand][1] = true; // Two pair
-                            possibleHands[hand][2] = true; // Three of a kind
-                            possibleHands[hand][3] = true; // Straight
-                            possibleHands[hand][4] = true; // Flush
-                            possibleHands[hand][5] = true; // Full house
-                            possibleHands[hand][6] = true; // Four of a kind
-                            possibleHands[hand][7] = true; // Straight Flush
-                            possibleHands[hand][8] = royal; // Royal Flush
-                        } else if (handsSizes[hand] == 1) {
-                            possibleHands[hand][0] = true; // One pair
-                            possibleHands[hand][1] = true; // Two pair
-                            possibleHands[hand][2] = true; // Three of a kind
-                            possibleHands[hand][3] = true; // Straight
-                            possibleHands[hand][4] = true; // Flush
-                            possibleHands[hand][5] = true; // Full house
-                            possibleHands[hand][6] = true; // Four of a kind
-                            possibleHands[hand][7] = true; // Straight Flush
-                            possibleHands[hand][8] = royal; // Royal Flush
-                        } else if (handsSizes[hand] == 2) {
-                            possibleHands[hand][0] = true; // One pair
-                            possibleHands[hand][1] = true; // Two pair
-                            possibleHands[hand][2] = true; // Three of a kind
-                            possibleHands[hand][3] = straight; // Straight
-                            possibleHands[hand][4] = flush; // Flush
-                            possibleHands[hand][5] = true; // Full house
-                            possibleHands[hand][6] = true; // Four of a kind
-                            possibleHands[hand][7] = straight && flush; // Straight Flush
-                            possibleHands[hand][8] = royal && flush; // Royal Flush
-                        } else if (handsSizes[hand] == 3) {
-                            possibleHands[hand][0] = true; // One pair
-                            possibleHands[hand][1] = true; // Two pair
-                            possibleHands[hand][2] = true; // Three of a kind
-                            possibleHands[hand][3] = straight; // Straight
-                            possibleHands[hand][4] = flush; // Flush
-                            possibleHands[hand][7] = straight && flush; // Straight Flush
-                            possibleHands[hand][8] = royal && flush; // Royal Flush
-                        } else if (handsSizes[hand] == 4) {
-                            possibleHands[hand][0] = true; // One pair
-                            possibleHands[hand][3] = straight; // Straight
-                            possibleHands[hand][4] = flush; // Flush
-                            possibleHands[hand][7] = straight && flush; // Straight Flush
-                            possibleHands[hand][8] = royal && flush; // Royal Flush
-                        }
-                    } else if (newHand == 1) { // One pair
-                        if (handsSizes[hand] == 2) {
-                            possibleHands[hand][1] = true; // Two pair
-                            possibleHands[hand][2] = true; // Three of a kind
-                            possibleHands[hand][4] = flush; // Flush
-                            possibleHands[hand][5] = true; // Full house
-                            possibleHands[hand][6] = true; // Four of a kind
-                        } else if (handsSizes[hand] == 3) {
-                            possibleHands[hand][1] = true; // Two pair
-                            possibleHands[hand][2] = true; // Three of a kind
-                            possibleHands[hand][4] = flush; // Flush
-                            possibleHands[hand][5] = true; // Full house
-                            possibleHands[hand][6] = true; // Four of a kind
-                        } else if (handsSizes[hand] == 4) {
-                            possibleHands[hand][1] = true; // Two pair
-                            possibleHands[hand][2] = true; // Three of a kind
-                            possibleHands[hand][4] = flush; // Flush
-                        }
-                    } else if (newHand == 2) { // Two pair
-                        if (handsSizes[hand] == 4) {
-                            possibleHands[hand][2] = true; // Three of a kind
-                            possibleHands[hand][4] = flush; // Flush
-                            possibleHands[hand][5] = true; // Full house
-                        }
-                    } else if (newHand == 3) { // Three of a kind
-                        if (handsSizes[hand] < 5) {
-                            possibleHands[hand][4] = flush; // Flush
-                            possibleHands[hand][5] = true; // Full house
-                            possibleHands[hand][6] = true; // Four of a kind
-                        }
+                    for (int flags=0; flags<8; flags++) {
+                        boolean flush = (flags & 4) != 0;
+                        boolean straight = (flags & 2) != 0;
+                        boolean royal = (flags & 1) != 0;
+                        table[getPatternKey(size, repeats, maxCount, flush, straight, royal)] =
+                                getReachableHands(size, handId, flush, straight, royal);
                     }
                 }
             }
         }
+        return table;
+    }
+
+    // Given unlimited numbers of any card get the possible hands (bit i for hand type i, 0 = one pair
+    // ... 8 = royal flush) of a hand with the given size and PokerHand id, and wether its cards
+    // can still be a flush, a straight or royal
+    private static int getReachableHands(int size, int handId, boolean flush, boolean straight, boolean royal) {
+        int f = flush ? 1 : 0;
+        int s = straight ? 1 : 0;
+        int r = royal ? 1 : 0;
+        if (size >= 5) {
+            return 0;
+        }
+        if (handId == 0) { // HighCard
+            if (size <= 1) {
+                return 0xFF | r << 8; // Everything, royal flush only with royal cards
+            } else if (size == 2) {
+                return 1 << 0 | 1 << 1 | 1 << 2 | s << 3 | f << 4 | 1 << 5 | 1 << 6 | (s & f) << 7 | (r & f) << 8;
+            } else if (size == 3) {
+                return 1 << 0 | 1 << 1 | 1 << 2 | s << 3 | f << 4 | (s & f) << 7 | (r & f) << 8;
+            } else {
+                return 1 << 0 | s << 3 | f << 4 | (s & f) << 7 | (r & f) << 8;
+            }
+        } else if (handId == 1) { // One pair
+            if (size == 4) {
+                return 1 << 1 | 1 << 2 | f << 4;
+            }
+            return 1 << 1 | 1 << 2 | f << 4 | 1 << 5 | 1 << 6;
+        } else if (handId == 2) { // Two pair
+            return size == 4 ? 1 << 2 | f << 4 | 1 << 5 : 0;
+        } else if (handId == 3) { // Three of a kind
+            return f << 4 | 1 << 5 | 1 << 6;
+        }
+        return 0;
     }
 
     // Calculate the probabilities
@@ -341,7 +325,7 @@ public class Reath_ProbabilityUtilities {
         }
 
         double prob = 0.0;
-        if (possibleHands[hand][1]) {
+        if (isReachable(hand, 1)) {
             int[] tempRanks = new int[13];
             int max = 0;
 
@@ -394,7 +378,7 @@ public class Reath_ProbabilityUtilities {
         }
         
         double prob = 0.0;
-        if (possibleHands[hand][1]) {
+        if (isReachable(hand, 1)) {
             int[] tempRanks = new int[13];
             int max = 0;
             // Setup
@@ -452,7 +436,7 @@ public class Reath_ProbabilityUtilities {
         }
         
         double prob = 0.0;
-        if (possibleHands[hand][2]) {
+        if (isReachable(hand, 2)) {
             int[] tempRanks = new int[13];
             int max = 0;
             // Setup
@@ -505,7 +489,7 @@ public class Reath_ProbabilityUtilities {
         }
 
         double prob = 0.0;
-        if (possibleHands[hand][3]) {
+        if (isReachable(hand, 3)) {
             int[] tempRanks = new int[13];
             int lowCard = 13;
             int highCard = 0;
@@ -558,7 +542,7 @@ public class Reath_ProbabilityUtilities {
         }
 
         double prob = 0.0;
-        if (possibleHands[hand][4]) {
+        if (isReachable(hand, 4)) {
             int suit = -1;
             // Setup
             for (int i=0; i<5; i++) {
@@ -598,7 +582,7 @@ public class Reath_ProbabilityUtilities {
         }
 
         double prob = 0.0;
-        if (possibleHands[hand][5]) {
+        if (isReachable(hand, 5)) {
             int[] tempRanks = new int[13];
             int rank1 = 0;
             int rank2 = 0;
@@ -666,7 +650,7 @@ public class Reath_ProbabilityUtilities {
         }
         
         double prob = 0.0;
-        if (possibleHands[hand][6]) {
+        if (isReachable(hand, 6)) {
             int[] tempRanks = new int[13];
             int max = 0;
             // Setup
@@ -716,7 +700,7 @@ public class Reath_ProbabilityUtilities {
         }
 
         double prob = 0.0;
-        if (possibleHands[hand][7]) {
+        if (isReachable(hand, 7)) {
             int[] tempRanks = new int[13];
             int lowCard = 13;
             int highCard = 0;
@@ -771,7 +755,7 @@ public class Reath_ProbabilityUtilities {
         }
 
         double prob = 0.0;
-        if (possibleHands[hand][8]) {
+        if (isReachable(hand, 8)) {
             int suit = -1;
             // Setup
             for (int i=0; i<5; i++) {
@@ -0,0 +1,206 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Reath_SelfPlayGenerator - plays self-play games in parallel and streams one fixed-size record per play to
+ * chunked binary files (read back by Reath_SelfPlayReader).
+ *
+ * Each worker thread plays games with a fast placement policy (greedy, or a Reath_LineValueTable) on its own
+ * Reath_GameState, fills a direct buffer with the records of whole games and writes it through a FileChannel.
+ * A worker starts a new chunk file "selfplay-w&lt;worker&gt;-&lt;chunk&gt;.bin" every recordsPerChunk records.
+ * Game g is dealt and played with a pseudorandom number generator seeded with seed + g, so a run is
+ * reproducible for a given seed and thread count.
+ *
+ * Record layout (Reath_SelfPlayReader.RECORD_BYTES bytes, little-endian), describing the grid before the play:
+ *   0  long   bit c set when card id c is in the grid
+ *   8  int    bit p set when position p is filled
+ *   12 byte[25] card id at each position (-1 when empty)
+ *   37 byte   dealt card id
+ *   38 byte   chosen position (row-major)
+ *   39 byte   number of cards already placed
+ *   40 short[10] final scores of rows 0-4 and columns 0-4
+ *   60 short  final grid score
+ *   62 short  reserved (0)
+ *
+ * Author: Caleb Reath
+ */
+public class Reath_SelfPlayGenerator {
+	private static final int NUM_POS = Reath_GameState.NUM_POS;
+	private static final int NUM_LINES = Reath_GameState.NUM_LINES;
+	private static final int RECORD_BYTES = Reath_SelfPlayReader.RECORD_BYTES;
+	private static final int BUFFER_GAMES = 256; // games buffered before each channel write
+	public static final int MAX_GAMES_PER_CHUNK = Integer.MAX_VALUE / (NUM_POS * RECORD_BYTES); // games per chunk file that Reath_SelfPlayReader can map
+
+	private final PokerSquaresPointSystem system; // point system for scoring and greedy play
+	private final Reath_LineValueTable policy; // placement policy (null for greedy play)
+	private final File directory; // destination directory of chunk files
+	private final long recordsPerChunk; // records per chunk file (a multiple of 25)
+
+	/**
+	 * Create a self-play generator.
+	 * @param system point system
+	 * @param policy learned placement policy, or null for greedy play
+	 * @param directory destination directory of chunk files
+	 * @param gamesPerChunk games per chunk file, in [1, MAX_GAMES_PER_CHUNK]
+	 * @throws IllegalArgumentException if a chunk file of gamesPerChunk games could not be mapped as one buffer
+	 */
+	public Reath_SelfPlayGenerator(PokerSquaresPointSystem system, Reath_LineValueTable policy, File directory, int gamesPerChunk) {
+		if (gamesPerChunk < 1 || gamesPerChunk > MAX_GAMES_PER_CHUNK)
+			throw new IllegalArgumentException("Games per chunk must be in [1, " + MAX_GAMES_PER_CHUNK + "]: " + gamesPerChunk);
+		this.system = system;
+		this.policy = policy;
+		this.directory = directory;
+		this.recordsPerChunk = (long) gamesPerChunk * NUM_POS;
+	}
+
+	/**
+	 * Play the given number of games on the given number of threads, writing all records.
+	 * @param numGames number of games
+	 * @param numThreads number of worker threads
+	 * @param seed seed of game 0 (game g uses seed + g)
+	 * @return number of records written
+	 * @throws IOException if a chunk file cannot be written
+	 */
+	public long generate(final long numGames, final int numThreads, final long seed) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs())
+			throw new IOException("Cannot create directory " + directory);
+		final IOException[] errors = new IOException[numThreads];
+		final long[] records = new long[numThreads];
+		ArrayList<Thread> threads = new ArrayList<Thread>();
+		for (int w = 0; w < numThreads; w++) {
+			final int worker = w;
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						records[worker] = runWorker(worker, numThreads, numGames, seed);
+					} catch (IOException e) {
+						errors[worker] = e;
+					}
+				}
+			}, "Reath_SelfPlayGenerator-" + w);
+			thread.start();
+			threads.add(thread);
+		}
+		long total = 0;
+		for (int w = 0; w < numThreads; w++) {
+			try {
+				threads.get(w).join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			if (errors[w] != null)
+				throw errors[w];
+			total += records[w];
+		}
+		return total;
+	}
+
+	/**
+	 * Play games worker, worker + numThreads, ... and write their records.
+	 */
+	private long runWorker(int worker, int numThreads, long numGames, long seed) throws IOException {
+		Reath_GameState state = new Reath_GameState(system);
+		Random random = new Random();
+		ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_GAMES * NUM_POS * RECORD_BYTES).order(Reath_SelfPlayReader.BYTE_ORDER);
+		int chunk = 0;
+		long chunkRecords = 0;
+		long written = 0;
+		FileChannel channel = null;
+		try {
+			for (long game = worker; game < numGames; game += numThreads) {
+				random.setSeed(seed + game);
+				playGame(state, random, buffer);
+				if (buffer.remaining() < NUM_POS * RECORD_BYTES || game + numThreads >= numGames
+						|| chunkRecords + buffer.position() / RECORD_BYTES >= recordsPerChunk) {
+					if (channel == null)
+						channel = openChunk(worker, chunk++);
+					buffer.flip();
+					while (buffer.hasRemaining())
+						channel.write(buffer);
+					chunkRecords += buffer.limit() / RECORD_BYTES;
+					written += buffer.limit() / RECORD_BYTES;
+					buffer.clear();
+					if (chunkRecords >= recordsPerChunk) {
+						channel.close();
+						channel = null;
+						chunkRecords = 0;
+					}
+				}
+			}
+		} finally {
+			if (channel != null)
+				channel.close();
+		}
+		return written;
+	}
+
+	private FileChannel openChunk(int worker, int chunk) throws IOException {
+		File file = new File(directory, String.format("selfplay-w%03d-%06d.bin", worker, chunk));
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.setLength(0);
+		return raf.getChannel();
+	}
+
+	/**
+	 * Play one game and append its 25 records to the buffer.
+	 */
+	private void playGame(Reath_GameState state, Random random, ByteBuffer buffer) {
+		state.reset();
+		int start = buffer.position();
+		long placedCards = 0;
+		int filledCells = 0;
+		for (int t = 0; t < NUM_POS; t++) {
+			int cardId = state.getUndealt(random.nextInt(Card.NUM_CARDS - t));
+			int pos = policy == null ? state.getGreedyPlay(cardId, random) : policy.getBestPlay(state, cardId, random);
+			buffer.putLong(placedCards);
+			buffer.putInt(filledCells);
+			for (int p = 0; p < NUM_POS; p++)
+				buffer.put((byte) state.getCard(p));
+			buffer.put((byte) cardId);
+			buffer.put((byte) pos);
+			buffer.put((byte) t);
+			buffer.position(buffer.position() + RECORD_BYTES - Reath_SelfPlayReader.LINE_SCORES_OFFSET); // filled below
+			state.makePlay(cardId, pos);
+			placedCards |= 1L << cardId;
+			filledCells |= 1 << pos;
+		}
+		// final line scores are known only at game end
+		for (int t = 0; t < NUM_POS; t++) {
+			int record = start + t * RECORD_BYTES;
+			for (int line = 0; line < NUM_LINES; line++)
+				buffer.putShort(record + Reath_SelfPlayReader.LINE_SCORES_OFFSET + 2 * line,
+						(short) system.getHandScore(state.getLineHand(line)));
+			buffer.putShort(record + Reath_SelfPlayReader.SCORE_OFFSET, (short) state.getScore());
+			buffer.putShort(record + Reath_SelfPlayReader.SCORE_OFFSET + 2, (short) 0);
+		}
+	}
+
+	/**
+	 * Generate self-play records from the command line.
+	 * @param args directory, number of games, [threads], [seed]
+	 * @throws IOException if a chunk file cannot be written
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("usage: java Reath_SelfPlayGenerator directory numGames [threads] [seed]");
+			return;
+		}
+		File directory = new File(args[0]);
+		long numGames = Long.parseLong(args[1]);
+		int numThreads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		long seed = args.length > 3 ? Long.parseLong(args[3]) : 0L;
+		PokerSquaresPointSystem system = PokerSquaresPointSystem.getBritishPointSystem();
+		long start = System.currentTimeMillis();
+		long records = new Reath_SelfPlayGenerator(system, null, directory, 1 << 16).generate(numGames, numThreads, seed);
+		System.out.printf("%d records written in %d ms\n", records, System.currentTimeMillis() - start);
+		Reath_SelfPlayReader reader = new Reath_SelfPlayReader(directory);
+		System.out.printf("%d records readable, first final score %d\n", reader.size(), reader.size() > 0 ? reader.getScore(0) : 0);
+		reader.close();
+	}
+}
@@ -0,0 +1,310 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Reath_SelfPlayReader - memory-mapped sequential and random access to the fixed-size self-play records written
+ * by Reath_SelfPlayGenerator.
+ *
+ * All chunk files of a directory are mapped read-only (in file name order) and addressed by one long record
+ * index, so data sets larger than memory or than 2^31 bytes can be read without copying them onto the heap.
+ * Accessors decode single fields of a record in place.
+ *
+ * Author: Caleb Reath
+ */
+public class Reath_SelfPlayReader implements Closeable {
+	public static final int RECORD_BYTES = 64; // bytes per record
+	public static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN; // byte order of record fields
+	static final int CARDS_OFFSET = 0; // long mask of card ids in the grid
+	static final int CELLS_OFFSET = 8; // int mask of filled positions
+	static final int GRID_OFFSET = 12; // 25 bytes of card ids (-1 when empty)
+	static final int CARD_OFFSET = 37; // byte dealt card id
+	static final int PLAY_OFFSET = 38; // byte chosen position
+	static final int TURN_OFFSET = 39; // byte number of cards already placed
+	static final int LINE_SCORES_OFFSET = 40; // 10 shorts of final line scores
+	static final int SCORE_OFFSET = 60; // short final grid score
+
+	private final MappedByteBuffer[] chunks; // mapped chunk files
+	private final long[] starts; // index of the first record of each chunk, followed by the total
+	private final RandomAccessFile[] files; // open chunk files
+
+	/**
+	 * Map all self-play chunk files of the given directory.  A trailing partial record (left by an interrupted
+	 * run) is ignored.
+	 * @param directory directory written by Reath_SelfPlayGenerator
+	 * @throws IOException if a chunk file cannot be mapped
+	 */
+	public Reath_SelfPlayReader(File directory) throws IOException {
+		File[] list = directory.listFiles(new FileFilter() {
+			@Override
+			public boolean accept(File file) {
+				return file.isFile() && file.getName().startsWith("selfplay-") && file.getName().endsWith(".bin");
+			}
+		});
+		if (list == null)
+			throw new IOException("Not a directory: " + directory);
+		Arrays.sort(list);
+		chunks = new MappedByteBuffer[list.length];
+		files = new RandomAccessFile[list.length];
+		starts = new long[list.length + 1];
+		try {
+			for (int i = 0; i < list.length; i++) {
+				files[i] = new RandomAccessFile(list[i], "r");
+				long length = files[i].length();
+				if (length % RECORD_BYTES != 0) {
+					System.err.println("Ignoring partial last record of " + list[i]);
+					length -= length % RECORD_BYTES;
+				}
+				chunks[i] = files[i].getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length);
+				chunks[i].order(BYTE_ORDER);
+				starts[i + 1] = starts[i] + length / RECORD_BYTES;
+			}
+		} catch (IOException e) {
+			close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Get the number of records.
+	 * @return number of records in all chunks
+	 */
+	public long size() {
+		return starts[chunks.length];
+	}
+
+	/**
+	 * Return the chunk holding the given record.
+	 */
+	private int chunk(long index) {
+		if (index < 0 || index >= size())
+			throw new IndexOutOfBoundsException("Record " + index + " of " + size());
+		int i = Arrays.binarySearch(starts, index);
+		if (i < 0)
+			return -i - 2;
+		while (starts[i + 1] == index) // skip empty chunks
+			i++;
+		return i;
+	}
+
+	/**
+	 * Return the byte offset of the given record within its chunk.
+	 */
+	private static int offset(long index, long start) {
+		return (int) ((index - start) * RECORD_BYTES);
+	}
+
+	/**
+	 * Get the mask of card ids in the grid before the play.
+	 * @param index record index
+	 * @return bit c set when card id c is in the grid
+	 */
+	public long getCardMask(long index) {
+		int c = chunk(index);
+		return chunks[c].getLong(offset(index, starts[c]) + CARDS_OFFSET);
+	}
+
+	/**
+	 * Get the mask of filled positions before the play.
+	 * @param index record index
+	 * @return bit p set when row-major position p is filled
+	 */
+	public int getCellMask(long index) {
+		int c = chunk(index);
+		return chunks[c].getInt(offset(index, starts[c]) + CELLS_OFFSET);
+	}
+
+	/**
+	 * Get the card id at a grid position before the play.
+	 * @param index record index
+	 * @param pos row-major position
+	 * @return card id, or Reath_GameState.EMPTY
+	 */
+	public int getCard(long index, int pos) {
+		int c = chunk(index);
+		return chunks[c].get(offset(index, starts[c]) + GRID_OFFSET + pos);
+	}
+
+	/**
+	 * Get the dealt card id.
+	 * @param index record index
+	 * @return dealt card id
+	 */
+	public int getDealtCard(long index) {
+		int c = chunk(index);
+		return chunks[c].get(offset(index, starts[c]) + CARD_OFFSET);
+	}
+
+	/**
+	 * Get the position chosen for the dealt card.
+	 * @param index record index
+	 * @return row-major position
+	 */
+	public int getPlay(long index) {
+		int c = chunk(index);
+		return chunks[c].get(offset(index, starts[c]) + PLAY_OFFSET);
+	}
+
+	/**
+	 * Get the number of cards placed before the play.
+	 * @param index record index
+	 * @return turn number in [0, 24]
+	 */
+	public int getTurn(long index) {
+		int c = chunk(index);
+		return chunks[c].get(offset(index, starts[c]) + TURN_OFFSET);
+	}
+
+	/**
+	 * Get the final score of a line of the game the record belongs to.
+	 * @param index record index
+	 * @param line line index (rows 0-4 followed by columns 0-4)
+	 * @return final line score
+	 */
+	public int getLineScore(long index, int line) {
+		int c = chunk(index);
+		return chunks[c].getShort(offset(index, starts[c]) + LINE_SCORES_OFFSET + 2 * line);
+	}
+
+	/**
+	 * Get the final grid score of the game the record belongs to.
+	 * @param index record index
+	 * @return final grid score
+	 */
+	public int getScore(long index) {
+		int c = chunk(index);
+		return chunks[c].getShort(offset(index, starts[c]) + SCORE_OFFSET);
+	}
+
+	/**
+	 * Load the grid of a record (before the play) into a game state.
+	 * @param index record index
+	 * @param state game state to reset and fill
+	 */
+	public void getState(long index, Reath_GameState state) {
+		int c = chunk(index);
+		int base = offset(index, starts[c]);
+		state.reset();
+		for (int pos = 0; pos < Reath_GameState.NUM_POS; pos++) {
+			int cardId = chunks[c].get(base + GRID_OFFSET + pos);
+			if (cardId != Reath_GameState.EMPTY)
+				state.makePlay(cardId, pos);
+		}
+	}
+
+	/**
+	 * Create a cursor for sequential reading from the given record.
+	 * @param start index of the first record
+	 * @return cursor positioned before the first record
+	 */
+	public Cursor cursor(long start) {
+		return new Cursor(start);
+	}
+
+	/**
+	 * Cursor - sequential access to consecutive records without per-record chunk lookup.
+	 */
+	public class Cursor {
+		private long next; // index of the next record
+		private int chunk = -1; // chunk of the current record
+		private int base; // byte offset of the current record within its chunk
+
+		private Cursor(long start) {
+			next = start;
+		}
+
+		/**
+		 * Advance to the next record.
+		 * @return whether a record is available
+		 */
+		public boolean next() {
+			if (next >= size())
+				return false;
+			if (chunk < 0 || next >= starts[chunk + 1])
+				chunk = chunk(next);
+			base = offset(next++, starts[chunk]);
+			return true;
+		}
+
+		/**
+		 * @return index of the current record
+		 */
+		public long getIndex() {
+			return next - 1;
+		}
+
+		/**
+		 * @return mask of card ids in the grid before the play
+		 */
+		public long getCardMask() {
+			return chunks[chunk].getLong(base + CARDS_OFFSET);
+		}
+
+		/**
+		 * @return mask of filled positions before the play
+		 */
+		public int getCellMask() {
+			return chunks[chunk].getInt(base + CELLS_OFFSET);
+		}
+
+		/**
+		 * @param pos row-major position
+		 * @return card id at the position before the play, or Reath_GameState.EMPTY
+		 */
+		public int getCard(int pos) {
+			return chunks[chunk].get(base + GRID_OFFSET + pos);
+		}
+
+		/**
+		 * @return dealt card id
+		 */
+		public int getDealtCard() {
+			return chunks[chunk].get(base + CARD_OFFSET);
+		}
+
+		/**
+		 * @return position chosen for the dealt card
+		 */
+		public int getPlay() {
+			return chunks[chunk].get(base + PLAY_OFFSET);
+		}
+
+		/**
+		 * @return number of cards placed before the play
+		 */
+		public int getTurn() {
+			return chunks[chunk].get(base + TURN_OFFSET);
+		}
+
+		/**
+		 * @param line line index (rows 0-4 followed by columns 0-4)
+		 * @return final line score
+		 */
+		public int getLineScore(int line) {
+			return chunks[chunk].getShort(base + LINE_SCORES_OFFSET + 2 * line);
+		}
+
+		/**
+		 * @return final grid score
+		 */
+		public int getScore() {
+			return chunks[chunk].getShort(base + SCORE_OFFSET);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		for (RandomAccessFile file : files)
+			if (file != null)
+				file.close();
+	}
+}
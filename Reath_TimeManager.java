@@ -0,0 +1,159 @@
+/**
+ * Reath_TimeManager - divides a player's game clock among its 25 turns.
+ *
+ * Instead of an even split of the remaining time, each turn gets a share proportional to its weight:
+ *   - a base weight by turn, rising from the opening to the middle game and falling toward the end
+ *     (the forced last play gets none),
+ *   - times the fraction of the other legal plays that are distinct candidates, so a turn whose candidates
+ *     are all equivalent (such as the first play on an empty grid) is not searched at all,
+ *   - times a discount for a large value spread, i.e. when one candidate already clearly leads.
+ * The remaining time, less a safety margin kept against PokerSquares.GAME_MILLIS, is divided between the
+ * current weight and the expected weights of the turns still to come (their base weights times the running
+ * mean of the candidate and spread factors), so time saved on easy turns flows to later, contested ones.
+ * Once the rollout rate has been measured (recordRollouts), a searched turn gets at least the time for
+ * MIN_ROLLOUTS rollouts per candidate, as long as that does not exceed an even split of the remaining time.
+ *
+ * Candidates are counted up to the symmetry of the grid: permuting rows or columns does not change a
+ * score, so empty positions whose row and column are both empty, or that share a non-empty row (column) and
+ * have empty columns (rows), are equivalent.
+ *
+ * Author: Caleb Reath
+ */
+public class Reath_TimeManager {
+	public static final long DEFAULT_SAFETY_MILLIS = 1000L; // time kept in reserve for the rest of the game
+	private static final int SIZE = PokerSquares.SIZE; // number of rows/columns in square grid
+	private static final int NUM_POS = SIZE * SIZE; // number of positions in square grid
+	private static final int MIN_ROLLOUTS = 20; // rollouts per candidate that a searched turn should afford
+	private static final double SPREAD_DISCOUNT = 0.5; // weight reduction for a clearly dominant candidate
+	private static final double FACTOR_RATE = 0.05; // running mean weight of the latest turn's factor
+	private static final double ROLLOUT_RATE = 0.2; // running mean weight of the latest measured rollout rate
+	private static final double[] TURN_WEIGHTS = new double[NUM_POS]; // base weight by number of cards placed
+
+	static {
+		for (int t = 0; t < NUM_POS - 1; t++)
+			TURN_WEIGHTS[t] = 1 + Math.min(t, NUM_POS - 1 - t) / 6.0;
+	}
+
+	private final long safetyMillis; // time kept in reserve
+	private double meanFactor = 1; // running mean of the candidate and spread factors of budgeted turns
+	private double rolloutsPerMilli = 0; // running mean of the measured rollout rate (0 until measured)
+
+	/**
+	 * Create a time manager with the default safety margin.
+	 */
+	public Reath_TimeManager() {
+		this(DEFAULT_SAFETY_MILLIS);
+	}
+
+	/**
+	 * Create a time manager.
+	 * @param safetyMillis milliseconds kept in reserve for the rest of the game
+	 */
+	public Reath_TimeManager(long safetyMillis) {
+		this.safetyMillis = safetyMillis;
+	}
+
+	/**
+	 * Get the search time of the current turn.
+	 * @param numPlays number of cards already placed
+	 * @param millisRemaining remaining milliseconds for play in the rest of the game
+	 * @param numCandidates number of distinct candidate plays (see countCandidateClasses)
+	 * @param spread value spread of the candidates in [0, 1]: 0 if they look equal, 1 if one clearly dominates
+	 * @return milliseconds to search in this turn
+	 */
+	public long getTurnMillis(int numPlays, long millisRemaining, int numCandidates, double spread) {
+		int remainingPlays = NUM_POS - numPlays;
+		if (remainingPlays <= 1 || numCandidates <= 1)
+			return 0;
+		long usableMillis = Math.max(0, millisRemaining - safetyMillis);
+		double candidateFactor = Math.min(1.0, (numCandidates - 1) / (double) (remainingPlays - 1));
+		double spreadFactor = 1 - SPREAD_DISCOUNT * Math.max(0, Math.min(1, spread));
+		double factor = candidateFactor * spreadFactor;
+		meanFactor += FACTOR_RATE * (factor - meanFactor);
+		double weight = TURN_WEIGHTS[numPlays] * factor;
+		double futureWeight = 0;
+		for (int t = numPlays + 1; t < NUM_POS; t++)
+			futureWeight += TURN_WEIGHTS[t];
+		futureWeight *= meanFactor;
+		long millis = (long) (usableMillis * weight / (weight + futureWeight));
+		if (rolloutsPerMilli > 0) { // afford a minimum number of rollouts per candidate if an even split allows it
+			long minMillis = (long) Math.ceil(MIN_ROLLOUTS * numCandidates / rolloutsPerMilli);
+			millis = Math.max(millis, Math.min(minMillis, usableMillis / (remainingPlays - 1)));
+		}
+		return millis;
+	}
+
+	/**
+	 * Record the rollouts performed in a search, updating the measured rollout rate.
+	 * @param rollouts number of rollouts
+	 * @param nanos search time in nanoseconds
+	 */
+	public void recordRollouts(long rollouts, long nanos) {
+		if (rollouts <= 0 || nanos <= 0)
+			return;
+		double rate = rollouts * 1e6 / nanos;
+		rolloutsPerMilli = rolloutsPerMilli == 0 ? rate : rolloutsPerMilli + ROLLOUT_RATE * (rate - rolloutsPerMilli);
+	}
+
+	/**
+	 * @return measured rollouts per millisecond (0 until measured)
+	 */
+	public double getRolloutsPerMilli() {
+		return rolloutsPerMilli;
+	}
+
+	/**
+	 * Count the distinct classes among the given candidate positions of a grid.
+	 * @param grid grid with Card objects or null (for empty positions)
+	 * @param candidates row-major indices of empty candidate positions
+	 * @return number of candidate classes
+	 */
+	public static int countCandidateClasses(Card[][] grid, int[] candidates) {
+		boolean[] filled = new boolean[NUM_POS];
+		for (int pos = 0; pos < NUM_POS; pos++)
+			filled[pos] = grid[pos / SIZE][pos % SIZE] != null;
+		return countClasses(filled, candidates, candidates.length);
+	}
+
+	/**
+	 * Count the distinct classes among the empty positions of a game state.
+	 * @param state game state
+	 * @return number of candidate classes
+	 */
+	public static int countCandidateClasses(Reath_GameState state) {
+		boolean[] filled = new boolean[NUM_POS];
+		for (int pos = 0; pos < NUM_POS; pos++)
+			filled[pos] = state.getCard(pos) != Reath_GameState.EMPTY;
+		int numEmpty = NUM_POS - state.getNumPlays();
+		int[] empties = new int[numEmpty];
+		for (int i = 0; i < numEmpty; i++)
+			empties[i] = state.getEmpty(i);
+		return countClasses(filled, empties, numEmpty);
+	}
+
+	/**
+	 * Count the distinct classes among positions: a position's class is its row if that row is non-empty (else
+	 * none) together with its column if that column is non-empty (else none).
+	 */
+	private static int countClasses(boolean[] filled, int[] positions, int numPositions) {
+		boolean[] rowFilled = new boolean[SIZE];
+		boolean[] colFilled = new boolean[SIZE];
+		for (int pos = 0; pos < NUM_POS; pos++)
+			if (filled[pos]) {
+				rowFilled[pos / SIZE] = true;
+				colFilled[pos % SIZE] = true;
+			}
+		boolean[] seen = new boolean[(SIZE + 1) * (SIZE + 1)];
+		int classes = 0;
+		for (int i = 0; i < numPositions; i++) {
+			int row = positions[i] / SIZE;
+			int col = positions[i] % SIZE;
+			int key = (rowFilled[row] ? row : SIZE) * (SIZE + 1) + (colFilled[col] ? col : SIZE);
+			if (!seen[key]) {
+				seen[key] = true;
+				classes++;
+			}
+		}
+		return classes;
+	}
+}
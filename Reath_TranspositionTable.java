@@ -0,0 +1,142 @@
+/**
+ * Reath_TranspositionTable - a fixed-size cache of state values keyed by 64-bit state hashes.
+ *
+ * The same state is often reached through different placement orders, so searches that cache state values
+ * by hash (see Reath_GameState.getHash) avoid repeating work.  Entries hold the full key, a value, a depth and
+ * the age (search generation) in which they were last stored.  The table is divided into buckets of
+ * BUCKET_SIZE entries; a key may only live in its bucket, so memory never grows.  When a bucket is full, the
+ * entry replaced is the one least worth keeping: entries from earlier searches (see newSearch) go first, then
+ * the entry with the smallest depth, i.e. the one cheapest to recompute.  The meaning of depth is up to the
+ * caller (e.g. remaining plies of an exact value, or the number of samples of a mean).
+ *
+ * Author: Caleb Reath
+ */
+public class Reath_TranspositionTable {
+	public static final int NOT_FOUND = -1; // probe result for keys not in the table
+	private static final int BUCKET_SIZE = 4; // entries per bucket
+
+	private final long[] keys; // key of each entry
+	private final double[] values; // value of each entry
+	private final int[] depths; // depth of each entry
+	private final byte[] ages; // search generation of each entry (0 for empty entries)
+	private final int bucketMask; // bucket index mask
+	private byte age = 1; // current search generation
+	private int size = 0; // number of occupied entries
+
+	/**
+	 * Create a transposition table.
+	 * @param bits log2 of the number of entries (at least 2)
+	 */
+	public Reath_TranspositionTable(int bits) {
+		int capacity = 1 << Math.max(2, bits);
+		keys = new long[capacity];
+		values = new double[capacity];
+		depths = new int[capacity];
+		ages = new byte[capacity];
+		bucketMask = capacity / BUCKET_SIZE - 1;
+	}
+
+	/**
+	 * Remove all entries.
+	 */
+	public void clear() {
+		if (size > 0)
+			java.util.Arrays.fill(ages, (byte) 0);
+		size = 0;
+		age = 1;
+	}
+
+	/**
+	 * Start a new search generation: entries stored before are kept but are replaced first.
+	 */
+	public void newSearch() {
+		if (++age == 0) // 0 marks empty entries
+			age = 1;
+	}
+
+	/**
+	 * Find the entry of a key.
+	 * @param key state hash
+	 * @return entry index or NOT_FOUND
+	 */
+	public int probe(long key) {
+		int start = bucket(key);
+		for (int i = start; i < start + BUCKET_SIZE; i++)
+			if (ages[i] != 0 && keys[i] == key)
+				return i;
+		return NOT_FOUND;
+	}
+
+	/**
+	 * @param entry entry index returned by probe
+	 * @return value of the entry
+	 */
+	public double getValue(int entry) {
+		return values[entry];
+	}
+
+	/**
+	 * @param entry entry index returned by probe
+	 * @return depth of the entry
+	 */
+	public int getDepth(int entry) {
+		return depths[entry];
+	}
+
+	/**
+	 * Store the value of a key, overwriting its entry if present and otherwise replacing the least valuable
+	 * entry of its bucket.
+	 * @param key state hash
+	 * @param value state value
+	 * @param depth depth of the value (larger values are kept in preference to smaller ones)
+	 */
+	public void store(long key, double value, int depth) {
+		int start = bucket(key);
+		int victim = start;
+		for (int i = start; i < start + BUCKET_SIZE; i++) {
+			if (ages[i] == 0 || keys[i] == key) {
+				victim = i;
+				break;
+			}
+			if (isWorse(i, victim))
+				victim = i;
+		}
+		if (ages[victim] == 0)
+			size++;
+		keys[victim] = key;
+		values[victim] = value;
+		depths[victim] = depth;
+		ages[victim] = age;
+	}
+
+	/**
+	 * Return whether entry a is less worth keeping than entry b (both occupied).
+	 */
+	private boolean isWorse(int a, int b) {
+		boolean aCurrent = ages[a] == age;
+		boolean bCurrent = ages[b] == age;
+		if (aCurrent != bCurrent)
+			return !aCurrent;
+		return depths[a] < depths[b];
+	}
+
+	/**
+	 * @return number of occupied entries
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return number of entries
+	 */
+	public int capacity() {
+		return keys.length;
+	}
+
+	private int bucket(long key) {
+		long z = (key ^ (key >>> 33)) * 0xff51afd7ed558ccdL;
+		z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		return (int) ((z ^ (z >>> 33)) & bucketMask) * BUCKET_SIZE;
+	}
+}
@@ -0,0 +1,66 @@
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * PokerSquaresVectorHandClassifier - SIMD kernel of PokerSquaresHandClassifier, built on the incubating Vector
+ * API.
+ *
+ * Each lane classifies one line exactly as PokerSquaresHandClassifier.classifyScalar does: the number of
+ * distinct ranks is a SWAR bit count of the rank mask, the duplicate structure selects pair through four of a
+ * kind, and flush and straight masks override it.  Lines beyond the last full vector are classified by the
+ * scalar path.  This file is compiled separately (it needs --add-modules jdk.incubator.vector) and is loaded
+ * reflectively by PokerSquaresHandClassifier, which falls back to the scalar path when it is missing.
+ *
+ * Author: Caleb Reath
+ */
+public class PokerSquaresVectorHandClassifier implements PokerSquaresHandClassifier.Kernel {
+	private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED; // widest supported int vector
+	private static final int SIZE = PokerSquares.SIZE; // number of cards in a full line
+	private static final int ROYAL_RANKS = PokerSquaresHandClassifier.ROYAL_RANKS; // rank mask of A, T, J, Q, K
+
+	/* (non-Javadoc)
+	 * @see PokerSquaresHandClassifier.Kernel#classify(int, int[], int[], int[], int[], int[])
+	 */
+	@Override
+	public void classify(int numLines, int[] sizes, int[] rankMasks, int[] suitMasks, int[] maxRankCounts, int[] hands) {
+		int bound = SPECIES.loopBound(numLines);
+		for (int i = 0; i < bound; i += SPECIES.length()) {
+			IntVector size = IntVector.fromArray(SPECIES, sizes, i);
+			IntVector rankMask = IntVector.fromArray(SPECIES, rankMasks, i);
+			IntVector suitMask = IntVector.fromArray(SPECIES, suitMasks, i);
+			IntVector maxRankCount = IntVector.fromArray(SPECIES, maxRankCounts, i);
+
+			// distinct ranks: SWAR bit count of the (13-bit) rank mask
+			IntVector x = rankMask.sub(rankMask.lanewise(VectorOperators.LSHR, 1).and(0x55555555));
+			x = x.and(0x33333333).add(x.lanewise(VectorOperators.LSHR, 2).and(0x33333333));
+			x = x.add(x.lanewise(VectorOperators.LSHR, 4)).and(0x0F0F0F0F);
+			IntVector distinct = x.add(x.lanewise(VectorOperators.LSHR, 8)).and(0xFF);
+			IntVector duplicates = size.sub(distinct);
+
+			// duplicate structure
+			VectorMask<Integer> pair = maxRankCount.eq(2);
+			VectorMask<Integer> trips = maxRankCount.eq(3);
+			IntVector hand = IntVector.zero(SPECIES)
+					.blend(PokerHand.ONE_PAIR.id, pair.and(duplicates.eq(1)))
+					.blend(PokerHand.TWO_PAIR.id, pair.and(duplicates.eq(2)))
+					.blend(PokerHand.THREE_OF_A_KIND.id, trips.and(duplicates.eq(2)))
+					.blend(PokerHand.FULL_HOUSE.id, trips.and(duplicates.eq(3)))
+					.blend(PokerHand.FOUR_OF_A_KIND.id, maxRankCount.eq(4));
+
+			// flushes and straights (full lines of distinct ranks only)
+			VectorMask<Integer> full = size.eq(SIZE);
+			VectorMask<Integer> flush = full.and(suitMask.and(suitMask.sub(1)).eq(0));
+			VectorMask<Integer> royal = rankMask.eq(ROYAL_RANKS);
+			IntVector lowest = rankMask.and(rankMask.neg());
+			VectorMask<Integer> straight = full.and(distinct.eq(SIZE)).and(royal.or(rankMask.eq(lowest.mul(0x1F))));
+			hand = hand.blend(PokerHand.STRAIGHT.id, straight)
+					.blend(PokerHand.FLUSH.id, flush)
+					.blend(PokerHand.STRAIGHT_FLUSH.id, flush.and(straight))
+					.blend(PokerHand.ROYAL_FLUSH.id, flush.and(royal));
+			hand.intoArray(hands, i);
+		}
+		PokerSquaresHandClassifier.classifyScalar(bound, numLines, sizes, rankMasks, suitMasks, maxRankCounts, hands);
+	}
+}